@@ -0,0 +1,113 @@
+package com.hotmock4j.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.JarFile;
+
+/**
+ * Premain and agentmain of the split agent jar.
+ * This jar only holds this class and the runtime types woven code calls (com.hotmock4j.runtime); it is
+ * appended to the bootstrap class path so woven classes of any loader can reach them. The core jar,
+ * with the transformers, HTTP server, persistence and relocated ASM and Jackson, is embedded as a
+ * resource and loaded in its own class loader whose parent is the platform loader, so none of it is
+ * visible to, or clashes with, the application's classes.
+ * Appending to the bootstrap class path turns off class data sharing for application classes; with
+ * bootstrapRuntime=false the runtime types stay on the system class path instead, which is enough when
+ * every mocked class's loader delegates to the system loader.
+ */
+public class BootstrapAgent {
+
+    private static final String CORE_JAR = "hotmock4j-core.jar";
+    private static final String CORE_ENTRY_CLASS = "com.hotmock4j.agent.AgentBootstrap";
+    private static final String RUNTIME_PACKAGE = "com.hotmock4j.runtime.";
+
+    private static ClassLoader coreLoader;
+
+    public static void premain(String args, Instrumentation instrumentation) throws Exception {
+        start("premain", args, instrumentation);
+    }
+
+    public static void agentmain(String args, Instrumentation instrumentation) throws Exception {
+        start("agentmain", args, instrumentation);
+    }
+
+    private static synchronized void start(String entry, String args, Instrumentation instrumentation) throws Exception {
+        if (coreLoader == null) {
+            if (!hasOption(args, "bootstrapRuntime=false")) {
+                instrumentation.appendToBootstrapClassLoaderSearch(new JarFile(ownJar()));
+            }
+            coreLoader = new CoreClassLoader(extractCoreJar().toUri().toURL());
+        }
+        Class<?> core = Class.forName(CORE_ENTRY_CLASS, true, coreLoader);
+        try {
+            core.getMethod(entry, String.class, Instrumentation.class).invoke(null, args, instrumentation);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private static boolean hasOption(String args, String option) {
+        if (args == null) {
+            return false;
+        }
+        for (String pair : args.split(",")) {
+            if (pair.trim().equalsIgnoreCase(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static File ownJar() throws Exception {
+        return new File(BootstrapAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /**
+     * URLClassLoader cannot read a nested jar, so the core is copied to a temporary file first
+     */
+    private static Path extractCoreJar() throws IOException {
+        try (InputStream in = BootstrapAgent.class.getResourceAsStream("/" + CORE_JAR)) {
+            if (in == null) {
+                throw new IOException(CORE_JAR + " is missing from the agent jar");
+            }
+            Path coreJar = Files.createTempFile("hotmock4j-core", ".jar");
+            coreJar.toFile().deleteOnExit();
+            Files.copy(in, coreJar, StandardCopyOption.REPLACE_EXISTING);
+            return coreJar;
+        }
+    }
+
+
+    /**
+     * Loader of the core. Runtime types are taken from the agent jar's loader, whose parent-first lookup finds
+     * the bootstrap copy when there is one, so the core installs its dispatcher into the same MockRuntime
+     * class that woven code calls.
+     */
+    private static final class CoreClassLoader extends URLClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        CoreClassLoader(URL coreJar) {
+            super("hotmock4j-core", new URL[]{coreJar}, ClassLoader.getPlatformClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith(RUNTIME_PACKAGE)) {
+                return BootstrapAgent.class.getClassLoader().loadClass(name);
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
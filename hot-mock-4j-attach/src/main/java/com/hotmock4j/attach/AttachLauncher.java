@@ -0,0 +1,94 @@
+package com.hotmock4j.attach;
+
+import com.sun.tools.attach.AgentInitializationException;
+import com.sun.tools.attach.AgentLoadException;
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads the HotMock4J agent into a running JVM on this machine.
+ *
+ * Usage: java -jar hot-mock-4j-attach.jar <pid> --agent <agent jar> [--args <agent args>]
+ *        java -jar hot-mock-4j-attach.jar --list
+ */
+public class AttachLauncher {
+
+    private static final String USAGE =
+            "Usage: java -jar hot-mock-4j-attach.jar <pid> --agent <agent jar> [--args <agent args>]\n"
+            + "       java -jar hot-mock-4j-attach.jar --list";
+
+    public static void main(String[] args) {
+        if (args.length == 1 && "--list".equals(args[0])) {
+            listVirtualMachines();
+            return;
+        }
+
+        String pid = null;
+        String agentJar = null;
+        String agentArgs = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--agent".equals(args[i]) && i + 1 < args.length) {
+                agentJar = args[++i];
+            } else if ("--args".equals(args[i]) && i + 1 < args.length) {
+                agentArgs = args[++i];
+            } else if (pid == null && !args[i].startsWith("--")) {
+                pid = args[i];
+            } else {
+                exit("Unknown argument: " + args[i]);
+            }
+        }
+        if (pid == null || agentJar == null) {
+            exit(USAGE);
+        }
+        File jar = new File(agentJar);
+        if (!jar.isFile()) {
+            exit("Agent jar not found: " + jar.getAbsolutePath());
+        }
+
+        try {
+            attach(pid, jar.getAbsolutePath(), agentArgs);
+            System.out.println("Agent loaded into JVM " + pid);
+        } catch (AttachNotSupportedException e) {
+            exit("Cannot attach to JVM " + pid + ": " + e.getMessage()
+                    + " (the target must run as the same user, with attach enabled)");
+        } catch (AgentLoadException | AgentInitializationException e) {
+            exit("JVM " + pid + " failed to load the agent: " + e.getMessage());
+        } catch (IOException e) {
+            exit("Attaching to JVM " + pid + " failed: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Attach, load the agent and detach again; agentmain has returned once this does
+     */
+    static void attach(String pid, String agentJar, String agentArgs)
+            throws AttachNotSupportedException, IOException, AgentLoadException, AgentInitializationException {
+        VirtualMachine vm = VirtualMachine.attach(pid);
+        try {
+            vm.loadAgent(agentJar, agentArgs);
+        } finally {
+            vm.detach();
+        }
+    }
+
+
+    private static void listVirtualMachines() {
+        String self = String.valueOf(ProcessHandle.current().pid());
+        for (VirtualMachineDescriptor descriptor : VirtualMachine.list()) {
+            if (!descriptor.id().equals(self)) {
+                System.out.println(descriptor.id() + "\t" + descriptor.displayName());
+            }
+        }
+    }
+
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.exit(1);
+    }
+}
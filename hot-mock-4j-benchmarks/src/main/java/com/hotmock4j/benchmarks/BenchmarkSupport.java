@@ -0,0 +1,176 @@
+package com.hotmock4j.benchmarks;
+
+import com.hotmock4j.benchmarks.fixture.PricingService;
+import com.hotmock4j.benchmarks.fixture.QuoteDto;
+import com.hotmock4j.core.MockClass;
+import com.hotmock4j.core.MockField;
+import com.hotmock4j.core.MockMethod;
+import com.hotmock4j.core.MockPlanManager;
+import com.hotmock4j.core.MockProject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared setup for the benchmarks: the fixture MockPlan, class bytes and loading of woven copies
+ */
+final class BenchmarkSupport {
+
+    static final String PROJECT_NAME = "hotmock4j-benchmarks";
+    static final String TEMPLATE_NAME = "bench";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * The agent log falls back to stdout when no log file is configured; keep that out of the JMH output.
+     */
+    static void silenceStdout() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Create and activate a plan mocking PricingService, with a QuoteDto template for its quote method.
+     * The plan is stored under mock-plans/ of the working directory like any other plan.
+     */
+    static void activatePricingPlan(String planName) {
+        MockPlanManager mockPlanManager = MockPlanManager.getInstance();
+        MockProject project = new MockProject(PROJECT_NAME);
+        deletePlan(planName);
+        mockPlanManager.createMockPlan(planName, project);
+        mockPlanManager.updateMockClass(PROJECT_NAME, planName, quoteTemplate());
+        mockPlanManager.updateMockClass(PROJECT_NAME, planName, pricingServiceMock());
+        mockPlanManager.activateMockPlan(project, planName);
+    }
+
+    static void deletePlan(String planName) {
+        MockPlanManager mockPlanManager = MockPlanManager.getInstance();
+        MockProject project = new MockProject(PROJECT_NAME);
+        if (mockPlanManager.getMockPlan(project, planName) != null) {
+            mockPlanManager.deleteMockPlan(project, planName);
+        }
+    }
+
+    private static MockClass pricingServiceMock() {
+        MockClass mockClass = new MockClass(PricingService.class.getPackageName(), PricingService.class.getName());
+
+        List<MockMethod> methods = new ArrayList<>();
+        methods.add(returning("price", "42"));
+        methods.add(returning("currency", "USD"));
+        MockMethod quote = new MockMethod();
+        quote.setMethodName("quote");
+        quote.setActive(true);
+        quote.setReturnClassName(QuoteDto.class.getName());
+        quote.setActiveReturnTemplateName(TEMPLATE_NAME);
+        methods.add(quote);
+        mockClass.setMethods(methods);
+
+        List<MockField> fields = new ArrayList<>();
+        fields.add(field("scale", "4"));
+        mockClass.setFields(fields);
+        return mockClass;
+    }
+
+    private static MockClass quoteTemplate() {
+        MockClass mockClass = new MockClass(QuoteDto.class.getPackageName(), QuoteDto.class.getName());
+        mockClass.setTemplateName(TEMPLATE_NAME);
+        List<MockField> fields = new ArrayList<>();
+        fields.add(field("symbol", "ACME"));
+        fields.add(field("quantity", "100"));
+        fields.add(field("price", "1999"));
+        fields.add(field("ratio", "0.25"));
+        fields.add(field("settled", "true"));
+        mockClass.setFields(fields);
+        return mockClass;
+    }
+
+    private static MockMethod returning(String methodName, Object returnObject) {
+        MockMethod mockMethod = new MockMethod();
+        mockMethod.setMethodName(methodName);
+        mockMethod.setReturnObject(returnObject);
+        mockMethod.setActive(true);
+        return mockMethod;
+    }
+
+    private static MockField field(String fieldName, Object mockFieldValue) {
+        MockField mockField = new MockField(fieldName);
+        mockField.setMockFieldValue(mockFieldValue);
+        mockField.setActive(true);
+        return mockField;
+    }
+
+    static String internalName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    static byte[] classBytes(Class<?> clazz) {
+        String resource = "/" + internalName(clazz) + ".class";
+        try (InputStream in = clazz.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Class file not found: " + resource);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read " + resource, e);
+        }
+    }
+
+    /**
+     * Run the class through the transformer and define the result as a separate copy of the class,
+     * leaving the original loaded by the application class loader untouched
+     */
+    static Class<?> defineTransformed(Class<?> clazz, ClassFileTransformer transformer) {
+        byte[] original = classBytes(clazz);
+        byte[] transformed;
+        try {
+            transformed = transformer.transform(clazz.getClassLoader(), internalName(clazz), null, null, original);
+        } catch (IllegalClassFormatException e) {
+            throw new IllegalStateException("Failed to transform " + clazz.getName(), e);
+        }
+        if (transformed == null) {
+            throw new IllegalStateException("Transformer left " + clazz.getName() + " unchanged; is the plan active?");
+        }
+        try {
+            return new DefiningClassLoader(clazz.getClassLoader(), clazz.getName(), transformed).loadClass(clazz.getName());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Defines a single class from the given bytes and delegates everything else to the parent
+     */
+    private static final class DefiningClassLoader extends ClassLoader {
+        private final String className;
+        private final byte[] bytes;
+
+        DefiningClassLoader(ClassLoader parent, String className, byte[] bytes) {
+            super(parent);
+            this.className = className;
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!className.equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) {
+                    resolveClass(clazz);
+                }
+                return clazz;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.hotmock4j.benchmarks;
+
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.benchmarks.fixture.AccountEntity;
+import com.hotmock4j.core.ClassSearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class search over a class map of 100k synthetic names.
+ * Runs without Instrumentation, so the scan of loaded classes done inside the agent is not included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassSearchBenchmark {
+
+    private static final int CLASS_COUNT = 100_000;
+    private static final String[] LAYERS = {"controller", "service", "repository", "model", "util"};
+
+    /** Broad match, narrow match and no match */
+    @Param({"service", "Order4242", "NoSuchClass"})
+    public String keyword;
+
+    private ClassSearchService classSearchService;
+
+    @Setup
+    public void setup() {
+        AgentBootstrap.classMap.clear();
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            String layer = LAYERS[i % LAYERS.length];
+            String name = "com.example.module" + (i % 200) + "." + layer + ".Order" + i
+                    + Character.toUpperCase(layer.charAt(0)) + layer.substring(1);
+            AgentBootstrap.classMap.put(name, AccountEntity.class);
+        }
+        classSearchService = ClassSearchService.getInstance();
+    }
+
+    @TearDown
+    public void tearDown() {
+        AgentBootstrap.classMap.clear();
+    }
+
+    @Benchmark
+    public List<String> searchClasses() {
+        return classSearchService.searchClasses(keyword);
+    }
+}
@@ -0,0 +1,79 @@
+package com.hotmock4j.benchmarks;
+
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.agent.transformer.BytecodeCache;
+import com.hotmock4j.agent.transformer.InstanceRegistrationTransformer;
+import com.hotmock4j.benchmarks.fixture.PricingService;
+import com.hotmock4j.core.InstanceTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of constructing an object whose constructor was woven by InstanceRegistrationTransformer,
+ * against the same class loaded unmodified. Both are created through a MethodHandle so the
+ * only difference is the registration call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ConstructorBenchmark {
+
+    private static final String PLAN_NAME = "constructor-benchmark";
+
+    private MethodHandle plainConstructor;
+    private MethodHandle wovenConstructor;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.silenceStdout();
+        BenchmarkSupport.activatePricingPlan(PLAN_NAME);
+        Class<?> woven = BenchmarkSupport.defineTransformed(PricingService.class,
+                new InstanceRegistrationTransformer(AgentBootstrap.packageFilter, BytecodeCache.disabled()));
+        MethodType type = MethodType.methodType(Object.class);
+        plainConstructor = MethodHandles.publicLookup()
+                .findConstructor(PricingService.class, MethodType.methodType(void.class)).asType(type);
+        wovenConstructor = MethodHandles.publicLookup()
+                .findConstructor(woven, MethodType.methodType(void.class)).asType(type);
+    }
+
+    /**
+     * Registered instances are only pruned on lookup; drop them between iterations so the set does not grow unbounded
+     */
+    @TearDown(Level.Iteration)
+    public void clearRegistrations() {
+        InstanceTracker.getInstance().clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.deletePlan(PLAN_NAME);
+    }
+
+    @Benchmark
+    public Object plainConstructor() throws Throwable {
+        return (Object) plainConstructor.invokeExact();
+    }
+
+    @Benchmark
+    public Object wovenConstructor() throws Throwable {
+        return (Object) wovenConstructor.invokeExact();
+    }
+}
@@ -0,0 +1,61 @@
+package com.hotmock4j.benchmarks;
+
+import com.hotmock4j.benchmarks.fixture.AccountEntity;
+import com.hotmock4j.core.InstanceTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to push a field value into every tracked instance of a class, as done when a mock
+ * is edited while its plan is active
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class InstanceTrackerBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int instances;
+
+    private final String className = AccountEntity.class.getName();
+    private AccountEntity[] tracked;
+    private int value;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceStdout();
+        InstanceTracker.getInstance().clear();
+        // Strong references keep the tracked instances alive for the whole trial
+        tracked = new AccountEntity[instances];
+        for (int i = 0; i < instances; i++) {
+            tracked[i] = new AccountEntity(i, "owner-" + i, i);
+            InstanceTracker.registerInstance(className, tracked[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        InstanceTracker.getInstance().clear();
+        tracked = null;
+    }
+
+    @Benchmark
+    public void updateFieldValues() {
+        InstanceTracker.getInstance().updateFieldValues(AccountEntity.class, "balance", value++);
+    }
+}
@@ -0,0 +1,91 @@
+package com.hotmock4j.benchmarks;
+
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.agent.transformer.BytecodeCache;
+import com.hotmock4j.agent.transformer.MockFieldTransformer;
+import com.hotmock4j.benchmarks.fixture.PricingApi;
+import com.hotmock4j.benchmarks.fixture.PricingService;
+import com.hotmock4j.benchmarks.fixture.QuoteDto;
+import com.hotmock4j.core.MockPlanManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of mocked methods: woven primitive and String returns, woven template returns,
+ * and buildInstanceFromActiveTemplate called directly. The unmocked calls are the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MockInvocationBenchmark {
+
+    private static final String PLAN_NAME = "invocation-benchmark";
+
+    private PricingApi plain;
+    private PricingApi mocked;
+    private String symbol = "ACME";
+    private String quoteClassName = QuoteDto.class.getName();
+    private String templateName = BenchmarkSupport.TEMPLATE_NAME;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.silenceStdout();
+        BenchmarkSupport.activatePricingPlan(PLAN_NAME);
+        plain = new PricingService();
+        Class<?> woven = BenchmarkSupport.defineTransformed(PricingService.class,
+                new MockFieldTransformer(AgentBootstrap.packageFilter, BytecodeCache.disabled()));
+        mocked = (PricingApi) woven.getDeclaredConstructor().newInstance();
+        if (mocked.price(symbol) != 42 || mocked.quote(symbol).getQuantity() != 100) {
+            throw new IllegalStateException("Mocks were not applied to the woven PricingService");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.deletePlan(PLAN_NAME);
+    }
+
+    @Benchmark
+    public int primitiveUnmocked() {
+        return plain.price(symbol);
+    }
+
+    @Benchmark
+    public int primitiveMocked() {
+        return mocked.price(symbol);
+    }
+
+    @Benchmark
+    public String stringMocked() {
+        return mocked.currency();
+    }
+
+    @Benchmark
+    public QuoteDto templateUnmocked() {
+        return plain.quote(symbol);
+    }
+
+    @Benchmark
+    public QuoteDto templateMocked() {
+        return mocked.quote(symbol);
+    }
+
+    @Benchmark
+    public Object buildInstanceFromActiveTemplate() {
+        return MockPlanManager.buildInstanceFromActiveTemplate(PricingService.class, quoteClassName, templateName);
+    }
+}
@@ -0,0 +1,98 @@
+package com.hotmock4j.benchmarks;
+
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.agent.transformer.BytecodeCache;
+import com.hotmock4j.agent.transformer.InstanceRegistrationTransformer;
+import com.hotmock4j.agent.transformer.MockFieldTransformer;
+import com.hotmock4j.benchmarks.fixture.AccountEntity;
+import com.hotmock4j.benchmarks.fixture.PricingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.instrument.IllegalClassFormatException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the class file transformers for classes with and without a mock configuration.
+ * The unmocked case is what every in-scope class loaded by the application pays; the excluded case is
+ * what JDK and other out-of-scope classes pay before the package filter rejects them.
+ * Weaving is measured with the bytecode cache disabled; the cached case is a hit in its in-memory level.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformerBenchmark {
+
+    private static final String PLAN_NAME = "transformer-benchmark";
+
+    private MockFieldTransformer mockFieldTransformer;
+    private MockFieldTransformer cachedMockFieldTransformer;
+    private InstanceRegistrationTransformer instanceRegistrationTransformer;
+    private ClassLoader loader;
+    private String mockedName;
+    private byte[] mockedBytes;
+    private String unmockedName;
+    private byte[] unmockedBytes;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.silenceStdout();
+        BenchmarkSupport.activatePricingPlan(PLAN_NAME);
+        mockFieldTransformer = new MockFieldTransformer(AgentBootstrap.packageFilter, BytecodeCache.disabled());
+        cachedMockFieldTransformer = new MockFieldTransformer(AgentBootstrap.packageFilter,
+                BytecodeCache.create(16L * 1024 * 1024, null));
+        instanceRegistrationTransformer = new InstanceRegistrationTransformer(AgentBootstrap.packageFilter, BytecodeCache.disabled());
+        loader = PricingService.class.getClassLoader();
+        mockedName = BenchmarkSupport.internalName(PricingService.class);
+        mockedBytes = BenchmarkSupport.classBytes(PricingService.class);
+        unmockedName = BenchmarkSupport.internalName(AccountEntity.class);
+        unmockedBytes = BenchmarkSupport.classBytes(AccountEntity.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.deletePlan(PLAN_NAME);
+    }
+
+    @Benchmark
+    public byte[] mockFieldTransformMocked() throws IllegalClassFormatException {
+        return mockFieldTransformer.transform(loader, mockedName, null, null, mockedBytes);
+    }
+
+    @Benchmark
+    public byte[] mockFieldTransformMockedCached() throws IllegalClassFormatException {
+        return cachedMockFieldTransformer.transform(loader, mockedName, null, null, mockedBytes);
+    }
+
+    @Benchmark
+    public byte[] mockFieldTransformUnmocked() throws IllegalClassFormatException {
+        return mockFieldTransformer.transform(loader, unmockedName, null, null, unmockedBytes);
+    }
+
+    @Benchmark
+    public byte[] mockFieldTransformExcluded() throws IllegalClassFormatException {
+        return mockFieldTransformer.transform(loader, "java/util/ArrayList", null, null, unmockedBytes);
+    }
+
+    @Benchmark
+    public byte[] instanceRegistrationTransformMocked() throws IllegalClassFormatException {
+        return instanceRegistrationTransformer.transform(loader, mockedName, null, null, mockedBytes);
+    }
+
+    @Benchmark
+    public byte[] instanceRegistrationTransformUnmocked() throws IllegalClassFormatException {
+        return instanceRegistrationTransformer.transform(loader, unmockedName, null, null, unmockedBytes);
+    }
+}
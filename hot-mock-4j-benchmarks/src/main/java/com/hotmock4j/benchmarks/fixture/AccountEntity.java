@@ -0,0 +1,37 @@
+package com.hotmock4j.benchmarks.fixture;
+
+/**
+ * Class without any mock configuration, used as the unmocked baseline
+ */
+public class AccountEntity {
+
+    private long id;
+    private String owner;
+    private int balance;
+
+    public AccountEntity() {
+    }
+
+    public AccountEntity(long id, String owner, int balance) {
+        this.id = id;
+        this.owner = owner;
+        this.balance = balance;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getBalance() {
+        return balance;
+    }
+
+    public int deposit(int amount) {
+        balance += amount;
+        return balance;
+    }
+}
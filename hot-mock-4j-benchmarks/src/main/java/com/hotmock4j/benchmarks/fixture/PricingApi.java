@@ -0,0 +1,13 @@
+package com.hotmock4j.benchmarks.fixture;
+
+/**
+ * Interface the benchmarks call woven PricingService copies through
+ */
+public interface PricingApi {
+
+    int price(String symbol);
+
+    String currency();
+
+    QuoteDto quote(String symbol);
+}
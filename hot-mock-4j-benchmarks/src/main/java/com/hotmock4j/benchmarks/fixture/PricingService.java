@@ -0,0 +1,36 @@
+package com.hotmock4j.benchmarks.fixture;
+
+/**
+ * Mock target with a primitive, a String and a template-backed method
+ */
+public class PricingService implements PricingApi {
+
+    private String currency = "EUR";
+    private int scale = 2;
+
+    public PricingService() {
+    }
+
+    @Override
+    public int price(String symbol) {
+        return symbol.length() * scale;
+    }
+
+    @Override
+    public String currency() {
+        return currency;
+    }
+
+    @Override
+    public QuoteDto quote(String symbol) {
+        return new QuoteDto();
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+}
@@ -0,0 +1,33 @@
+package com.hotmock4j.benchmarks.fixture;
+
+/**
+ * Value object built from a MockPlan template by the template mock benchmarks
+ */
+public class QuoteDto {
+
+    private String symbol;
+    private int quantity;
+    private long price;
+    private double ratio;
+    private boolean settled;
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    public boolean isSettled() {
+        return settled;
+    }
+}
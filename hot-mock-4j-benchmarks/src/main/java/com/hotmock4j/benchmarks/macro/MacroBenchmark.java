@@ -0,0 +1,394 @@
+package com.hotmock4j.benchmarks.macro;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hotmock4j.benchmarks.macro.app.SampleApplication;
+import com.hotmock4j.core.MockClass;
+import com.hotmock4j.core.MockField;
+import com.hotmock4j.core.MockMethod;
+import com.hotmock4j.core.MockPlan;
+import com.hotmock4j.core.MockProject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Macro benchmark measuring what -javaagent costs a running service.
+ * Launches SampleApplication in forked JVMs without the agent, with the agent and an empty
+ * active plan, and with the agent and a large active plan, eagerly or with deferred initialization,
+ * then reports the median of each metric over all runs and writes them as JSON.
+ * The warm-cache scenario restarts with a bytecode cache directory primed by an unmeasured run, as a
+ * service restarted with the same plan would.
+ *
+ * Usage: java -cp benchmarks.jar com.hotmock4j.benchmarks.macro.MacroBenchmark [--option value]...
+ * Options: --agent, --classes, --mocked, --runs, --warmup, --requests, --objects, --scenarios, --jvmArgs, --out
+ */
+public class MacroBenchmark {
+
+    static final String BASELINE = "baseline";
+    static final String AGENT_EMPTY_PLAN = "agent-empty-plan";
+    static final String AGENT_LARGE_PLAN = "agent-large-plan";
+    static final String AGENT_LARGE_PLAN_DEFERRED = "agent-large-plan-deferred";
+    static final String AGENT_LARGE_PLAN_WARM_CACHE = "agent-large-plan-warm-cache";
+
+    private static final String PLAN_NAME = "macro-benchmark";
+    private static final long READY_TIMEOUT_SECONDS = 120;
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private MacroBenchmark(String[] args) {
+        options.put("agent", "hot-mock-4j-java17/target/hot-mock-4j-java17-1.0-SNAPSHOT.jar");
+        options.put("classes", "2000");
+        options.put("mocked", "500");
+        options.put("runs", "3");
+        options.put("warmup", "2000");
+        options.put("requests", "10000");
+        options.put("objects", "64");
+        options.put("scenarios", BASELINE + "," + AGENT_EMPTY_PLAN + "," + AGENT_LARGE_PLAN + "," + AGENT_LARGE_PLAN_DEFERRED
+                + "," + AGENT_LARGE_PLAN_WARM_CACHE);
+        options.put("jvmArgs", "-Xms512m -Xmx512m");
+        options.put("out", "macro-result.json");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new MacroBenchmark(args).run();
+    }
+
+    private void run() throws Exception {
+        int classes = intOption("classes");
+        int runs = intOption("runs");
+        List<String> scenarios = Arrays.asList(options.get("scenarios").split(","));
+        File agentJar = new File(options.get("agent"));
+        if (!scenarios.stream().allMatch(BASELINE::equals) && !agentJar.isFile()) {
+            throw new IllegalArgumentException("Agent jar not found: " + agentJar.getAbsolutePath()
+                    + " (build it with mvn -pl hot-mock-4j-java17 package or pass --agent)");
+        }
+
+        Path root = Files.createTempDirectory("hotmock4j-macro-");
+        Path classesDir = root.resolve("classes");
+        SampleClassGenerator.writeSampleApplication(classesDir, classes);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", new LinkedHashMap<>(options));
+        Map<String, Object> results = new LinkedHashMap<>();
+        report.put("scenarios", results);
+        Map<String, Map<String, Double>> medians = new LinkedHashMap<>();
+        try {
+            for (String scenario : scenarios) {
+                List<Map<String, Double>> runResults = new ArrayList<>();
+                if (AGENT_LARGE_PLAN_WARM_CACHE.equals(scenario)) {
+                    System.out.println("Priming the bytecode cache for " + scenario);
+                    runOnce(scenario, root, classesDir, agentJar, runs);
+                }
+                for (int run = 0; run < runs; run++) {
+                    System.out.println("Running " + scenario + " " + (run + 1) + "/" + runs);
+                    runResults.add(runOnce(scenario, root, classesDir, agentJar, run));
+                }
+                Map<String, Double> median = median(runResults);
+                medians.put(scenario, median);
+                Map<String, Object> scenarioResult = new LinkedHashMap<>();
+                scenarioResult.put("median", median);
+                scenarioResult.put("runs", runResults);
+                results.put(scenario, scenarioResult);
+            }
+        } finally {
+            deleteRecursively(root);
+        }
+
+        printSummary(medians);
+        File out = new File(options.get("out"));
+        objectMapper.writeValue(out, report);
+        System.out.println("Results written to " + out.getAbsolutePath());
+    }
+
+    /**
+     * Launch one sample application JVM, drive its workload and collect its metrics
+     */
+    private Map<String, Double> runOnce(String scenario, Path root, Path classesDir, File agentJar, int run)
+            throws Exception {
+        Path workDir = Files.createDirectories(root.resolve(scenario + "-" + run));
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // Without TCP_NODELAY the JDK HTTP server's split header/body writes hit the delayed-ACK stall
+        // on every request, hiding everything else in the latency numbers
+        command.add("-Dsun.net.httpserver.nodelay=true");
+        for (String jvmArg : options.get("jvmArgs").trim().split("\\s+")) {
+            if (!jvmArg.isEmpty()) {
+                command.add(jvmArg);
+            }
+        }
+        if (AGENT_EMPTY_PLAN.equals(scenario)) {
+            writePlan(workDir, 0);
+            command.add("-javaagent:" + agentJar.getAbsolutePath());
+        } else if (AGENT_LARGE_PLAN.equals(scenario)) {
+            writePlan(workDir, Math.min(intOption("mocked"), intOption("classes")));
+            command.add("-javaagent:" + agentJar.getAbsolutePath());
+        } else if (AGENT_LARGE_PLAN_DEFERRED.equals(scenario)) {
+            writePlan(workDir, Math.min(intOption("mocked"), intOption("classes")));
+            command.add("-javaagent:" + agentJar.getAbsolutePath() + "=deferredInit=true");
+        } else if (AGENT_LARGE_PLAN_WARM_CACHE.equals(scenario)) {
+            writePlan(workDir, Math.min(intOption("mocked"), intOption("classes")));
+            command.add("-javaagent:" + agentJar.getAbsolutePath() + "=bytecodeCacheDir=" + root.resolve("bytecode-cache"));
+        } else if (!BASELINE.equals(scenario)) {
+            throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        }
+        command.add("-cp");
+        command.add(classesDir.toString());
+        command.add(SampleApplication.class.getName());
+        command.add(SampleClassGenerator.DTO_PACKAGE);
+        command.add(options.get("classes"));
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true);
+        long launchMillis = System.currentTimeMillis();
+        long launchNanos = System.nanoTime();
+        Process process = processBuilder.start();
+        OutputDrain drain = new OutputDrain(process);
+        try {
+            int port = drain.ready.get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            String base = "http://127.0.0.1:" + port;
+            URI work = URI.create(base + "/work?n=" + options.get("objects"));
+
+            get(work);
+            double timeToFirstRequest = (System.nanoTime() - launchNanos) / 1e6;
+
+            for (int i = 0; i < intOption("warmup"); i++) {
+                get(work);
+            }
+            long[] latencies = new long[intOption("requests")];
+            long measureStart = System.nanoTime();
+            for (int i = 0; i < latencies.length; i++) {
+                long start = System.nanoTime();
+                get(work);
+                latencies[i] = System.nanoTime() - start;
+            }
+            long measureNanos = System.nanoTime() - measureStart;
+
+            @SuppressWarnings("unchecked")
+            Map<String, Number> stats = objectMapper.readValue(get(URI.create(base + "/stats")), Map.class);
+            try {
+                get(URI.create(base + "/exit"));
+            } catch (IOException ignore) {
+                // the JVM may exit before the response is complete
+            }
+
+            Arrays.sort(latencies);
+            long classesLoaded = stats.get("classesLoaded").longValue();
+            double classLoadMillis = stats.get("classLoadNanos").longValue() / 1e6;
+            Map<String, Double> metrics = new LinkedHashMap<>();
+            metrics.put("timeToMainMillis", (double) (stats.get("mainEnteredMillis").longValue() - launchMillis));
+            metrics.put("jvmUptimeAtMainMillis", stats.get("uptimeAtMainMillis").doubleValue());
+            metrics.put("timeToFirstRequestMillis", timeToFirstRequest);
+            metrics.put("classLoadMillis", classLoadMillis);
+            metrics.put("classLoadPerSecond", classesLoaded * 1000 / Math.max(classLoadMillis, 0.001));
+            metrics.put("jvmLoadedClassCount", stats.get("jvmLoadedClassCount").doubleValue());
+            metrics.put("metaspaceUsedKb", stats.get("metaspaceUsed").longValue() / 1024.0);
+            metrics.put("metaspaceDeltaKb",
+                    (stats.get("metaspaceUsed").longValue() - stats.get("metaspaceUsedAtMain").longValue()) / 1024.0);
+            metrics.put("heapUsedKb", stats.get("heapUsed").longValue() / 1024.0);
+            metrics.put("heapDeltaKb",
+                    (stats.get("heapUsed").longValue() - stats.get("heapUsedAtMain").longValue()) / 1024.0);
+            metrics.put("latencyP50Micros", percentile(latencies, 0.50) / 1e3);
+            metrics.put("latencyP99Micros", percentile(latencies, 0.99) / 1e3);
+            metrics.put("latencyP999Micros", percentile(latencies, 0.999) / 1e3);
+            metrics.put("requestsPerSecond", latencies.length / (measureNanos / 1e9));
+            metrics.put("stdoutLines", (double) drain.lines.get());
+
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            return metrics;
+        } catch (Exception e) {
+            throw new IllegalStateException("Run " + scenario + "/" + run + " failed; last output:\n"
+                    + String.join("\n", drain.tail()), e);
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /**
+     * Write an active plan into the fork's working directory, where the agent loads it from on startup.
+     * Each mocked DTO gets two field mocks and one method mock, so its getters and constructor are woven.
+     */
+    private void writePlan(Path workDir, int mockedClasses) throws IOException {
+        List<MockClass> mockClasses = new ArrayList<>();
+        for (int i = 0; i < mockedClasses; i++) {
+            MockClass mockClass = new MockClass(SampleClassGenerator.DTO_PACKAGE, SampleClassGenerator.dtoClassName(i));
+            List<MockField> fields = new ArrayList<>();
+            fields.add(mockField("id", "7"));
+            fields.add(mockField("name", "mocked"));
+            mockClass.setFields(fields);
+            MockMethod getAmount = new MockMethod();
+            getAmount.setMethodName("getAmount");
+            getAmount.setReturnObject("99");
+            getAmount.setActive(true);
+            List<MockMethod> methods = new ArrayList<>();
+            methods.add(getAmount);
+            mockClass.setMethods(methods);
+            mockClasses.add(mockClass);
+        }
+
+        MockPlan mockPlan = new MockPlan(new MockProject(PLAN_NAME), PLAN_NAME);
+        mockPlan.setJsonFileName(PLAN_NAME + ".json");
+        mockPlan.setCreationDate(new Date());
+        mockPlan.setMockClassList(mockClasses);
+        mockPlan.setActive(true);
+        Path planDir = Files.createDirectories(workDir.resolve("mock-plans"));
+        objectMapper.writeValue(planDir.resolve(mockPlan.getJsonFileName()).toFile(), mockPlan);
+    }
+
+    private static MockField mockField(String fieldName, String value) {
+        MockField mockField = new MockField(fieldName);
+        mockField.setMockFieldValue(value);
+        mockField.setActive(true);
+        return mockField;
+    }
+
+    private String get(URI uri) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + uri + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static Map<String, Double> median(List<Map<String, Double>> runs) {
+        Map<String, Double> median = new LinkedHashMap<>();
+        for (String metric : runs.get(0).keySet()) {
+            double[] values = runs.stream().mapToDouble(r -> r.get(metric)).sorted().toArray();
+            int mid = values.length / 2;
+            median.put(metric, values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2);
+        }
+        return median;
+    }
+
+    private void printSummary(Map<String, Map<String, Double>> medians) {
+        if (medians.isEmpty()) {
+            return;
+        }
+        Map<String, Double> baseline = medians.get(BASELINE);
+        StringBuilder header = new StringBuilder(String.format("%-26s", "metric (median)"));
+        for (String scenario : medians.keySet()) {
+            header.append(String.format("%29s", scenario));
+            if (baseline != null && !BASELINE.equals(scenario)) {
+                header.append(String.format("%14s", "vs baseline"));
+            }
+        }
+        System.out.println(header);
+        for (String metric : medians.values().iterator().next().keySet()) {
+            StringBuilder line = new StringBuilder(String.format("%-26s", metric));
+            for (Map.Entry<String, Map<String, Double>> entry : medians.entrySet()) {
+                double value = entry.getValue().get(metric);
+                line.append(String.format("%29.2f", value));
+                if (baseline != null && !BASELINE.equals(entry.getKey())) {
+                    line.append(String.format("%+14.2f", value - baseline.get(metric)));
+                }
+            }
+            System.out.println(line);
+        }
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Reads the forked JVM's output so it never blocks on a full pipe, and picks up the READY line
+     */
+    private static final class OutputDrain implements Runnable {
+        private static final int TAIL_LINES = 20;
+
+        private final Process process;
+        private final CompletableFuture<Integer> ready = new CompletableFuture<>();
+        private final AtomicLong lines = new AtomicLong();
+        private final Deque<String> tail = new ArrayDeque<>();
+
+        OutputDrain(Process process) {
+            this.process = process;
+            Thread thread = new Thread(this, "macro-benchmark-output");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!ready.isDone() && line.startsWith("READY ")) {
+                        ready.complete(Integer.parseInt(line.substring("READY ".length()).trim()));
+                        continue;
+                    }
+                    lines.incrementAndGet();
+                    synchronized (tail) {
+                        if (tail.size() == TAIL_LINES) {
+                            tail.removeFirst();
+                        }
+                        tail.addLast(line);
+                    }
+                }
+            } catch (IOException ignore) {
+                // process destroyed
+            }
+            ready.completeExceptionally(new IllegalStateException("Sample application exited before it was ready"));
+        }
+
+        List<String> tail() {
+            synchronized (tail) {
+                return new ArrayList<>(tail);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.hotmock4j.benchmarks.macro;
+
+import com.hotmock4j.benchmarks.macro.app.SampleApplication;
+import com.hotmock4j.benchmarks.macro.app.SampleDto;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the sample application's class directory: SampleApplication, SampleDto and
+ * the generated DTO classes. Every DTO has six fields, an allocating constructor and
+ * getters that its checksum method reads.
+ */
+final class SampleClassGenerator {
+
+    static final String DTO_PACKAGE = "com.hotmock4j.benchmarks.macro.app.dto";
+
+    private static final String DTO_INTERFACE = Type.getInternalName(SampleDto.class);
+    private static final String DTO_INTERFACE_DESC = Type.getDescriptor(SampleDto.class);
+
+    private SampleClassGenerator() {
+    }
+
+    static String dtoClassName(int index) {
+        return DTO_PACKAGE + ".Dto" + index;
+    }
+
+    /**
+     * Populate the directory with the sample application and dtoCount DTO classes
+     */
+    static void writeSampleApplication(Path classesDir, int dtoCount) throws IOException {
+        copyClass(classesDir, SampleApplication.class);
+        copyClass(classesDir, SampleDto.class);
+        for (int i = 0; i < dtoCount; i++) {
+            String internalName = dtoClassName(i).replace('.', '/');
+            Path file = classesDir.resolve(internalName + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, generateDto(internalName, i));
+        }
+    }
+
+    private static void copyClass(Path classesDir, Class<?> clazz) throws IOException {
+        String resource = Type.getInternalName(clazz) + ".class";
+        Path file = classesDir.resolve(resource);
+        Files.createDirectories(file.getParent());
+        try (InputStream in = clazz.getResourceAsStream("/" + resource)) {
+            if (in == null) {
+                throw new IOException("Class file not found: " + resource);
+            }
+            Files.write(file, in.readAllBytes());
+        }
+    }
+
+    static byte[] generateDto(String internalName, int index) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null,
+                "java/lang/Object", new String[]{DTO_INTERFACE});
+
+        cw.visitField(Opcodes.ACC_PRIVATE, "id", "I", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "amount", "J", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "name", "Ljava/lang/String;", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "ratio", "D", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "payload", "[B", null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE, "items", "Ljava/util/List;", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitLdcInsn(index);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "id", "I");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitLdcInsn(index * 31L);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "amount", "J");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitLdcInsn("dto-" + index);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "name", "Ljava/lang/String;");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitLdcInsn(0.5d);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "ratio", "D");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitIntInsn(Opcodes.BIPUSH, 64);
+        mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_BYTE);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "payload", "[B");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitTypeInsn(Opcodes.NEW, "java/util/ArrayList");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitIntInsn(Opcodes.BIPUSH, 8);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/util/ArrayList", "<init>", "(I)V", false);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "items", "Ljava/util/List;");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        getter(cw, internalName, "getId", "id", "I", Opcodes.IRETURN);
+        getter(cw, internalName, "getAmount", "amount", "J", Opcodes.LRETURN);
+        getter(cw, internalName, "getName", "name", "Ljava/lang/String;", Opcodes.ARETURN);
+        getter(cw, internalName, "getRatio", "ratio", "D", Opcodes.DRETURN);
+        getter(cw, internalName, "getPayload", "payload", "[B", Opcodes.ARETURN);
+        getter(cw, internalName, "getItems", "items", "Ljava/util/List;", Opcodes.ARETURN);
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "copy", "()" + DTO_INTERFACE_DESC, null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(Opcodes.NEW, internalName);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, internalName, "<init>", "()V", false);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "checksum", "()J", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, "getId", "()I", false);
+        mv.visitInsn(Opcodes.I2L);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, "getAmount", "()J", false);
+        mv.visitInsn(Opcodes.LADD);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, "getName", "()Ljava/lang/String;", false);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
+        mv.visitInsn(Opcodes.I2L);
+        mv.visitInsn(Opcodes.LADD);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, "getRatio", "()D", false);
+        mv.visitInsn(Opcodes.D2L);
+        mv.visitInsn(Opcodes.LADD);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, "getPayload", "()[B", false);
+        mv.visitInsn(Opcodes.ARRAYLENGTH);
+        mv.visitInsn(Opcodes.I2L);
+        mv.visitInsn(Opcodes.LADD);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, "getItems", "()Ljava/util/List;", false);
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/List", "size", "()I", true);
+        mv.visitInsn(Opcodes.I2L);
+        mv.visitInsn(Opcodes.LADD);
+        mv.visitInsn(Opcodes.LRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void getter(ClassWriter cw, String owner, String methodName, String fieldName,
+                               String descriptor, int returnOpcode) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, methodName, "()" + descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, owner, fieldName, descriptor);
+        mv.visitInsn(returnOpcode);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+}
@@ -0,0 +1,132 @@
+package com.hotmock4j.benchmarks.macro.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sample service launched by MacroBenchmark in a forked JVM.
+ * It runs from a bare class directory together with the generated DTOs, so it must not use
+ * lambdas, inner classes or anything outside the JDK.
+ *
+ * Usage: SampleApplication &lt;dtoPackage&gt; &lt;dtoCount&gt;
+ * Prints "READY &lt;port&gt;" once all DTO classes are loaded and the server accepts requests.
+ * Endpoints: /work?n=N builds N DTOs and reads all their getters, /stats returns JSON metrics, /exit stops the JVM.
+ */
+public class SampleApplication implements HttpHandler {
+
+    private final long mainEnteredMillis;
+    private final long uptimeAtMainMillis;
+    private final long heapUsedAtMain;
+    private final long metaspaceUsedAtMain;
+    private SampleDto[] prototypes;
+    private long classLoadNanos;
+    private int cursor;
+
+    private SampleApplication(long mainEnteredMillis) {
+        this.mainEnteredMillis = mainEnteredMillis;
+        this.uptimeAtMainMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        this.heapUsedAtMain = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        this.metaspaceUsedAtMain = metaspaceUsed();
+    }
+
+    public static void main(String[] args) throws Exception {
+        long mainEnteredMillis = System.currentTimeMillis();
+        SampleApplication application = new SampleApplication(mainEnteredMillis);
+        application.loadClasses(args[0], Integer.parseInt(args[1]));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", application);
+        server.start();
+        System.out.println("READY " + server.getAddress().getPort());
+        System.out.flush();
+    }
+
+    private void loadClasses(String dtoPackage, int count) throws Exception {
+        long start = System.nanoTime();
+        prototypes = new SampleDto[count];
+        for (int i = 0; i < count; i++) {
+            Class<?> clazz = Class.forName(dtoPackage + ".Dto" + i);
+            prototypes[i] = (SampleDto) clazz.getDeclaredConstructor().newInstance();
+        }
+        classLoadNanos = System.nanoTime() - start;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String body;
+        if ("/work".equals(path)) {
+            body = Long.toString(work(parseCount(exchange.getRequestURI().getQuery())));
+        } else if ("/stats".equals(path)) {
+            body = stats();
+        } else if ("/exit".equals(path)) {
+            respond(exchange, 200, "bye");
+            System.exit(0);
+            return;
+        } else {
+            respond(exchange, 404, "not found");
+            return;
+        }
+        respond(exchange, 200, body);
+    }
+
+    /**
+     * Allocate n DTOs round-robin over all generated classes and read every getter
+     */
+    private long work(int n) {
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            SampleDto dto = prototypes[cursor].copy();
+            cursor = cursor + 1 == prototypes.length ? 0 : cursor + 1;
+            sum += dto.checksum();
+        }
+        return sum;
+    }
+
+    private String stats() {
+        System.gc();
+        return "{\"mainEnteredMillis\":" + mainEnteredMillis
+                + ",\"uptimeAtMainMillis\":" + uptimeAtMainMillis
+                + ",\"classesLoaded\":" + prototypes.length
+                + ",\"classLoadNanos\":" + classLoadNanos
+                + ",\"jvmLoadedClassCount\":" + ManagementFactory.getClassLoadingMXBean().getLoadedClassCount()
+                + ",\"heapUsedAtMain\":" + heapUsedAtMain
+                + ",\"heapUsed\":" + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()
+                + ",\"metaspaceUsedAtMain\":" + metaspaceUsedAtMain
+                + ",\"metaspaceUsed\":" + metaspaceUsed()
+                + "}";
+    }
+
+    private static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    private static int parseCount(String query) {
+        if (query != null && query.startsWith("n=")) {
+            return Integer.parseInt(query.substring(2));
+        }
+        return 64;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
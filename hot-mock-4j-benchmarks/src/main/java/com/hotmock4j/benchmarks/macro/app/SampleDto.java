@@ -0,0 +1,17 @@
+package com.hotmock4j.benchmarks.macro.app;
+
+/**
+ * Implemented by the generated sample DTOs so the sample application can use them without reflection
+ */
+public interface SampleDto {
+
+    /**
+     * New instance of the same class
+     */
+    SampleDto copy();
+
+    /**
+     * Combines the values of all getters
+     */
+    long checksum();
+}
@@ -0,0 +1,220 @@
+package com.hotmock4j.agent;
+
+import com.hotmock4j.log.AgentLogger;
+import com.hotmock4j.log.LogLevel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options passed after the agent jar, e.g. -javaagent:hotmock4j.jar=port=9090,include=com.acme.*,logLevel=debug.
+ * include and exclude may be repeated or hold several patterns separated by ';'.
+ */
+public class AgentArgs {
+
+    public static final String LOG_LEVEL = "logLevel";
+    public static final String LOG_FILE = "logFile";
+    public static final String PORT = "port";
+    public static final String STORAGE_DIR = "storageDir";
+    public static final String INCLUDE = "include";
+    public static final String EXCLUDE = "exclude";
+    public static final String SKIP_BOOTSTRAP = "skipBootstrap";
+    public static final String SKIP_HIDDEN = "skipHidden";
+    public static final String DEFERRED_INIT = "deferredInit";
+    public static final String BYTECODE_CACHE_SIZE = "bytecodeCacheSize";
+    public static final String BYTECODE_CACHE_DIR = "bytecodeCacheDir";
+    public static final String SPY_BUFFER_SIZE = "spyBufferSize";
+    public static final String REPLAY_DIR = "replayDir";
+    public static final String REPLAY_CACHE_SIZE = "replayCacheSize";
+    public static final String CONTEXT_HEADER = "contextHeader";
+    public static final String CONTEXT_PROPAGATION = "contextPropagation";
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_BYTECODE_CACHE_SIZE = 16;
+    private static final int DEFAULT_SPY_BUFFER_SIZE = 1024;
+    private static final int DEFAULT_REPLAY_CACHE_SIZE = 32;
+
+    private final Map<String, String> values;
+
+    private AgentArgs(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Parse comma separated key=value pairs; null or empty gives the defaults
+     */
+    public static AgentArgs parse(String args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        if (args != null) {
+            for (String pair : args.split(",")) {
+                int idx = pair.indexOf('=');
+                if (idx > 0) {
+                    String key = pair.substring(0, idx).trim();
+                    String value = pair.substring(idx + 1).trim();
+                    if (INCLUDE.equals(key) || EXCLUDE.equals(key)) {
+                        values.merge(key, value, (a, b) -> a + ";" + b);
+                    } else {
+                        values.put(key, value);
+                    }
+                } else if (!pair.trim().isEmpty()) {
+                    values.put(pair.trim(), "true");
+                }
+            }
+        }
+        return new AgentArgs(values);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    /**
+     * Minimum level written to the log, INFO by default
+     */
+    public LogLevel getLogLevel() {
+        return LogLevel.parse(values.get(LOG_LEVEL), LogLevel.INFO);
+    }
+
+    /**
+     * Log file path; "console" writes to stdout instead. Defaults to hotmock4j.log in the working directory.
+     */
+    public String getLogFile() {
+        return get(LOG_FILE, "hotmock4j.log");
+    }
+
+    /**
+     * HTTP port of the UI and API, 8080 by default
+     */
+    public int getPort() {
+        String value = get(PORT, null);
+        if (value == null) {
+            return DEFAULT_PORT;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            AgentLogger.warn("Invalid port {}, using {}", value, DEFAULT_PORT);
+            return DEFAULT_PORT;
+        }
+    }
+
+    /**
+     * Directory holding the MockPlan JSON files, mock-plans in the working directory by default
+     */
+    public String getStorageDir() {
+        return get(STORAGE_DIR, "mock-plans");
+    }
+
+    /**
+     * Package filter of the transformers; bootstrap and hidden classes are skipped unless disabled
+     */
+    public PackageFilter getPackageFilter() {
+        return PackageFilter.compile(getList(INCLUDE), getList(EXCLUDE),
+                !"false".equalsIgnoreCase(get(SKIP_BOOTSTRAP, "true")),
+                !"false".equalsIgnoreCase(get(SKIP_HIDDEN, "true")));
+    }
+
+    /**
+     * Whether premain only installs a placeholder transformer and initializes the agent in the background
+     */
+    public boolean isDeferredInit() {
+        return "true".equalsIgnoreCase(get(DEFERRED_INIT, "false"));
+    }
+
+    /**
+     * Megabytes of woven class files kept in memory, 16 by default; 0 disables the in-memory level
+     */
+    public int getBytecodeCacheSize() {
+        String value = get(BYTECODE_CACHE_SIZE, null);
+        if (value == null) {
+            return DEFAULT_BYTECODE_CACHE_SIZE;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            AgentLogger.warn("Invalid bytecodeCacheSize {}, using {}", value, DEFAULT_BYTECODE_CACHE_SIZE);
+            return DEFAULT_BYTECODE_CACHE_SIZE;
+        }
+    }
+
+    /**
+     * Directory of the on-disk bytecode cache, bytecode-cache under the storage directory by default; "none" disables it
+     */
+    public String getBytecodeCacheDir() {
+        return get(BYTECODE_CACHE_DIR, getStorageDir() + "/bytecode-cache");
+    }
+
+    /**
+     * Spied calls kept per thread until drained, 1024 by default
+     */
+    public int getSpyBufferSize() {
+        String value = get(SPY_BUFFER_SIZE, null);
+        if (value == null) {
+            return DEFAULT_SPY_BUFFER_SIZE;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            AgentLogger.warn("Invalid spyBufferSize {}, using {}", value, DEFAULT_SPY_BUFFER_SIZE);
+            return DEFAULT_SPY_BUFFER_SIZE;
+        }
+    }
+
+    /**
+     * Directory of the replay stores, replay under the storage directory by default
+     */
+    public String getReplayDir() {
+        return get(REPLAY_DIR, getStorageDir() + "/replay");
+    }
+
+    /**
+     * Megabytes of recorded values each replay store keeps in memory, 32 by default
+     */
+    public int getReplayCacheSize() {
+        String value = get(REPLAY_CACHE_SIZE, null);
+        if (value == null) {
+            return DEFAULT_REPLAY_CACHE_SIZE;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            AgentLogger.warn("Invalid replayCacheSize {}, using {}", value, DEFAULT_REPLAY_CACHE_SIZE);
+            return DEFAULT_REPLAY_CACHE_SIZE;
+        }
+    }
+
+    /**
+     * HTTP request header servlets take the mock context from, X-HotMock-Context by default; "none" disables it
+     */
+    public String getContextHeader() {
+        String header = get(CONTEXT_HEADER, "X-HotMock-Context");
+        return "none".equalsIgnoreCase(header) ? null : header;
+    }
+
+    /**
+     * Whether tasks submitted to JDK executors run in the submitting thread's mock context, true by default
+     */
+    public boolean isContextPropagation() {
+        return !"false".equalsIgnoreCase(get(CONTEXT_PROPAGATION, "true"));
+    }
+
+    private List<String> getList(String key) {
+        List<String> list = new ArrayList<>();
+        String value = values.get(key);
+        if (value != null) {
+            for (String item : value.split(";")) {
+                if (!item.trim().isEmpty()) {
+                    list.add(item.trim());
+                }
+            }
+        }
+        return list;
+    }
+
+    public Map<String, String> asMap() {
+        return values;
+    }
+}
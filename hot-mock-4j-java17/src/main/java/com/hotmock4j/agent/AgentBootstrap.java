@@ -1,73 +1,158 @@
 package com.hotmock4j.agent;
 
+import com.hotmock4j.agent.transformer.InstanceRegistrationTransformer;
+import com.hotmock4j.agent.transformer.MockContextTransformer;
+import com.hotmock4j.agent.transformer.MockFieldTransformer;
+import com.hotmock4j.agent.transformer.PendingClassTransformer;
+import com.hotmock4j.core.ClassSearchService;
+import com.hotmock4j.core.MockPlanManager;
 import com.hotmock4j.http.AgentHttpServer;
+import com.hotmock4j.http.handlers.StaticResourceHandler;
+import com.hotmock4j.log.AgentLogger;
 
 import java.lang.instrument.Instrumentation;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class AgentBootstrap {
 
-    public static Map<String, Class> classMap = new HashMap<String, Class>();
+    public static Map<String, Class> classMap = new ConcurrentHashMap<String, Class>();
     public static Instrumentation ins;
+    public static AgentArgs agentArgs = AgentArgs.parse(null);
+    public static PackageFilter packageFilter = agentArgs.getPackageFilter();
+    private static final AtomicBoolean loaded = new AtomicBoolean();
 
 
     public static void premain(String args, Instrumentation instrumentation) throws Exception {
+        loaded.set(true);
         ins = instrumentation;
-        System.out.println("Agent started before main application...");
-        System.out.println("--------start agent");
+        agentArgs = AgentArgs.parse(args);
+        AgentLogger.configure(agentArgs.getLogLevel(), agentArgs.getLogFile());
+        packageFilter = agentArgs.getPackageFilter();
+        AgentLogger.info("Agent started before main application, args: {}", agentArgs.asMap());
+        
+        if (agentArgs.isDeferredInit()) {
+            startDeferredInit(instrumentation);
+            return;
+        }
         
         // Add MockFieldTransformer
         com.hotmock4j.agent.transformer.MockFieldTransformer mockTransformer =
-            new com.hotmock4j.agent.transformer.MockFieldTransformer();
+            new com.hotmock4j.agent.transformer.MockFieldTransformer(packageFilter);
         instrumentation.addTransformer(mockTransformer, true);
-        System.out.println("MockFieldTransformer registered");
+        AgentLogger.info("MockFieldTransformer registered");
         
         // Add InstanceRegistrationTransformer
         com.hotmock4j.agent.transformer.InstanceRegistrationTransformer instanceTransformer =
-            new com.hotmock4j.agent.transformer.InstanceRegistrationTransformer();
+            new com.hotmock4j.agent.transformer.InstanceRegistrationTransformer(packageFilter);
         instrumentation.addTransformer(instanceTransformer, true);
-        System.out.println("InstanceRegistrationTransformer registered");
+        AgentLogger.info("InstanceRegistrationTransformer registered");
+        ClassSearchService.getInstance().indexLoadedClassesAsync();
+        
+        MockContextTransformer.install(instrumentation, agentArgs.getContextHeader(), agentArgs.isContextPropagation());
         
-        AgentHttpServer.startHttpServer();
+        AgentHttpServer.startHttpServer(agentArgs.getPort());
     }
 
 
     public static void agentmain(String args, Instrumentation instrumentation) {
-        System.out.println("--------start agent (attach)");
+        if (!loaded.compareAndSet(false, true)) {
+            AgentLogger.warn("Agent is already loaded, ignoring attach with args: {}", args);
+            return;
+        }
         ins = instrumentation;
+        agentArgs = AgentArgs.parse(args);
+        AgentLogger.configure(agentArgs.getLogLevel(), agentArgs.getLogFile());
+        packageFilter = agentArgs.getPackageFilter();
+        AgentLogger.info("Agent attached, args: {}", agentArgs.asMap());
 
         // Register transformers for attach mode as well
         try {
             com.hotmock4j.agent.transformer.MockFieldTransformer mockTransformer =
-                new com.hotmock4j.agent.transformer.MockFieldTransformer();
+                new com.hotmock4j.agent.transformer.MockFieldTransformer(packageFilter);
             instrumentation.addTransformer(mockTransformer, true);
-            System.out.println("MockFieldTransformer registered (attach)");
+            AgentLogger.info("MockFieldTransformer registered (attach)");
 
             com.hotmock4j.agent.transformer.InstanceRegistrationTransformer instanceTransformer =
-                new com.hotmock4j.agent.transformer.InstanceRegistrationTransformer();
+                new com.hotmock4j.agent.transformer.InstanceRegistrationTransformer(packageFilter);
             instrumentation.addTransformer(instanceTransformer, true);
-            System.out.println("InstanceRegistrationTransformer registered (attach)");
+            AgentLogger.info("InstanceRegistrationTransformer registered (attach)");
         } catch (Throwable t) {
-            System.err.println("Failed to register transformers on attach: " + t.getMessage());
-        }
-
-        for (Class<?> clazz : instrumentation.getAllLoadedClasses()) {
-            classMap.put(clazz.getName(), clazz);
+            AgentLogger.error("Failed to register transformers on attach", t);
         }
 
         // Start HTTP server if not already started in target JVM
         try {
-            AgentHttpServer.startHttpServer();
+            AgentHttpServer.startHttpServer(agentArgs.getPort());
         } catch (Throwable t) {
-            System.err.println("Failed to start AgentHttpServer on attach: " + t.getMessage());
+            AgentLogger.error("Failed to start AgentHttpServer on attach", t);
         }
 
-        System.out.println("--------end agent (attach)");
+        // Scanning the loaded classes is slow in a large JVM, so applying the active plan to them
+        // and indexing them for class search both happen in the background
+        Thread planThread = new Thread(() -> {
+            MockContextTransformer.install(instrumentation, agentArgs.getContextHeader(), agentArgs.isContextPropagation());
+            int retransformed = MockPlanManager.getInstance().retransformActivePlan();
+            AgentLogger.info("Active plan applied to {} loaded classes", retransformed);
+        }, "hotmock4j-attach-plan");
+        planThread.setDaemon(true);
+        planThread.start();
+        ClassSearchService.getInstance().indexLoadedClassesAsync();
+
+        AgentLogger.info("Agent attach completed");
     }
 
 
+    /**
+     * Record classes loaded from now on and finish initialization on a daemon thread, so premain
+     * returns without loading plans, building the transformers or starting the HTTP server.
+     * An anonymous class rather than a lambda keeps the invokedynamic bootstrap out of premain.
+     */
+    private static void startDeferredInit(final Instrumentation instrumentation) {
+        final PendingClassTransformer pendingTransformer = new PendingClassTransformer(packageFilter);
+        instrumentation.addTransformer(pendingTransformer, false);
+        Thread initThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                completeDeferredInit(instrumentation, pendingTransformer);
+            }
+        }, "hotmock4j-init");
+        initThread.setDaemon(true);
+        initThread.start();
+    }
 
 
+    /**
+     * Register the real transformers, then retransform the mocked classes that were loaded in the
+     * meantime and start the HTTP server. The server threads inherit the daemon flag of this thread,
+     * so the agent does not keep the JVM alive.
+     */
+    private static void completeDeferredInit(Instrumentation instrumentation, PendingClassTransformer pendingTransformer) {
+        long start = System.nanoTime();
+        try {
+            Set<String> earlyClasses;
+            try {
+                instrumentation.addTransformer(new MockFieldTransformer(packageFilter), true);
+                instrumentation.addTransformer(new InstanceRegistrationTransformer(packageFilter), true);
+            } finally {
+                // Classes loaded between these two calls pass both transformers and are retransformed once more, which is harmless.
+                // Removed on failure too, so its queue does not grow with every class loaded from then on.
+                instrumentation.removeTransformer(pendingTransformer);
+                earlyClasses = pendingTransformer.drain();
+            }
+            int retransformed = MockPlanManager.getInstance().retransformMockedClasses(earlyClasses);
+            AgentLogger.info("Transformers registered, {} of {} early classes retransformed", retransformed, earlyClasses.size());
+            ClassSearchService.getInstance().indexLoadedClassesAsync();
+            MockContextTransformer.install(instrumentation, agentArgs.getContextHeader(), agentArgs.isContextPropagation());
+
+            AgentHttpServer.startHttpServer(agentArgs.getPort());
+            StaticResourceHandler.preloadAssets();
+            AgentLogger.info("Deferred initialization completed in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (Throwable t) {
+            AgentLogger.error("Deferred initialization failed", t);
+        }
+    }
 }
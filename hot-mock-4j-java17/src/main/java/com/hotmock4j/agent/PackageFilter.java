@@ -0,0 +1,165 @@
+package com.hotmock4j.agent;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decides which classes the transformers look at, before any other work is done.
+ * Include and exclude patterns are compiled into prefix tries that are walked directly on the
+ * JVM internal name (com/acme/Foo), so no name conversion or allocation happens per class.
+ * Patterns may use dots or slashes: "com.acme.*" and "com.acme.**" match everything under com.acme,
+ * "com.acme.Foo*" matches names starting with that prefix, and a name without a wildcard matches the
+ * class itself, its nested classes and, if it is a package, everything under it.
+ * Excludes win over includes; no includes means every class that is not excluded.
+ */
+public final class PackageFilter {
+
+    /** JDK internals, the agent's own classes and its dependencies, relocated or not */
+    static final List<String> DEFAULT_EXCLUDES = Arrays.asList(
+            "java.*", "javax.*", "jdk.*", "sun.*", "com.sun.*",
+            "org.objectweb.asm.*", "com.fasterxml.jackson.*",
+            "com.hotmock4j.agent.*", "com.hotmock4j.core.*", "com.hotmock4j.http.*",
+            "com.hotmock4j.log.*", "com.hotmock4j.jfr.*", "com.hotmock4j.runtime.*",
+            "com.hotmock4j.bootstrap.*", "com.hotmock4j.shaded.*");
+
+    private final Trie includes;
+    private final Trie excludes;
+    private final boolean skipBootstrap;
+    private final boolean skipHidden;
+
+    private PackageFilter(Trie includes, Trie excludes, boolean skipBootstrap, boolean skipHidden) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.skipBootstrap = skipBootstrap;
+        this.skipHidden = skipHidden;
+    }
+
+    /**
+     * Compile the patterns; the default excludes are always added
+     */
+    public static PackageFilter compile(List<String> includePatterns, List<String> excludePatterns,
+                                        boolean skipBootstrap, boolean skipHidden) {
+        Trie includes = null;
+        if (!includePatterns.isEmpty()) {
+            includes = new Trie();
+            for (String pattern : includePatterns) {
+                includes.addPattern(pattern);
+            }
+        }
+        Trie excludes = new Trie();
+        for (String pattern : DEFAULT_EXCLUDES) {
+            excludes.addPattern(pattern);
+        }
+        for (String pattern : excludePatterns) {
+            excludes.addPattern(pattern);
+        }
+        return new PackageFilter(includes, excludes, skipBootstrap, skipHidden);
+    }
+
+    /**
+     * Whether a transformer should look at this class; arguments as passed to ClassFileTransformer.transform
+     */
+    public boolean accepts(ClassLoader loader, String internalName, Class<?> classBeingRedefined) {
+        if (internalName == null) {
+            return false;
+        }
+        if (loader == null && skipBootstrap) {
+            return false;
+        }
+        if (skipHidden && (isGenerated(internalName)
+                || (classBeingRedefined != null && classBeingRedefined.isHidden()))) {
+            return false;
+        }
+        if (excludes.matches(internalName)) {
+            return false;
+        }
+        return includes == null || includes.matches(internalName);
+    }
+
+    /**
+     * Lambdas, hidden classes and runtime proxies (CGLIB, ByteBuddy, Javassist) by their naming conventions
+     */
+    private static boolean isGenerated(String internalName) {
+        return internalName.indexOf("$$") >= 0
+                || internalName.indexOf("$ByteBuddy$") >= 0
+                || internalName.indexOf("$MockitoMock$") >= 0
+                || internalName.indexOf("_$$_jvst") >= 0;
+    }
+
+    /**
+     * Character trie; a node marks either the end of an exact name or a prefix that matches any continuation
+     */
+    static final class Trie {
+        private final Node root = new Node();
+
+        void addPattern(String pattern) {
+            String name = pattern.trim().replace('.', '/');
+            if (name.isEmpty()) {
+                return;
+            }
+            int wildcard = name.indexOf('*');
+            if (wildcard >= 0) {
+                // Only trailing wildcards are meaningful; anything after the first one is ignored
+                node(name.substring(0, wildcard)).prefixEnd = true;
+            } else {
+                node(name).exactEnd = true;
+                node(name + "/").prefixEnd = true;
+                node(name + "$").prefixEnd = true;
+            }
+        }
+
+        boolean matches(String internalName) {
+            Node node = root;
+            if (node.prefixEnd) {
+                return true;
+            }
+            for (int i = 0; i < internalName.length(); i++) {
+                node = node.child(internalName.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+                if (node.prefixEnd) {
+                    return true;
+                }
+            }
+            return node.exactEnd;
+        }
+
+        private Node node(String path) {
+            Node node = root;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.childOrAdd(path.charAt(i));
+            }
+            return node;
+        }
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean prefixEnd;
+        private boolean exactEnd;
+
+        Node child(char c) {
+            char[] k = keys;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node childOrAdd(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                keys[keys.length - 1] = c;
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
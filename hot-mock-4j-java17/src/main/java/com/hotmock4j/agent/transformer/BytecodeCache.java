@@ -0,0 +1,273 @@
+package com.hotmock4j.agent.transformer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.hotmock4j.agent.AgentArgs;
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.core.AgentMetrics;
+import com.hotmock4j.log.AgentLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of woven class files, keyed by the SHA-256 of the original class bytes and of the mock configuration
+ * that shaped the weaving.
+ * An LRU in memory, bounded in bytes, serves re-activating a plan; a directory of entry files serves restarts.
+ * Entry files repeat both hashes and carry a CRC32 of the woven bytes, and are only used when all of them match,
+ * so a changed class or configuration, or a torn file, falls back to weaving. Files are written in the background.
+ */
+public final class BytecodeCache {
+
+    /** Change when the bytes the transformers produce change, so entries written by an older agent are not reused */
+    private static final int WEAVER_VERSION = 3;
+    private static final int MAGIC = 0x484d3442; // "HM4B"
+    private static final String DISABLED_DIR = "none";
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final String weaverFingerprint;
+    private final Map<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private final ExecutorService writer;
+    private final ObjectMapper configMapper = JsonMapper.builder()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .build();
+    private final AgentMetrics metrics = AgentMetrics.getInstance();
+
+    private BytecodeCache(long maxMemoryBytes, File directory) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        String version = BytecodeCache.class.getPackage().getImplementationVersion();
+        this.weaverFingerprint = WEAVER_VERSION + "/" + (version != null ? version : "dev");
+        this.writer = directory == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "hotmock4j-bytecode-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The cache configured by the agent options, shared by the transformers
+     */
+    public static BytecodeCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * A cache that keeps nothing; every call weaves
+     */
+    public static BytecodeCache disabled() {
+        return new BytecodeCache(0, null);
+    }
+
+    /**
+     * @param maxMemoryBytes bound of the in-memory level, 0 to disable it
+     * @param directory      directory of the on-disk level, null to disable it
+     */
+    public static BytecodeCache create(long maxMemoryBytes, File directory) {
+        return new BytecodeCache(maxMemoryBytes, directory);
+    }
+
+    /**
+     * The woven class file for these inputs, from the cache or from the weaver; a null result is not cached
+     *
+     * @param transformer transformer name, part of the key
+     * @param config      what the weaving depends on besides the class bytes, serialized to JSON for hashing
+     */
+    public byte[] getOrWeave(String transformer, String className, byte[] classFile, Object config,
+                             Supplier<byte[]> weaver) {
+        if (maxMemoryBytes <= 0 && directory == null) {
+            return weaver.get();
+        }
+        byte[] classHash;
+        byte[] configHash;
+        try {
+            classHash = sha256(classFile);
+            configHash = sha256(configMapper.writeValueAsBytes(config));
+        } catch (JsonProcessingException e) {
+            AgentLogger.debug("Not caching {}: {}", className, e.getMessage());
+            return weaver.get();
+        }
+        String key = transformer + '/' + className + '/' + hex(classHash) + '/' + hex(configHash);
+
+        byte[] woven = fromMemory(key);
+        if (woven != null) {
+            metrics.recordBytecodeCacheHit("memory");
+            return woven;
+        }
+        woven = fromDisk(key, classHash, configHash);
+        if (woven != null) {
+            metrics.recordBytecodeCacheHit("disk");
+            toMemory(key, woven);
+            return woven;
+        }
+        metrics.recordBytecodeCacheMiss();
+        woven = weaver.get();
+        if (woven != null) {
+            toMemory(key, woven);
+            toDisk(key, classHash, configHash, woven);
+        }
+        return woven;
+    }
+
+    /**
+     * Drop the in-memory level; entry files are kept
+     */
+    public void clearMemory() {
+        synchronized (memory) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+    }
+
+    private byte[] fromMemory(String key) {
+        if (maxMemoryBytes <= 0) {
+            return null;
+        }
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void toMemory(String key, byte[] woven) {
+        if (maxMemoryBytes <= 0 || woven.length > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            byte[] previous = memory.put(key, woven);
+            memoryBytes += woven.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private byte[] fromDisk(String key, byte[] classHash, byte[] configHash) {
+        if (directory == null) {
+            return null;
+        }
+        File file = entryFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+            if (in.readInt() != MAGIC || !weaverFingerprint.equals(in.readUTF()) || !key.equals(in.readUTF())
+                    || !Arrays.equals(readBytes(in), classHash) || !Arrays.equals(readBytes(in), configHash)) {
+                return null;
+            }
+            byte[] woven = readBytes(in);
+            if (in.readLong() != crc32(woven)) {
+                AgentLogger.debug("Discarding corrupt bytecode cache entry {}", file);
+                file.delete();
+                return null;
+            }
+            return woven;
+        } catch (IOException e) {
+            AgentLogger.debug("Ignoring unreadable bytecode cache entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void toDisk(String key, byte[] classHash, byte[] configHash, byte[] woven) {
+        if (writer == null) {
+            return;
+        }
+        writer.execute(() -> {
+            File file = entryFile(key);
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(woven.length + 256);
+                try (DataOutputStream out = new DataOutputStream(bytes)) {
+                    out.writeInt(MAGIC);
+                    out.writeUTF(weaverFingerprint);
+                    out.writeUTF(key);
+                    writeBytes(out, classHash);
+                    writeBytes(out, configHash);
+                    writeBytes(out, woven);
+                    out.writeLong(crc32(woven));
+                }
+                Files.createDirectories(directory.toPath());
+                // Write aside and move, so a reader never sees a partial entry
+                File temp = File.createTempFile("entry", ".tmp", directory);
+                Files.write(temp.toPath(), bytes.toByteArray());
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                AgentLogger.warn("Failed to write bytecode cache entry {}: {}", file, e.getMessage());
+            }
+        });
+    }
+
+    private File entryFile(String key) {
+        return new File(directory, hex(sha256((weaverFingerprint + '/' + key).getBytes(StandardCharsets.UTF_8))) + ".bin");
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("bad length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static long crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static final class Holder {
+        private static final BytecodeCache INSTANCE = fromArgs(AgentBootstrap.agentArgs);
+
+        private static BytecodeCache fromArgs(AgentArgs args) {
+            String dir = args.getBytecodeCacheDir();
+            return new BytecodeCache(args.getBytecodeCacheSize() * 1024L * 1024L,
+                    DISABLED_DIR.equalsIgnoreCase(dir) ? null : new File(dir));
+        }
+    }
+}
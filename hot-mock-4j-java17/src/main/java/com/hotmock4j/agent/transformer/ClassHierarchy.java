@@ -0,0 +1,138 @@
+package com.hotmock4j.agent.transformer;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Type hierarchy read from class file bytes, for the rare transforms that need stack map frames computed.
+ * ASM's default getCommonSuperClass loads both classes, from inside transform() and through the wrong loader;
+ * here the class files are read as resources of the defining loader and only their headers are parsed, so no
+ * class is loaded or initialized. Results are cached per loader, weakly keyed so a discarded loader is freed.
+ */
+final class ClassHierarchy {
+
+    private static final ClassHierarchy INSTANCE = new ClassHierarchy();
+    private static final String OBJECT = "java/lang/Object";
+    private static final TypeInfo UNKNOWN = new TypeInfo(OBJECT, new String[0], false);
+
+    private final Map<ClassLoader, Map<String, TypeInfo>> typesByLoader = new WeakHashMap<>();
+    private final Map<String, TypeInfo> bootstrapTypes = new ConcurrentHashMap<>();
+
+    private ClassHierarchy() {
+    }
+
+    static ClassHierarchy getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The closest common superclass of two internal names, with the semantics of ClassWriter.getCommonSuperClass
+     */
+    String commonSuperClass(ClassLoader loader, String type1, String type2) {
+        if (isAssignableFrom(loader, type1, type2)) {
+            return type1;
+        }
+        if (isAssignableFrom(loader, type2, type1)) {
+            return type2;
+        }
+        if (typeInfo(loader, type1).isInterface || typeInfo(loader, type2).isInterface) {
+            return OBJECT;
+        }
+        Set<String> ancestors = new HashSet<>();
+        for (String type = type1; type != null; type = typeInfo(loader, type).superName) {
+            ancestors.add(type);
+        }
+        for (String type = type2; type != null; type = typeInfo(loader, type).superName) {
+            if (ancestors.contains(type)) {
+                return type;
+            }
+        }
+        return OBJECT;
+    }
+
+    private boolean isAssignableFrom(ClassLoader loader, String target, String type) {
+        if (OBJECT.equals(target)) {
+            return true;
+        }
+        Set<String> seen = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(type);
+        while (!pending.isEmpty()) {
+            String current = pending.poll();
+            if (current.equals(target)) {
+                return true;
+            }
+            if (!seen.add(current) || OBJECT.equals(current)) {
+                continue;
+            }
+            TypeInfo info = typeInfo(loader, current);
+            if (info.superName != null) {
+                pending.add(info.superName);
+            }
+            for (String itf : info.interfaces) {
+                pending.add(itf);
+            }
+        }
+        return false;
+    }
+
+    private TypeInfo typeInfo(ClassLoader loader, String internalName) {
+        Map<String, TypeInfo> types;
+        if (loader == null) {
+            types = bootstrapTypes;
+        } else {
+            synchronized (typesByLoader) {
+                types = typesByLoader.computeIfAbsent(loader, k -> new ConcurrentHashMap<>());
+            }
+        }
+        TypeInfo info = types.get(internalName);
+        if (info == null) {
+            info = read(loader, internalName);
+            types.put(internalName, info);
+        }
+        return info;
+    }
+
+    /**
+     * Parse the class file header; a type whose class file cannot be found is treated as a direct subclass of Object
+     */
+    private static TypeInfo read(ClassLoader loader, String internalName) {
+        if (OBJECT.equals(internalName)) {
+            return new TypeInfo(null, new String[0], false);
+        }
+        String resource = internalName + ".class";
+        ClassLoader source = loader != null ? loader : ClassLoader.getPlatformClassLoader();
+        try (InputStream in = source.getResourceAsStream(resource)) {
+            if (in == null) {
+                return UNKNOWN;
+            }
+            ClassReader reader = new ClassReader(in);
+            return new TypeInfo(reader.getSuperName(), reader.getInterfaces(),
+                    (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+        } catch (IOException | RuntimeException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static final class TypeInfo {
+        private final String superName;
+        private final String[] interfaces;
+        private final boolean isInterface;
+
+        TypeInfo(String superName, String[] interfaces, boolean isInterface) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.isInterface = isInterface;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.runtime.MockRuntime;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Weaves a method in fault mode. On entry MockRuntime.faultEnter may wait or throw, and returns a permit that is
+ * kept in a local. Every return and a catch-all handler after the body pass it to MockRuntime.faultExit.
+ * The visitor goes first in the chain, so a mocked return value or stub is delayed and failed the same way as
+ * the real code. With a context, calls from threads that do not carry it skip faultEnter and hold no permit.
+ * The added local changes every frame, so classes with faults are woven with COMPUTE_FRAMES.
+ */
+final class FaultMethodVisitor extends AdviceAdapter {
+
+    private static final Type RUNTIME = Type.getType(MockRuntime.class);
+    private static final Type OBJECT = Type.getType(Object.class);
+    private static final Method FAULT_ENTER = Method.getMethod("Object faultEnter(Class, String)");
+    private static final Method FAULT_EXIT = Method.getMethod("void faultExit(Object)");
+    private static final Method IN_CONTEXT = Method.getMethod("boolean inContext(String)");
+
+    /** Internal name of the woven class, or null when it cannot be loaded as a constant */
+    private final String owner;
+    private final String key;
+    /** Mock context the fault is limited to, or null */
+    private final String context;
+    private final Label bodyStart = new Label();
+    private final Label bodyEnd = new Label();
+    private final Label handler = new Label();
+    private int permitLocal;
+
+    /**
+     * @param key     "className#methodName", with the descriptor when the mock selects one overload
+     * @param context mock context a thread must carry for the fault to apply, or null
+     */
+    FaultMethodVisitor(int api, MethodVisitor methodVisitor, int access, String name, String descriptor,
+                       String owner, String key, String context) {
+        super(api, methodVisitor, access, name, descriptor);
+        this.owner = owner;
+        this.key = key;
+        this.context = context;
+    }
+
+    @Override
+    protected void onMethodEnter() {
+        permitLocal = newLocal(OBJECT);
+        Label entered = new Label();
+        if (context != null) {
+            Label inContext = new Label();
+            push(context);
+            invokeStatic(RUNTIME, IN_CONTEXT);
+            ifZCmp(NE, inContext);
+            visitInsn(ACONST_NULL);
+            goTo(entered);
+            mark(inContext);
+        }
+        if (owner != null) {
+            push(Type.getObjectType(owner));
+        } else {
+            visitInsn(ACONST_NULL);
+        }
+        push(key);
+        invokeStatic(RUNTIME, FAULT_ENTER);
+        mark(entered);
+        storeLocal(permitLocal);
+        mark(bodyStart);
+    }
+
+    @Override
+    protected void onMethodExit(int opcode) {
+        // Exceptions, thrown here or by callees, release the permit in the handler
+        if (opcode == ATHROW) {
+            return;
+        }
+        loadLocal(permitLocal);
+        invokeStatic(RUNTIME, FAULT_EXIT);
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        mark(bodyEnd);
+        // Registered last, so the method's own handlers still take precedence
+        visitTryCatchBlock(bodyStart, bodyEnd, handler, null);
+        mark(handler);
+        loadLocal(permitLocal);
+        invokeStatic(RUNTIME, FAULT_EXIT);
+        throwException();
+        super.visitMaxs(maxStack, maxLocals);
+    }
+}
@@ -0,0 +1,23 @@
+package com.hotmock4j.agent.transformer;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * ClassWriter whose common superclass lookups read class files of the defining loader instead of loading classes.
+ * Built from the ClassReader, so methods the transformer leaves alone are copied without being re-encoded.
+ */
+class HierarchyClassWriter extends ClassWriter {
+
+    private final ClassLoader loader;
+
+    HierarchyClassWriter(ClassReader classReader, int flags, ClassLoader loader) {
+        super(classReader, flags);
+        this.loader = loader;
+    }
+
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        return ClassHierarchy.getInstance().commonSuperClass(loader, type1, type2);
+    }
+}
@@ -1,6 +1,13 @@
 package com.hotmock4j.agent.transformer;
 
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.agent.PackageFilter;
+import com.hotmock4j.core.AgentMetrics;
+import com.hotmock4j.core.CoreDispatcher;
 import com.hotmock4j.core.InstanceTracker;
+import com.hotmock4j.jfr.ClassTransformedEvent;
+import com.hotmock4j.log.AgentLogger;
+import com.hotmock4j.runtime.MockRuntime;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -18,15 +25,58 @@ import java.security.ProtectionDomain;
 public class InstanceRegistrationTransformer implements ClassFileTransformer {
     
     private final InstanceTracker instanceTracker;
+    private final AgentMetrics.TransformerMetrics metrics;
+    private final PackageFilter packageFilter;
+    private final BytecodeCache bytecodeCache;
     
     public InstanceRegistrationTransformer() {
+        this(AgentBootstrap.packageFilter);
+    }
+
+    public InstanceRegistrationTransformer(PackageFilter packageFilter) {
+        this(packageFilter, BytecodeCache.getInstance());
+    }
+
+    public InstanceRegistrationTransformer(PackageFilter packageFilter, BytecodeCache bytecodeCache) {
+        this.packageFilter = packageFilter;
+        this.bytecodeCache = bytecodeCache;
         this.instanceTracker = InstanceTracker.getInstance();
+        this.metrics = AgentMetrics.getInstance().transformer(AgentMetrics.INSTANCE_REGISTRATION_TRANSFORMER);
+        CoreDispatcher.install();
     }
 
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, 
                            ProtectionDomain protectionDomain, byte[] classFileBuffer) 
                            throws IllegalClassFormatException {
+        if (!packageFilter.accepts(loader, className, classBeingRedefined)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        ClassTransformedEvent event = new ClassTransformedEvent();
+        event.begin();
+        byte[] result = null;
+        try {
+            result = transformClass(loader, className, classFileBuffer);
+            return result;
+        } finally {
+            metrics.record(start, result);
+            if (result != null && event.shouldCommit()) {
+                event.transformer = AgentMetrics.INSTANCE_REGISTRATION_TRANSFORMER;
+                event.className = className;
+                event.retransform = classBeingRedefined != null;
+                event.bytesIn = classFileBuffer.length;
+                event.bytesOut = result.length;
+                event.commit();
+            }
+        }
+    }
+    
+    private byte[] transformClass(ClassLoader loader, String className, byte[] classFileBuffer) {
+        
+        if (className == null) {
+            return null;
+        }
         
         // Convert internal class name to standard class name
         String standardClassName = className.replace('/', '.');
@@ -46,9 +96,15 @@ public class InstanceRegistrationTransformer implements ClassFileTransformer {
             return null;
         }
         
-        // If there are mock configurations, perform bytecode enhancement
+        // If there are mock configurations, perform bytecode enhancement; the weaving depends on nothing but the class
+        return bytecodeCache.getOrWeave(AgentMetrics.INSTANCE_REGISTRATION_TRANSFORMER, className, classFileBuffer,
+                AgentMetrics.INSTANCE_REGISTRATION_TRANSFORMER, () -> weave(loader, standardClassName, classFileBuffer));
+    }
+    
+    private byte[] weave(ClassLoader loader, String standardClassName, byte[] classFileBuffer) {
         ClassReader classReader = new ClassReader(classFileBuffer);
-        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        // Registration adds no branches, so the class's own frames stay valid and nothing needs computing
+        ClassWriter classWriter = new HierarchyClassWriter(classReader, 0, loader);
         
         ClassVisitor classVisitor = new ClassVisitor(Opcodes.ASM9, classWriter) {
             
@@ -66,7 +122,7 @@ public class InstanceRegistrationTransformer implements ClassFileTransformer {
             }
         };
         
-        classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
+        classReader.accept(classVisitor, 0);
         return classWriter.toByteArray();
     }
     
@@ -86,22 +142,25 @@ public class InstanceRegistrationTransformer implements ClassFileTransformer {
         public void visitInsn(int opcode) {
             // Register instance before constructor returns
             if (opcode == Opcodes.RETURN) {
-                // Register instance before constructor returns
-                // Push this reference to stack top (this is fully initialized at this point)
-                mv.visitVarInsn(Opcodes.ALOAD, 0);
-                
-                // Call InstanceTracker.registerInstance method
+                // Register instance before constructor returns (this is fully initialized at this point)
+                // Call MockRuntime.registerInstance, which forwards to InstanceTracker
                 mv.visitLdcInsn(className); // Class name
                 mv.visitVarInsn(Opcodes.ALOAD, 0); // this reference
                 mv.visitMethodInsn(Opcodes.INVOKESTATIC, 
-                                 Type.getInternalName(InstanceTracker.class),
+                                 Type.getInternalName(MockRuntime.class),
                                  "registerInstance",
                                  "(Ljava/lang/String;Ljava/lang/Object;)V",
                                  false);
                 
-                System.out.println("Added instance registration for class: " + className);
+                AgentLogger.debug("Added instance registration for class: {}", className);
             }
             super.visitInsn(opcode);
         }
+        
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            // The operand stack may hold anything at a return, so room for both arguments is added on top
+            super.visitMaxs(maxStack + 2, maxLocals);
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.runtime.MockRuntime;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Weaves a method in memo mode. On entry the arguments are boxed into a local array and MockRuntime.memoLookup
+ * is asked for a cached result, which is returned when there is one. For instance methods the receiver is the
+ * first element of the array, so each instance only gets the results computed for it. Otherwise the original code runs, and each
+ * return passes its value and the same array to MockRuntime.memoStore. Exceptions are not cached.
+ * Like spies, memoized methods add a local, so their classes are woven with COMPUTE_FRAMES.
+ */
+final class MemoMethodVisitor extends AdviceAdapter {
+
+    private static final Type RUNTIME = Type.getType(MockRuntime.class);
+    private static final Type OBJECT = Type.getType(Object.class);
+    private static final Type OBJECT_ARRAY = Type.getType(Object[].class);
+    private static final Method MEMO_LOOKUP = Method.getMethod("Object memoLookup(String, Object[])");
+    private static final Method MEMO_STORE = Method.getMethod("void memoStore(Object, Object[], String)");
+
+    private final String key;
+    private int argumentsLocal;
+
+    /**
+     * @param key "className#methodName" followed by the descriptor
+     */
+    MemoMethodVisitor(int api, MethodVisitor methodVisitor, int access, String name, String descriptor, String key) {
+        super(api, methodVisitor, access, name, descriptor);
+        this.key = key;
+    }
+
+    @Override
+    protected void onMethodEnter() {
+        argumentsLocal = newLocal(OBJECT_ARRAY);
+        if ((methodAccess & ACC_STATIC) != 0) {
+            loadArgArray();
+        } else {
+            Type[] argumentTypes = getArgumentTypes();
+            push(argumentTypes.length + 1);
+            newArray(OBJECT);
+            dup();
+            push(0);
+            loadThis();
+            arrayStore(OBJECT);
+            for (int i = 0; i < argumentTypes.length; i++) {
+                dup();
+                push(i + 1);
+                loadArg(i);
+                box(argumentTypes[i]);
+                arrayStore(OBJECT);
+            }
+        }
+        storeLocal(argumentsLocal);
+
+        // GeneratorAdapter writes to the next visitor directly, so this return does not reach onMethodExit
+        Label miss = new Label();
+        push(key);
+        loadLocal(argumentsLocal);
+        invokeStatic(RUNTIME, MEMO_LOOKUP);
+        dup();
+        ifNull(miss);
+        Type returnType = getReturnType();
+        if (returnType.getSort() == Type.OBJECT || returnType.getSort() == Type.ARRAY) {
+            checkCast(returnType);
+        } else {
+            unbox(returnType);
+        }
+        returnValue();
+        mark(miss);
+        pop();
+    }
+
+    @Override
+    protected void onMethodExit(int opcode) {
+        if (opcode == ATHROW) {
+            return;
+        }
+        Type returnType = getReturnType();
+        if (returnType.getSize() == 2) {
+            dup2();
+        } else {
+            dup();
+        }
+        valueOf(returnType);
+        loadLocal(argumentsLocal);
+        push(key);
+        invokeStatic(RUNTIME, MEMO_STORE);
+    }
+}
@@ -0,0 +1,271 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.core.AgentMetrics;
+import com.hotmock4j.core.CoreDispatcher;
+import com.hotmock4j.jfr.ClassTransformedEvent;
+import com.hotmock4j.log.AgentLogger;
+import com.hotmock4j.runtime.MockRuntime;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Weaves the entry points of mock contexts, which are fixed classes outside the package filter.
+ * HttpServlet.service (javax and jakarta) opens a scope with the value of the context header for the request.
+ * The task-taking methods of the JDK executors, ThreadPoolExecutor, ScheduledThreadPoolExecutor, ForkJoinPool
+ * and the fallback executor of CompletableFuture, wrap their task so it runs in the submitting thread's
+ * context; this covers submit and invokeAll of the pools and async CompletableFuture stages. A task submitted
+ * without a context is passed on unchanged. JDK classes can only reach the runtime on the bootstrap class path, so propagation is off
+ * when the agent runs with bootstrapRuntime=false.
+ */
+public class MockContextTransformer implements ClassFileTransformer {
+
+    private static final Type RUNTIME = Type.getType(MockRuntime.class);
+    private static final Method CONTEXT_OPEN = Method.getMethod("Object contextOpen(String)");
+    private static final Method CONTEXT_CLOSE = Method.getMethod("void contextClose(Object)");
+
+    /** Woven executor methods by class, as name and descriptor; the task is the first parameter */
+    private static final Map<String, Set<String>> EXECUTOR_METHODS = new HashMap<>();
+    private static final List<String> SERVLET_PACKAGES = Arrays.asList("javax/servlet", "jakarta/servlet");
+
+    static {
+        EXECUTOR_METHODS.put("java/util/concurrent/ThreadPoolExecutor", new HashSet<>(Arrays.asList(
+                "execute(Ljava/lang/Runnable;)V")));
+        EXECUTOR_METHODS.put("java/util/concurrent/ScheduledThreadPoolExecutor", new HashSet<>(Arrays.asList(
+                "schedule(Ljava/lang/Runnable;JLjava/util/concurrent/TimeUnit;)Ljava/util/concurrent/ScheduledFuture;",
+                "schedule(Ljava/util/concurrent/Callable;JLjava/util/concurrent/TimeUnit;)Ljava/util/concurrent/ScheduledFuture;")));
+        // Runs async CompletableFuture stages when the common pool has a single thread
+        EXECUTOR_METHODS.put("java/util/concurrent/CompletableFuture$ThreadPerTaskExecutor", new HashSet<>(Arrays.asList(
+                "execute(Ljava/lang/Runnable;)V")));
+        EXECUTOR_METHODS.put("java/util/concurrent/ForkJoinPool", new HashSet<>(Arrays.asList(
+                "execute(Ljava/lang/Runnable;)V",
+                "submit(Ljava/lang/Runnable;)Ljava/util/concurrent/ForkJoinTask;",
+                "submit(Ljava/lang/Runnable;Ljava/lang/Object;)Ljava/util/concurrent/ForkJoinTask;",
+                "submit(Ljava/util/concurrent/Callable;)Ljava/util/concurrent/ForkJoinTask;")));
+    }
+
+    /** Request header the context is read from, or null */
+    private final String header;
+    private final boolean propagate;
+    private final AgentMetrics.TransformerMetrics metrics;
+
+    public MockContextTransformer(String header, boolean propagate) {
+        this.header = header;
+        this.propagate = propagate;
+        this.metrics = AgentMetrics.getInstance().transformer(AgentMetrics.MOCK_CONTEXT_TRANSFORMER);
+        CoreDispatcher.install();
+    }
+
+    /**
+     * Register the transformer and retransform the entry points that are already loaded; does nothing when
+     * there is no header and no propagation
+     */
+    public static void install(Instrumentation instrumentation, String header, boolean propagate) {
+        if (propagate && MockRuntime.class.getClassLoader() != null) {
+            AgentLogger.info("Not propagating mock contexts to executors: the runtime is not on the bootstrap class path");
+            propagate = false;
+        }
+        if (header == null && !propagate) {
+            return;
+        }
+        MockContextTransformer transformer = new MockContextTransformer(header, propagate);
+        instrumentation.addTransformer(transformer, true);
+        List<Class<?>> loaded = new ArrayList<>();
+        for (Class<?> type : instrumentation.getAllLoadedClasses()) {
+            if (transformer.isTarget(type.getName().replace('.', '/')) && instrumentation.isModifiableClass(type)) {
+                loaded.add(type);
+            }
+        }
+        if (!loaded.isEmpty()) {
+            try {
+                instrumentation.retransformClasses(loaded.toArray(new Class<?>[0]));
+            } catch (Throwable t) {
+                AgentLogger.warn("Failed to weave mock context entry points {}: {}", loaded, t.toString());
+            }
+        }
+        AgentLogger.info("Mock contexts from header {}, propagation {}, {} loaded entry points woven",
+                header, propagate ? "on" : "off", loaded.size());
+    }
+
+    private boolean isTarget(String className) {
+        return (propagate && EXECUTOR_METHODS.containsKey(className)) || (header != null && isServlet(className));
+    }
+
+    private static boolean isServlet(String className) {
+        for (String servletPackage : SERVLET_PACKAGES) {
+            if (className.equals(servletPackage + "/http/HttpServlet")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classFileBuffer) {
+        if (className == null || !isTarget(className)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        ClassTransformedEvent event = new ClassTransformedEvent();
+        event.begin();
+        byte[] result = null;
+        try {
+            result = isServlet(className) ? weaveServlet(loader, className, classFileBuffer)
+                    : weaveExecutor(className, classFileBuffer);
+            return result;
+        } catch (RuntimeException e) {
+            AgentLogger.warn("Failed to weave mock context into {}: {}", className, e.toString());
+            return null;
+        } finally {
+            metrics.record(start, result);
+            if (result != null && event.shouldCommit()) {
+                event.transformer = AgentMetrics.MOCK_CONTEXT_TRANSFORMER;
+                event.className = className;
+                event.retransform = classBeingRedefined != null;
+                event.bytesIn = classFileBuffer.length;
+                event.bytesOut = result.length;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Replace the task argument with MockRuntime.contextWrap(task) on entry; the argument keeps its type and
+     * no branch is added, so the class's frames stay valid
+     */
+    private byte[] weaveExecutor(String className, byte[] classFileBuffer) {
+        Set<String> methods = EXECUTOR_METHODS.get(className);
+        ClassReader classReader = new ClassReader(classFileBuffer);
+        ClassWriter classWriter = new ClassWriter(classReader, 0);
+        classReader.accept(new ClassVisitor(Opcodes.ASM9, classWriter) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if (!methods.contains(name + descriptor)) {
+                    return methodVisitor;
+                }
+                String taskDescriptor = Type.getArgumentTypes(descriptor)[0].getDescriptor();
+                return new MethodVisitor(Opcodes.ASM9, methodVisitor) {
+                    @Override
+                    public void visitCode() {
+                        super.visitCode();
+                        super.visitVarInsn(Opcodes.ALOAD, 1);
+                        super.visitMethodInsn(Opcodes.INVOKESTATIC, RUNTIME.getInternalName(), "contextWrap",
+                                "(" + taskDescriptor + ")" + taskDescriptor, false);
+                        super.visitVarInsn(Opcodes.ASTORE, 1);
+                    }
+
+                    @Override
+                    public void visitMaxs(int maxStack, int maxLocals) {
+                        super.visitMaxs(Math.max(maxStack, 1), maxLocals);
+                    }
+                };
+            }
+        }, 0);
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Open a scope with the request's context header around service(ServletRequest, ServletResponse)
+     */
+    private byte[] weaveServlet(ClassLoader loader, String className, byte[] classFileBuffer) {
+        String servletPackage = className.substring(0, className.indexOf("/http/"));
+        String serviceDescriptor = "(L" + servletPackage + "/ServletRequest;L" + servletPackage + "/ServletResponse;)V";
+        Type requestType = Type.getObjectType(servletPackage + "/http/HttpServletRequest");
+        ClassReader classReader = new ClassReader(classFileBuffer);
+        // The scope is kept in a new local, so the frames are computed
+        ClassWriter classWriter = new HierarchyClassWriter(classReader, ClassWriter.COMPUTE_FRAMES, loader);
+        classReader.accept(new ClassVisitor(Opcodes.ASM9, classWriter) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+                if (!"service".equals(name) || !serviceDescriptor.equals(descriptor)) {
+                    return methodVisitor;
+                }
+                return new ServiceMethodVisitor(methodVisitor, access, name, descriptor, requestType, header);
+            }
+        }, ClassReader.SKIP_FRAMES);
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Opens the request's scope on entry and closes it on every return and, through a catch-all handler, on
+     * every exception
+     */
+    private static final class ServiceMethodVisitor extends AdviceAdapter {
+        private final Type requestType;
+        private final String header;
+        private final Label bodyStart = new Label();
+        private final Label bodyEnd = new Label();
+        private final Label handler = new Label();
+        private int scopeLocal;
+
+        ServiceMethodVisitor(MethodVisitor methodVisitor, int access, String name, String descriptor,
+                             Type requestType, String header) {
+            super(Opcodes.ASM9, methodVisitor, access, name, descriptor);
+            this.requestType = requestType;
+            this.header = header;
+        }
+
+        @Override
+        protected void onMethodEnter() {
+            scopeLocal = newLocal(Type.getType(Object.class));
+            Label notHttp = new Label();
+            Label read = new Label();
+            loadArg(0);
+            instanceOf(requestType);
+            ifZCmp(EQ, notHttp);
+            loadArg(0);
+            checkCast(requestType);
+            push(header);
+            invokeInterface(requestType, Method.getMethod("String getHeader(String)"));
+            goTo(read);
+            mark(notHttp);
+            visitInsn(ACONST_NULL);
+            mark(read);
+            invokeStatic(RUNTIME, CONTEXT_OPEN);
+            storeLocal(scopeLocal);
+            mark(bodyStart);
+        }
+
+        @Override
+        protected void onMethodExit(int opcode) {
+            if (opcode == ATHROW) {
+                return;
+            }
+            loadLocal(scopeLocal);
+            invokeStatic(RUNTIME, CONTEXT_CLOSE);
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            mark(bodyEnd);
+            visitTryCatchBlock(bodyStart, bodyEnd, handler, null);
+            mark(handler);
+            loadLocal(scopeLocal);
+            invokeStatic(RUNTIME, CONTEXT_CLOSE);
+            throwException();
+            super.visitMaxs(maxStack, maxLocals);
+        }
+    }
+}
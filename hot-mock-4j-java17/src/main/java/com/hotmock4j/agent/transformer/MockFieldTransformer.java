@@ -1,6 +1,23 @@
 package com.hotmock4j.agent.transformer;
 
+import com.hotmock4j.core.AgentEventBus;
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.agent.PackageFilter;
+import com.hotmock4j.core.AgentMetrics;
+import com.hotmock4j.core.ClassResolver;
+import com.hotmock4j.core.ClassSearchService;
+import com.hotmock4j.core.CoreDispatcher;
+import com.hotmock4j.core.MethodReplay;
+import com.hotmock4j.core.FaultInjector;
+import com.hotmock4j.core.MemoCacheManager;
+import com.hotmock4j.core.MethodStub;
 import com.hotmock4j.core.MockPlanManager;
+import com.hotmock4j.core.ReplayStoreManager;
+import com.hotmock4j.core.RolloutScheduler;
+import com.hotmock4j.core.TemplateRecorder;
+import com.hotmock4j.jfr.ClassTransformedEvent;
+import com.hotmock4j.log.AgentLogger;
+import com.hotmock4j.runtime.MockRuntime;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -11,6 +28,8 @@ import org.objectweb.asm.Opcodes;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Mock field and method transformer
@@ -19,39 +38,193 @@ import java.security.ProtectionDomain;
 public class MockFieldTransformer implements ClassFileTransformer {
     
     private final MockPlanManager mockPlanManager;
+    private final AgentEventBus eventBus;
+    private final ClassSearchService classSearchService;
+    private final AgentMetrics.TransformerMetrics metrics;
+    private final PackageFilter packageFilter;
+    private final BytecodeCache bytecodeCache;
     
     public MockFieldTransformer() {
+        this(AgentBootstrap.packageFilter);
+    }
+
+    public MockFieldTransformer(PackageFilter packageFilter) {
+        this(packageFilter, BytecodeCache.getInstance());
+    }
+
+    public MockFieldTransformer(PackageFilter packageFilter, BytecodeCache bytecodeCache) {
+        this.packageFilter = packageFilter;
+        this.bytecodeCache = bytecodeCache;
         this.mockPlanManager = MockPlanManager.getInstance();
+        this.eventBus = AgentEventBus.getInstance();
+        this.classSearchService = ClassSearchService.getInstance();
+        this.metrics = AgentMetrics.getInstance().transformer(AgentMetrics.MOCK_FIELD_TRANSFORMER);
+        CoreDispatcher.install();
     }
 
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, 
                            ProtectionDomain protectionDomain, byte[] classFileBuffer) 
                            throws IllegalClassFormatException {
+        // Every new class goes into the class search index, in scope or not
+        if (classBeingRedefined == null && className != null) {
+            classSearchService.classLoaded(loader, className);
+        }
+        if (!packageFilter.accepts(loader, className, classBeingRedefined)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        ClassTransformedEvent event = new ClassTransformedEvent();
+        event.begin();
+        byte[] result = null;
+        try {
+            result = transformClass(loader, className, classBeingRedefined, classFileBuffer);
+            return result;
+        } finally {
+            metrics.record(start, result);
+            if (result != null && event.shouldCommit()) {
+                event.transformer = AgentMetrics.MOCK_FIELD_TRANSFORMER;
+                event.className = className;
+                event.retransform = classBeingRedefined != null;
+                event.bytesIn = classFileBuffer.length;
+                event.bytesOut = result.length;
+                event.commit();
+            }
+        }
+    }
+    
+    private byte[] transformClass(ClassLoader loader, String className, Class<?> classBeingRedefined, byte[] classFileBuffer) {
+        
+        if (className == null) {
+            return null;
+        }
         
         // Convert internal class name to standard class name
         String standardClassName = className.replace('/', '.');
         
+        // Notify event stream subscribers about newly loaded classes
+        if (classBeingRedefined == null) {
+            eventBus.classLoaded(standardClassName);
+        }
+        
         // Check if there are mock configurations for this class
         com.hotmock4j.core.MockPlan activePlan = mockPlanManager.getActiveMockPlan();
         if (activePlan == null) {
             return null;
         }
         
+        // Templates of the class only describe instances to build; they do not mock it
         com.hotmock4j.core.MockClass mockClass = activePlan.getMockClassList().stream()
-                .filter(mc -> mc.getClassName().equals(standardClassName))
+                .filter(mc -> mc.getClassName().equals(standardClassName) && !mc.isTemplate())
                 .findFirst()
                 .orElse(null);
         
         if (mockClass == null) {
             return null;
         }
+        ClassResolver.getInstance().recordDefiningLoader(standardClassName, loader);
+        if (mockClass.getMethods() != null) {
+            for (com.hotmock4j.core.MockMethod mockMethod : mockClass.getMethods()) {
+                if (isRecording(mockMethod)) {
+                    TemplateRecorder.getInstance().register(standardClassName, mockMethod);
+                }
+                if (isMemoized(mockMethod)) {
+                    MemoCacheManager.getInstance().register(standardClassName, mockMethod);
+                }
+                if (isFaulted(mockMethod)) {
+                    FaultInjector.getInstance().register(standardClassName, mockMethod);
+                }
+                if (isRolledOut(mockMethod)) {
+                    RolloutScheduler.getInstance().register(standardClassName, mockMethod);
+                }
+                if (mockMethod.isActive() && mockMethod.getReplay() != null && mockMethod.getReplay().isEnabled()
+                        && !ReplayStoreManager.isValidStoreName(mockMethod.getReplay().getStore())) {
+                    AgentLogger.warn("Not replaying {}.{}: invalid store name '{}'", standardClassName,
+                            mockMethod.getMethodName(), mockMethod.getReplay().getStore());
+                }
+            }
+        }
         
-        // If there are mock configurations, perform bytecode enhancement
+        // If there are mock configurations, perform bytecode enhancement, or reuse an earlier one for the same
+        // class bytes and configuration
+        return bytecodeCache.getOrWeave(AgentMetrics.MOCK_FIELD_TRANSFORMER, className, classFileBuffer, mockClass,
+                () -> weave(loader, className, classFileBuffer, mockClass));
+    }
+    
+    private byte[] weave(ClassLoader loader, String className, byte[] classFileBuffer, com.hotmock4j.core.MockClass mockClass) {
         ClassReader classReader = new ClassReader(classFileBuffer);
-        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        if (hasSpies(mockClass)) {
+            // Spies, replay recorders, memoized and faulted methods add locals, which invalidates the existing frames
+            return weave(classReader, loader, className, mockClass, ClassWriter.COMPUTE_FRAMES);
+        }
+        try {
+            return weave(classReader, loader, className, mockClass, 0);
+        } catch (RuntimeException e) {
+            // Frames that cannot be kept as they are; compute them from class file headers instead
+            AgentLogger.debug("Recomputing stack map frames for {}: {}", className, e.toString());
+            return weave(classReader, loader, className, mockClass, ClassWriter.COMPUTE_FRAMES);
+        }
+    }
+    
+    private static boolean hasSpies(com.hotmock4j.core.MockClass mockClass) {
+        if (mockClass.getMethods() != null) {
+            for (com.hotmock4j.core.MockMethod mockMethod : mockClass.getMethods()) {
+                if (isSpied(mockMethod) || isReplayed(mockMethod, MethodReplay.Mode.RECORD) || isMemoized(mockMethod)
+                        || isFaulted(mockMethod)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isSpied(com.hotmock4j.core.MockMethod mockMethod) {
+        return mockMethod.isActive() && mockMethod.getMethodSpy() != null && mockMethod.getMethodSpy().isEnabled();
+    }
+    
+    private static boolean isReplayed(com.hotmock4j.core.MockMethod mockMethod, MethodReplay.Mode mode) {
+        MethodReplay replay = mockMethod.getReplay();
+        return mockMethod.isActive() && replay != null && replay.isEnabled() && replay.getMode() == mode
+                && ReplayStoreManager.isValidStoreName(replay.getStore());
+    }
+    
+    private static boolean isMemoized(com.hotmock4j.core.MockMethod mockMethod) {
+        return mockMethod.isActive() && mockMethod.getMemo() != null && mockMethod.getMemo().isEnabled();
+    }
+    
+    private static boolean isFaulted(com.hotmock4j.core.MockMethod mockMethod) {
+        return mockMethod.isActive() && mockMethod.getFault() != null && mockMethod.getFault().isEnabled();
+    }
+    
+    private static boolean isRolledOut(com.hotmock4j.core.MockMethod mockMethod) {
+        return mockMethod.isActive() && mockMethod.getRollout() != null && mockMethod.getRollout().isEnabled();
+    }
+    
+    private static boolean isRecording(com.hotmock4j.core.MockMethod mockMethod) {
+        return mockMethod.isActive() && mockMethod.getRecording() != null && mockMethod.getRecording().isEnabled();
+    }
+    
+    /**
+     * Weave the mocks into the class. Without COMPUTE_FRAMES the class's own stack map frames are kept, the
+     * prologues add the frames they need, and methods without mocks are copied unchanged.
+     */
+    private byte[] weave(ClassReader classReader, ClassLoader loader, String className,
+                         com.hotmock4j.core.MockClass mockClass, int writerFlags) {
+        String standardClassName = className.replace('/', '.');
+        ClassWriter classWriter = new HierarchyClassWriter(classReader, writerFlags, loader);
         
         ClassVisitor classVisitor = new ClassVisitor(Opcodes.ASM9, classWriter) {
+            private boolean classLiterals;
+            private boolean writeFrames;
+            
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                // LDC of a class constant needs a class file version of at least 49 (Java 5), frames at least 50.
+                // With COMPUTE_FRAMES no frames are written, and the local-adding visitors would reject them.
+                classLiterals = (version & 0xFFFF) >= Opcodes.V1_5;
+                writeFrames = (version & 0xFFFF) >= Opcodes.V1_6 && (writerFlags & ClassWriter.COMPUTE_FRAMES) == 0;
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
             
             @Override
             public FieldVisitor visitField(int access, String name, String descriptor, 
@@ -65,7 +238,7 @@ public class MockFieldTransformer implements ClassFileTransformer {
                             // Set mock value based on field type
                             Object mockValue = convertToType(mockField.getMockFieldValue().toString(), descriptor);
                             if (mockValue != null) {
-                                System.out.println("Mocking field: " + standardClassName + "." + name + " = " + mockValue);
+                                AgentLogger.debug("Mocking field: {}.{} = {}", standardClassName, name, mockValue);
                                 // Create field visitor to modify field value
                                 return new MockFieldVisitor(Opcodes.ASM9, fieldVisitor, access, name, descriptor, mockValue);
                             }
@@ -81,12 +254,56 @@ public class MockFieldTransformer implements ClassFileTransformer {
                 MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
                 
                 // Check if there are mock configurations for this method
-                if (mockClass.getMethods() != null) {
+                // Returning before a constructor has called super() would not verify
+                if (mockClass.getMethods() != null && !"<init>".equals(name)) {
+                    boolean faulted = false;
                     for (com.hotmock4j.core.MockMethod mockMethod : mockClass.getMethods()) {
-                        if (!mockMethod.getMethodName().equals(name)) continue;
-                        // Case 1: explicit returnObject mock
-                        if (mockMethod.getReturnObject() != null) {
-                            return new MockMethodVisitor(Opcodes.ASM9, methodVisitor, access, name, descriptor, mockMethod);
+                        if (!mockMethod.getMethodName().equals(name) || !mockMethod.isActive()) continue;
+                        if (mockMethod.getDescriptor() != null && !mockMethod.getDescriptor().equals(descriptor)) continue;
+                        // Fault mode: innermost, so whatever the other modes return is delayed and failed as well
+                        if (!faulted && isFaulted(mockMethod)) {
+                            methodVisitor = new FaultMethodVisitor(Opcodes.ASM9, methodVisitor, access, name, descriptor,
+                                    classLiterals ? className : null, mockMethod.methodKey(standardClassName), mockMethod.getContext());
+                            faulted = true;
+                        }
+                        // Replay mode: return values are recorded to a store, or looked up in it by the arguments
+                        if (descriptor.charAt(descriptor.lastIndexOf(')') + 1) != 'V') {
+                            String replayKey = mockMethod.getReplay() == null ? null
+                                    : mockMethod.getReplay().getStore() + "/" + standardClassName + "#" + name + descriptor;
+                            if (isReplayed(mockMethod, MethodReplay.Mode.RECORD)) {
+                                return SpyMethodVisitor.replayRecorder(Opcodes.ASM9, methodVisitor, access, name,
+                                        descriptor, replayKey);
+                            }
+                            if (isReplayed(mockMethod, MethodReplay.Mode.REPLAY) && classLiterals) {
+                                return new ReplayMethodVisitor(Opcodes.ASM9, methodVisitor, access, descriptor,
+                                        className, replayKey, writeFrames);
+                            }
+                            // Memo mode: the first call with some arguments runs, later ones return its result
+                            if (isMemoized(mockMethod)) {
+                                return new MemoMethodVisitor(Opcodes.ASM9, methodVisitor, access, name, descriptor,
+                                        standardClassName + "#" + name + descriptor);
+                            }
+                        }
+                        // Record mode: the real method runs and the objects it returns become templates
+                        boolean recording = isRecording(mockMethod) && descriptor.charAt(descriptor.lastIndexOf(')') + 1) == 'L';
+                        if (recording) {
+                            methodVisitor = new RecordReturnMethodVisitor(Opcodes.ASM9, methodVisitor, mockMethod.methodKey(standardClassName));
+                        }
+                        // Spy mode: the real method runs and sampled calls are recorded
+                        if (isSpied(mockMethod)) {
+                            return new SpyMethodVisitor(Opcodes.ASM9, methodVisitor, access, name, descriptor,
+                                    standardClassName + "#" + name + descriptor, mockMethod.getMethodSpy().getSampleRate());
+                        }
+                        if (recording) {
+                            return methodVisitor;
+                        }
+                        // A rollout answers only a share of the calls with the mock below
+                        String rolloutKey = isRolledOut(mockMethod) ? mockMethod.methodKey(standardClassName) : null;
+                        // Case 1: explicit returnObject mock, or argument-matching stubs
+                        if (mockMethod.getReturnObject() != null
+                                || (mockMethod.getStubs() != null && !mockMethod.getStubs().isEmpty())) {
+                            return new MockMethodVisitor(Opcodes.ASM9, methodVisitor, access, name, descriptor, mockMethod, standardClassName,
+                                    writeFrames, mockMethod.getContext(), rolloutKey);
                         }
                         // Case 2: mount template for object return types
                         if (mockMethod.getActiveReturnTemplateName() != null &&
@@ -94,7 +311,8 @@ public class MockFieldTransformer implements ClassFileTransformer {
                             // Only for reference return types
                             String retDesc = descriptor.substring(descriptor.lastIndexOf(')') + 1);
                             if (retDesc.startsWith("L") || retDesc.startsWith("[")) {
-                                return new MockMethodVisitor.TemplateReturnMethodVisitor(Opcodes.ASM9, methodVisitor, access, name, descriptor, mockMethod);
+                                return new MockMethodVisitor.TemplateReturnMethodVisitor(Opcodes.ASM9, methodVisitor, access, name, descriptor, mockMethod, standardClassName,
+                                        classLiterals ? className : null, writeFrames, mockMethod.getContext(), rolloutKey);
                             }
                         }
                     }
@@ -111,7 +329,8 @@ public class MockFieldTransformer implements ClassFileTransformer {
             }
         };
         
-        classReader.accept(classVisitor, ClassReader.EXPAND_FRAMES);
+        int readerFlags = (writerFlags & ClassWriter.COMPUTE_FRAMES) != 0 ? ClassReader.SKIP_FRAMES : 0;
+        classReader.accept(classVisitor, readerFlags);
         return classWriter.toByteArray();
     }
     
@@ -144,7 +363,7 @@ public class MockFieldTransformer implements ClassFileTransformer {
                     return null;
             }
         } catch (Exception e) {
-            System.err.println("Failed to convert mock value '" + value + "' to type " + descriptor + ": " + e.getMessage());
+            AgentLogger.warn("Failed to convert mock value '{}' to type {}: {}", value, descriptor, e.getMessage());
             return null;
         }
     }
@@ -195,18 +414,16 @@ public class MockFieldTransformer implements ClassFileTransformer {
                 if (mockClass.getFields() != null) {
                     for (com.hotmock4j.core.MockField mockField : mockClass.getFields()) {
                         if (mockField.getFieldName().equals(name) && mockField.getMockFieldValue() != null) {
-                            // If GETFIELD, intercept and return mock value
-                            System.out.println("Intercepting field get: " + owner + "." + name);
-                            
-                            // Remove original GETFIELD instruction
-                            // GETFIELD instruction pops object reference from stack top, then pushes field value
-                            // We need to pop object reference, then push mock value
-                            mv.visitInsn(Opcodes.POP); // Pop object reference
-                            
-                            // Insert code to return mock value
                             Object mockValue = convertToType(mockField.getMockFieldValue().toString(), descriptor);
                             if (mockValue != null) {
-                                // Generate corresponding load instruction based on field type
+                                // If GETFIELD, intercept and return mock value
+                                AgentLogger.debug("Intercepting field get: {}.{}", owner, name);
+                                
+                                // Remove original GETFIELD instruction
+                                // GETFIELD instruction pops object reference from stack top, then pushes field value
+                                // We need to pop object reference, then push mock value; the stack shape is unchanged,
+                                // so no frame is affected
+                                mv.visitInsn(Opcodes.POP); // Pop object reference
                                 generateLoadMockValue(mockValue, descriptor);
                                 return; // Skip original instruction
                             }
@@ -224,31 +441,15 @@ public class MockFieldTransformer implements ClassFileTransformer {
         private void generateLoadMockValue(Object mockValue, String descriptor) {
             switch (descriptor) {
                 case "Z": // boolean
-                    mv.visitLdcInsn((Boolean) mockValue);
-                    break;
                 case "B": // byte
-                    mv.visitLdcInsn((Byte) mockValue);
-                    break;
                 case "C": // char
-                    mv.visitLdcInsn((Character) mockValue);
-                    break;
                 case "S": // short
-                    mv.visitLdcInsn((Short) mockValue);
-                    break;
                 case "I": // int
-                    mv.visitLdcInsn((Integer) mockValue);
-                    break;
                 case "J": // long
-                    mv.visitLdcInsn((Long) mockValue);
-                    break;
                 case "F": // float
-                    mv.visitLdcInsn((Float) mockValue);
-                    break;
                 case "D": // double
-                    mv.visitLdcInsn((Double) mockValue);
-                    break;
                 case "Ljava/lang/String;": // String
-                    mv.visitLdcInsn((String) mockValue);
+                    PrologueMethodVisitor.pushConstant(mv, mockValue);
                     break;
                 default:
                     // For other reference types, return null
@@ -286,63 +487,124 @@ public class MockFieldTransformer implements ClassFileTransformer {
                         return null;
                 }
             } catch (Exception e) {
-                System.err.println("Failed to convert mock value '" + value + "' to type " + descriptor + ": " + e.getMessage());
+                AgentLogger.warn("Failed to convert mock value '{}' to type {}: {}", value, descriptor, e.getMessage());
                 return null;
             }
         }
         }
 
+    /**
+     * Passes each object the method returns to MockRuntime.recordReturn; the stack is the same before and
+     * after the added call, so the method's frames stay valid
+     */
+    private static class RecordReturnMethodVisitor extends MethodVisitor {
+        private final String key;
+        
+        RecordReturnMethodVisitor(int api, MethodVisitor methodVisitor, String key) {
+            super(api, methodVisitor);
+            this.key = key;
+        }
+        
+        @Override
+        public void visitInsn(int opcode) {
+            if (opcode == Opcodes.ARETURN) {
+                super.visitInsn(Opcodes.DUP);
+                super.visitLdcInsn(key);
+                super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                        org.objectweb.asm.Type.getInternalName(MockRuntime.class),
+                        "recordReturn",
+                        "(Ljava/lang/Object;Ljava/lang/String;)V",
+                        false);
+            }
+            super.visitInsn(opcode);
+        }
+        
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            super.visitMaxs(maxStack + 2, maxLocals);
+        }
+    }
+
         /**
          * Mock method visitor for modifying method return values
          */
-        private static class MockMethodVisitor extends MethodVisitor {
+        private static class MockMethodVisitor extends PrologueMethodVisitor {
+        private final int access;
         private final String methodName;
         private final String descriptor;
         private final com.hotmock4j.core.MockMethod mockMethod;
+        private final String className;
         
         public MockMethodVisitor(int api, MethodVisitor methodVisitor, int access, 
-                               String methodName, String descriptor, com.hotmock4j.core.MockMethod mockMethod) {
-            super(api, methodVisitor);
+                               String methodName, String descriptor, com.hotmock4j.core.MockMethod mockMethod,
+                               String className, boolean writeFrames, String context, String rolloutKey) {
+            super(api, methodVisitor, writeFrames, context, rolloutKey);
+            this.access = access;
             this.methodName = methodName;
             this.descriptor = descriptor;
             this.mockMethod = mockMethod;
+            this.className = className;
+        }
+
+        /**
+         * Emit a call counting this mock hit, keyed by "className#methodName"
+         */
+        private static void visitRecordHit(MethodVisitor mv, String className, String methodName) {
+            mv.visitLdcInsn(className + "#" + methodName);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+                    org.objectweb.asm.Type.getInternalName(MockRuntime.class),
+                    "recordHit",
+                    "(Ljava/lang/String;)V",
+                    false);
         }
 
         /**
          * Method visitor to return an instance built from mounted template for object return types.
          */
-        private static class TemplateReturnMethodVisitor extends MethodVisitor {
+        private static class TemplateReturnMethodVisitor extends PrologueMethodVisitor {
             private final String methodName;
             private final String descriptor;
             private final com.hotmock4j.core.MockMethod mockMethod;
+            private final String className;
+            /** Internal name of the woven class, pushed as the caller; null when the class file cannot load a class constant */
+            private final String callerInternalName;
 
             public TemplateReturnMethodVisitor(int api, MethodVisitor mv, int access,
-                                               String methodName, String descriptor, com.hotmock4j.core.MockMethod mockMethod) {
-                super(api, mv);
+                                               String methodName, String descriptor, com.hotmock4j.core.MockMethod mockMethod,
+                                               String className, String callerInternalName, boolean writeFrames,
+                                               String context, String rolloutKey) {
+                super(api, mv, writeFrames, context, rolloutKey);
                 this.methodName = methodName;
                 this.descriptor = descriptor;
                 this.mockMethod = mockMethod;
+                this.className = className;
+                this.callerInternalName = callerInternalName;
             }
 
             @Override
-            public void visitCode() {
-                super.visitCode();
-                // Build instance via MockPlanManager.buildInstanceFromActiveTemplate(className, templateName)
+            protected boolean visitPrologue() {
+                // Build instance via MockPlanManager.buildInstanceFromActiveTemplate(caller, className, templateName)
                 String returnClassName = mockMethod.getReturnClassName();
                 String tplName = mockMethod.getActiveReturnTemplateName();
                 if (returnClassName == null || tplName == null || tplName.trim().isEmpty()) {
-                    return; // fall back to original
+                    return false; // fall back to original
                 }
-                System.out.println("Mocking method (template): " + methodName + " -> " + returnClassName + "#" + tplName);
+                AgentLogger.debug("Mocking method (template): {} -> {}#{}", methodName, returnClassName, tplName);
+                visitRecordHit(mv, className, methodName);
 
-                // Push arguments for static call
+                // Push arguments for static call; the caller class lets the template resolve in this class's loader
+                if (callerInternalName != null) {
+                    mv.visitLdcInsn(org.objectweb.asm.Type.getObjectType(callerInternalName));
+                } else {
+                    mv.visitInsn(Opcodes.ACONST_NULL);
+                }
                 mv.visitLdcInsn(returnClassName);
                 mv.visitLdcInsn(tplName);
-                // Call static helper: com.maple.core.MockPlanManager.buildInstanceFromActiveTemplate(String,String)Object
+                // Call static helper: MockRuntime.buildFromTemplate(Class,String,String)Object
                 mv.visitMethodInsn(Opcodes.INVOKESTATIC,
-                        "com/hotmock4j/core/MockPlanManager",
-                        "buildInstanceFromActiveTemplate",
-                        "(Ljava/lang/String;Ljava/lang/String;)Ljava/lang/Object;",
+                        org.objectweb.asm.Type.getInternalName(MockRuntime.class),
+                        "buildFromTemplate",
+                        "(Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;)Ljava/lang/Object;",
                         false);
 
                 // Cast to expected return type and return
@@ -352,68 +614,121 @@ public class MockFieldTransformer implements ClassFileTransformer {
                     mv.visitTypeInsn(Opcodes.CHECKCAST, internalName);
                 }
                 mv.visitInsn(Opcodes.ARETURN);
+                return true;
             }
         }
         
         @Override
-        public void visitCode() {
-            super.visitCode();
-            
-            // Insert code to return mock value at method start
+        protected boolean visitPrologue() {
+            // Insert code to return mock value at method start; stubs come first and may fall through
             String returnType = descriptor.substring(descriptor.lastIndexOf(')') + 1);
+            boolean emitted = false;
+
+            List<MethodStub> stubs = new ArrayList<>();
+            if (mockMethod.getStubs() != null) {
+                for (MethodStub stub : mockMethod.getStubs()) {
+                    if (stub != null && isReturnable(stub.getReturnObject(), returnType)) {
+                        stubs.add(stub);
+                    }
+                }
+            }
+            if (!stubs.isEmpty()) {
+                AgentLogger.debug("Mocking method: {} with {} stubs", methodName, stubs.size());
+                emitted = StubCompiler.compile(this, access, descriptor, className + "#" + methodName, stubs,
+                        value -> {
+                            visitRecordHit(this, className, methodName);
+                            visitReturn(this, returnType, value);
+                        });
+            }
+
             Object mockValue = mockMethod.getReturnObject();
-            
             if (mockValue != null) {
-                System.out.println("Mocking method: " + methodName + " returns " + mockValue);
-                
-                // Generate corresponding return instruction based on return type
-                switch (returnType) {
-                    case "Z": // boolean
-                        mv.visitLdcInsn(Boolean.parseBoolean(mockValue.toString()));
-                        mv.visitInsn(Opcodes.IRETURN);
-                        break;
-                    case "B": // byte
-                        mv.visitLdcInsn(Byte.parseByte(mockValue.toString()));
-                        mv.visitInsn(Opcodes.IRETURN);
-                        break;
-                    case "C": // char
-                        mv.visitLdcInsn(mockValue.toString().charAt(0));
-                        mv.visitInsn(Opcodes.IRETURN);
-                        break;
-                    case "S": // short
-                        mv.visitLdcInsn(Short.parseShort(mockValue.toString()));
-                        mv.visitInsn(Opcodes.IRETURN);
-                        break;
-                    case "I": // int
-                        mv.visitLdcInsn(Integer.parseInt(mockValue.toString()));
-                        mv.visitInsn(Opcodes.IRETURN);
-                        break;
-                    case "J": // long
-                        mv.visitLdcInsn(Long.parseLong(mockValue.toString()));
-                        mv.visitInsn(Opcodes.LRETURN);
-                        break;
-                    case "F": // float
-                        mv.visitLdcInsn(Float.parseFloat(mockValue.toString()));
-                        mv.visitInsn(Opcodes.FRETURN);
-                        break;
-                    case "D": // double
-                        mv.visitLdcInsn(Double.parseDouble(mockValue.toString()));
-                        mv.visitInsn(Opcodes.DRETURN);
-                        break;
-                    case "Ljava/lang/String;": // String
+                AgentLogger.debug("Mocking method: {} returns {}", methodName, mockValue);
+                visitRecordHit(this, className, methodName);
+                visitReturn(this, returnType, mockValue);
+                emitted = true;
+            }
+            return emitted;
+        }
+
+        /**
+         * Whether a stub's value can be returned as this return type; null only from void and reference types
+         */
+        private boolean isReturnable(Object value, String returnType) {
+            boolean primitive = returnType.length() == 1 && !"V".equals(returnType);
+            if (value == null) {
+                if (!primitive) {
+                    return true;
+                }
+            } else {
+                try {
+                    // Emit into a throwaway visitor, so a bad value fails here rather than halfway through the prologue
+                    visitReturn(new MethodVisitor(Opcodes.ASM9) { }, returnType, value);
+                    return true;
+                } catch (RuntimeException e) {
+                    // fall through to the warning
+                }
+            }
+            AgentLogger.warn("Skipping stub of {}#{}: cannot return '{}' as {}", className, methodName, value, returnType);
+            return false;
+        }
+
+        /**
+         * Emit the return of a mock value converted to the return type
+         */
+        private static void visitReturn(MethodVisitor mv, String returnType, Object mockValue) {
+            // Generate corresponding return instruction based on return type
+            switch (returnType) {
+                case "Z": // boolean
+                    pushConstant(mv, Boolean.parseBoolean(mockValue.toString()));
+                    mv.visitInsn(Opcodes.IRETURN);
+                    break;
+                case "B": // byte
+                    pushConstant(mv, Byte.parseByte(mockValue.toString()));
+                    mv.visitInsn(Opcodes.IRETURN);
+                    break;
+                case "C": // char
+                    pushConstant(mv, mockValue.toString().charAt(0));
+                    mv.visitInsn(Opcodes.IRETURN);
+                    break;
+                case "S": // short
+                    pushConstant(mv, Short.parseShort(mockValue.toString()));
+                    mv.visitInsn(Opcodes.IRETURN);
+                    break;
+                case "I": // int
+                    pushConstant(mv, Integer.parseInt(mockValue.toString()));
+                    mv.visitInsn(Opcodes.IRETURN);
+                    break;
+                case "J": // long
+                    pushConstant(mv, Long.parseLong(mockValue.toString()));
+                    mv.visitInsn(Opcodes.LRETURN);
+                    break;
+                case "F": // float
+                    mv.visitLdcInsn(Float.parseFloat(mockValue.toString()));
+                    mv.visitInsn(Opcodes.FRETURN);
+                    break;
+                case "D": // double
+                    mv.visitLdcInsn(Double.parseDouble(mockValue.toString()));
+                    mv.visitInsn(Opcodes.DRETURN);
+                    break;
+                case "V": // void
+                    // void method directly returns
+                    mv.visitInsn(Opcodes.RETURN);
+                    break;
+                case "Ljava/lang/String;": // String
+                    if (mockValue != null) {
                         mv.visitLdcInsn(mockValue.toString());
-                        mv.visitInsn(Opcodes.ARETURN);
-                        break;
-                    case "V": // void
-                        // void method directly returns
-                        mv.visitInsn(Opcodes.RETURN);
-                        break;
-                    default:
-                        // For other reference types, return null
+                    } else {
+                        // a stub may return null
                         mv.visitInsn(Opcodes.ACONST_NULL);
-                        mv.visitInsn(Opcodes.ARETURN);
-                        break;
-                }
+                    }
+                    mv.visitInsn(Opcodes.ARETURN);
+                    break;
+                default:
+                    // For other reference types, return null
+                    mv.visitInsn(Opcodes.ACONST_NULL);
+                    mv.visitInsn(Opcodes.ARETURN);
+                    break;
             }
         }
     }
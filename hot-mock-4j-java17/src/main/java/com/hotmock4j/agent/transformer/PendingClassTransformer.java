@@ -0,0 +1,46 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.agent.PackageFilter;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Placeholder transformer installed by premain when initialization is deferred.
+ * It never changes a class; it only records the in-scope classes loaded before the real transformers
+ * are registered, so the ones the active plan mocks can be retransformed afterwards.
+ */
+public class PendingClassTransformer implements ClassFileTransformer {
+
+    private final PackageFilter packageFilter;
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    public PendingClassTransformer(PackageFilter packageFilter) {
+        this.packageFilter = packageFilter;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classFileBuffer) {
+        if (classBeingRedefined == null && packageFilter.accepts(loader, className, null)) {
+            pending.add(className);
+        }
+        return null;
+    }
+
+    /**
+     * Take the recorded classes as standard class names
+     */
+    public Set<String> drain() {
+        Set<String> classNames = new HashSet<>();
+        String className;
+        while ((className = pending.poll()) != null) {
+            classNames.add(className.replace('/', '.'));
+        }
+        return classNames;
+    }
+}
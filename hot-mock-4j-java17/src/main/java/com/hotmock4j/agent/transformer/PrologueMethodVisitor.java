@@ -0,0 +1,237 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.runtime.MockRuntime;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Base for visitors that insert a prologue at the start of a method which returns early.
+ * Weaving keeps the method's own stack map frames instead of computing new ones. The original code is no longer
+ * reached by falling through, so it needs a frame at its first instruction. That frame equals the method's
+ * initial frame and is written as F_SAME, unless the original code already has a frame there.
+ * Prologues that branch route their instructions through this visitor and mark branch targets with
+ * visitJoinLabel; those get an F_SAME frame the same way, since the prologue never changes locals. A branch
+ * that leaves one value on the stack gets an F_SAME1 frame holding its type.
+ * A prologue with a context is skipped by calls from threads that do not carry it, and one with a rollout key
+ * by the calls MockRuntime.rolloutDivert does not divert to the mock.
+ */
+abstract class PrologueMethodVisitor extends MethodVisitor {
+
+    /** Enough for the longest prologue: a long or double argument stored into the replay lookup's arguments */
+    private static final int PROLOGUE_MAX_STACK = 7;
+
+    private final boolean writeFrames;
+    /** Mock context the prologue is limited to, or null */
+    private final String context;
+    /** Method key of a method in a rollout, or null if every call takes the prologue */
+    private final String rolloutKey;
+    private boolean framePending;
+    /** Type of the value on the stack at the pending frame, or null if the stack is empty */
+    private Object pendingStackTop;
+
+    /**
+     * @param writeFrames whether the class file carries stack map frames (version 50 and later)
+     */
+    protected PrologueMethodVisitor(int api, MethodVisitor methodVisitor, boolean writeFrames) {
+        this(api, methodVisitor, writeFrames, null, null);
+    }
+
+    /**
+     * @param context    mock context a thread must carry to take the prologue, or null
+     * @param rolloutKey method key of the rollout when only its calls take the prologue, otherwise null
+     */
+    protected PrologueMethodVisitor(int api, MethodVisitor methodVisitor, boolean writeFrames, String context,
+                                    String rolloutKey) {
+        super(api, methodVisitor);
+        this.writeFrames = writeFrames;
+        this.context = context;
+        this.rolloutKey = rolloutKey;
+    }
+
+    /**
+     * Emit the prologue; return false if nothing was emitted and the method is left unchanged
+     */
+    protected abstract boolean visitPrologue();
+
+    @Override
+    public void visitCode() {
+        super.visitCode();
+        Label original = context != null || rolloutKey != null ? new Label() : null;
+        if (context != null) {
+            super.visitLdcInsn(context);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(MockRuntime.class), "inContext",
+                    "(Ljava/lang/String;)Z", false);
+            super.visitJumpInsn(Opcodes.IFEQ, original);
+        }
+        if (rolloutKey != null) {
+            super.visitLdcInsn(rolloutKey);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(MockRuntime.class), "rolloutDivert",
+                    "(Ljava/lang/String;)Z", false);
+            super.visitJumpInsn(Opcodes.IFEQ, original);
+        }
+        if (visitPrologue()) {
+            framePending = writeFrames;
+            pendingStackTop = null;
+        }
+        if (original != null) {
+            // Calls that skip the prologue start the original code, which already gets a frame
+            super.visitLabel(original);
+            framePending = writeFrames;
+            pendingStackTop = null;
+        }
+    }
+
+    /**
+     * Place a label that prologue code jumps to; the next instruction gets a frame
+     */
+    protected void visitJoinLabel(Label label) {
+        visitJoinLabel(label, null);
+    }
+
+    /**
+     * Place a label that prologue code jumps to with one value on the stack, of a frame type such as
+     * Opcodes.INTEGER or an internal class name
+     */
+    protected void visitJoinLabel(Label label, Object stackTop) {
+        super.visitLabel(label);
+        framePending = writeFrames;
+        pendingStackTop = stackTop;
+    }
+
+    /**
+     * Push a constant the way javac would; LDC cannot load boolean, byte, short or char constants
+     */
+    static void pushConstant(MethodVisitor mv, Object value) {
+        if (value instanceof Boolean) {
+            pushInt(mv, (Boolean) value ? 1 : 0);
+        } else if (value instanceof Character) {
+            pushInt(mv, (Character) value);
+        } else if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
+            pushInt(mv, ((Number) value).intValue());
+        } else if (value instanceof Long && ((Long) value == 0L || (Long) value == 1L)) {
+            mv.visitInsn(Opcodes.LCONST_0 + ((Long) value).intValue());
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * Write the pending frame before the next instruction
+     */
+    private void flushFrame() {
+        if (framePending) {
+            framePending = false;
+            if (pendingStackTop != null) {
+                super.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[] {pendingStackTop});
+            } else {
+                super.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+            }
+        }
+    }
+
+    @Override
+    public void visitFrame(int type, int numLocal, Object[] local, int numStack, Object[] stack) {
+        // The original code has its own frame at its first instruction; it is kept instead of ours
+        framePending = false;
+        super.visitFrame(type, numLocal, local, numStack, stack);
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+        flushFrame();
+        super.visitInsn(opcode);
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+        flushFrame();
+        super.visitIntInsn(opcode, operand);
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int varIndex) {
+        flushFrame();
+        super.visitVarInsn(opcode, varIndex);
+    }
+
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+        flushFrame();
+        super.visitTypeInsn(opcode, type);
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+        flushFrame();
+        super.visitFieldInsn(opcode, owner, name, descriptor);
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        flushFrame();
+        super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                       Object... bootstrapMethodArguments) {
+        flushFrame();
+        super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+        flushFrame();
+        super.visitJumpInsn(opcode, label);
+    }
+
+    @Override
+    public void visitLdcInsn(Object value) {
+        flushFrame();
+        super.visitLdcInsn(value);
+    }
+
+    @Override
+    public void visitIincInsn(int varIndex, int increment) {
+        flushFrame();
+        super.visitIincInsn(varIndex, increment);
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+        flushFrame();
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        flushFrame();
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+        flushFrame();
+        super.visitMultiANewArrayInsn(descriptor, numDimensions);
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        super.visitMaxs(Math.max(maxStack, PROLOGUE_MAX_STACK), maxLocals);
+    }
+}
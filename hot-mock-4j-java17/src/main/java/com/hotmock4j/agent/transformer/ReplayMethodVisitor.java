@@ -0,0 +1,100 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.runtime.MockRuntime;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Weaves a method in replay mode. The prologue boxes the arguments and asks MockRuntime.replay for the value
+ * recorded for them; a value is cast or unboxed to the return type and returned, and on a miss the original
+ * code runs.
+ */
+final class ReplayMethodVisitor extends PrologueMethodVisitor {
+
+    private final int access;
+    private final String descriptor;
+    private final String owner;
+    private final String key;
+
+    /**
+     * @param owner internal name of the woven class, passed as the caller
+     * @param key   store name, '/' and "className#methodName" followed by the descriptor
+     */
+    ReplayMethodVisitor(int api, MethodVisitor methodVisitor, int access, String descriptor, String owner,
+                        String key, boolean writeFrames) {
+        super(api, methodVisitor, writeFrames);
+        this.access = access;
+        this.descriptor = descriptor;
+        this.owner = owner;
+        this.key = key;
+    }
+
+    @Override
+    protected boolean visitPrologue() {
+        visitLdcInsn(Type.getObjectType(owner));
+        visitLdcInsn(key);
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        pushConstant(this, argumentTypes.length);
+        visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+        int local = (access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            visitInsn(Opcodes.DUP);
+            pushConstant(this, i);
+            visitVarInsn(argumentTypes[i].getOpcode(Opcodes.ILOAD), local);
+            String boxed = boxedType(argumentTypes[i]);
+            if (boxed != null) {
+                visitMethodInsn(Opcodes.INVOKESTATIC, boxed, "valueOf",
+                        "(" + argumentTypes[i].getDescriptor() + ")L" + boxed + ";", false);
+            }
+            visitInsn(Opcodes.AASTORE);
+            local += argumentTypes[i].getSize();
+        }
+        visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(MockRuntime.class), "replay",
+                "(Ljava/lang/Class;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/Object;", false);
+
+        Label miss = new Label();
+        visitInsn(Opcodes.DUP);
+        visitJumpInsn(Opcodes.IFNULL, miss);
+        Type returnType = Type.getReturnType(descriptor);
+        String boxed = boxedType(returnType);
+        if (boxed != null) {
+            visitTypeInsn(Opcodes.CHECKCAST, boxed);
+            visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxed, returnType.getClassName() + "Value",
+                    "()" + returnType.getDescriptor(), false);
+        } else {
+            visitTypeInsn(Opcodes.CHECKCAST, returnType.getInternalName());
+        }
+        visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        visitJoinLabel(miss, "java/lang/Object");
+        visitInsn(Opcodes.POP);
+        return true;
+    }
+
+    /**
+     * Internal name of the wrapper class of a primitive type, null for references
+     */
+    private static String boxedType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return "java/lang/Boolean";
+            case Type.CHAR:
+                return "java/lang/Character";
+            case Type.BYTE:
+                return "java/lang/Byte";
+            case Type.SHORT:
+                return "java/lang/Short";
+            case Type.INT:
+                return "java/lang/Integer";
+            case Type.FLOAT:
+                return "java/lang/Float";
+            case Type.LONG:
+                return "java/lang/Long";
+            case Type.DOUBLE:
+                return "java/lang/Double";
+            default:
+                return null;
+        }
+    }
+}
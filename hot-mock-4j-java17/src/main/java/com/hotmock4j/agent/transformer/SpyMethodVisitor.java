@@ -0,0 +1,140 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.runtime.MockRuntime;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Weaves a spied method. The original code runs unchanged; on entry MockRuntime.spySample decides whether the
+ * call is recorded, and only then are the arguments boxed and the start time taken. Returns pass the boxed
+ * result to MockRuntime, and a catch-all handler after the body passes the exception and rethrows it.
+ * The added locals change every frame of the method, so classes with spies are woven with COMPUTE_FRAMES.
+ * Methods recording a replay store are woven the same way, with every call sampled, their returns passed to
+ * MockRuntime.replayRecord and no handler, since exceptions are not replayed.
+ */
+final class SpyMethodVisitor extends AdviceAdapter {
+
+    private static final Type RUNTIME = Type.getType(MockRuntime.class);
+    private static final Type OBJECT = Type.getType(Object.class);
+    private static final Type OBJECT_ARRAY = Type.getType(Object[].class);
+    private static final Method SPY_SAMPLE = Method.getMethod("boolean spySample(double)");
+    private static final Method SPY_RETURN = Method.getMethod("void spyReturn(Object, Object[], String, long)");
+    private static final Method SPY_THROW = Method.getMethod("void spyThrow(Throwable, Object[], String, long)");
+    private static final Method REPLAY_RECORD = Method.getMethod("void replayRecord(Object, Object[], String, long)");
+    private static final Method NANO_TIME = Method.getMethod("long nanoTime()");
+
+    private final String key;
+    private final double sampleRate;
+    private final boolean replayRecord;
+    private final Label bodyStart = new Label();
+    private final Label bodyEnd = new Label();
+    private final Label handler = new Label();
+    /** The boxed arguments, null when the call is not sampled */
+    private int argumentsLocal;
+    private int startLocal;
+
+    /**
+     * @param key "className#methodName" followed by the descriptor, reported with each call
+     */
+    SpyMethodVisitor(int api, MethodVisitor methodVisitor, int access, String name, String descriptor,
+                     String key, double sampleRate) {
+        this(api, methodVisitor, access, name, descriptor, key, sampleRate, false);
+    }
+
+    private SpyMethodVisitor(int api, MethodVisitor methodVisitor, int access, String name, String descriptor,
+                             String key, double sampleRate, boolean replayRecord) {
+        super(api, methodVisitor, access, name, descriptor);
+        this.key = key;
+        this.sampleRate = sampleRate;
+        this.replayRecord = replayRecord;
+    }
+
+    /**
+     * A visitor passing every return of the method to a replay store
+     *
+     * @param key store name, '/' and "className#methodName" followed by the descriptor
+     */
+    static SpyMethodVisitor replayRecorder(int api, MethodVisitor methodVisitor, int access, String name,
+                                           String descriptor, String key) {
+        return new SpyMethodVisitor(api, methodVisitor, access, name, descriptor, key, 1.0, true);
+    }
+
+    @Override
+    protected void onMethodEnter() {
+        argumentsLocal = newLocal(OBJECT_ARRAY);
+        startLocal = newLocal(Type.LONG_TYPE);
+        visitInsn(ACONST_NULL);
+        storeLocal(argumentsLocal);
+        push(0L);
+        storeLocal(startLocal);
+
+        Label unsampled = new Label();
+        push(sampleRate);
+        invokeStatic(RUNTIME, SPY_SAMPLE);
+        ifZCmp(EQ, unsampled);
+        Type[] argumentTypes = getArgumentTypes();
+        push(argumentTypes.length);
+        newArray(OBJECT);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            dup();
+            push(i);
+            loadArg(i);
+            valueOf(argumentTypes[i]);
+            arrayStore(OBJECT);
+        }
+        storeLocal(argumentsLocal);
+        invokeStatic(Type.getType(System.class), NANO_TIME);
+        storeLocal(startLocal);
+        mark(unsampled);
+        mark(bodyStart);
+    }
+
+    @Override
+    protected void onMethodExit(int opcode) {
+        // Exceptions, thrown here or by callees, are recorded by the handler
+        if (opcode == ATHROW) {
+            return;
+        }
+        Label done = new Label();
+        loadLocal(argumentsLocal);
+        ifNull(done);
+        Type returnType = getReturnType();
+        if (returnType.getSize() == 2) {
+            dup2();
+        } else if (returnType.getSize() == 1) {
+            dup();
+        }
+        valueOf(returnType);
+        loadLocal(argumentsLocal);
+        push(key);
+        loadLocal(startLocal);
+        invokeStatic(RUNTIME, replayRecord ? REPLAY_RECORD : SPY_RETURN);
+        mark(done);
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        if (replayRecord) {
+            super.visitMaxs(maxStack, maxLocals);
+            return;
+        }
+        mark(bodyEnd);
+        // Registered last, so the method's own handlers still take precedence
+        visitTryCatchBlock(bodyStart, bodyEnd, handler, null);
+        mark(handler);
+        Label rethrow = new Label();
+        loadLocal(argumentsLocal);
+        ifNull(rethrow);
+        dup();
+        loadLocal(argumentsLocal);
+        push(key);
+        loadLocal(startLocal);
+        invokeStatic(RUNTIME, SPY_THROW);
+        mark(rethrow);
+        throwException();
+        super.visitMaxs(maxStack, maxLocals);
+    }
+}
@@ -0,0 +1,313 @@
+package com.hotmock4j.agent.transformer;
+
+import com.hotmock4j.core.ArgumentMatcher;
+import com.hotmock4j.core.MethodStub;
+import com.hotmock4j.log.AgentLogger;
+import com.hotmock4j.runtime.MockRuntime;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the argument-matching stubs of a mocked method into its woven prologue.
+ * Each stub becomes a run of comparisons on the argument locals as they are, without boxing, that jumps to the
+ * next stub at the first mismatch and otherwise returns the stub's value, so the first matching stub wins and
+ * a call matching none goes on past the stubs. A stub whose matchers do not fit the parameter types is left out.
+ */
+final class StubCompiler {
+
+    private static final String STRING = "java/lang/String";
+    private static final String NUMBER = "java/lang/Number";
+    private static final Set<String> NUMBER_TYPES = new HashSet<>(Arrays.asList(
+            "java/lang/Byte", "java/lang/Short", "java/lang/Integer", "java/lang/Long",
+            "java/lang/Float", "java/lang/Double", NUMBER, "java/math/BigInteger", "java/math/BigDecimal"));
+
+    private StubCompiler() {
+    }
+
+    /**
+     * Emit the stubs through the visitor; emitReturn emits the return of a matched stub's value
+     *
+     * @return whether any stub was emitted
+     */
+    static boolean compile(PrologueMethodVisitor mv, int access, String descriptor, String location,
+                           List<MethodStub> stubs, Consumer<Object> emitReturn) {
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        int[] slots = new int[argumentTypes.length];
+        int slot = (access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            slots[i] = slot;
+            slot += argumentTypes[i].getSize();
+        }
+
+        boolean emitted = false;
+        for (int s = 0; s < stubs.size(); s++) {
+            MethodStub stub = stubs.get(s);
+            List<ArgumentMatcher> matchers = stub.getArguments() != null ? stub.getArguments() : Collections.emptyList();
+            String problem = check(matchers, argumentTypes);
+            if (problem != null) {
+                AgentLogger.warn("Skipping stub {} of {}: {}", s, location, problem);
+                continue;
+            }
+            Label next = new Label();
+            for (int i = 0; i < matchers.size(); i++) {
+                if (matchers.get(i) != null) {
+                    visitTest(mv, matchers.get(i), argumentTypes[i], slots[i], next);
+                }
+            }
+            emitReturn.accept(stub.getReturnObject());
+            mv.visitJoinLabel(next);
+            emitted = true;
+        }
+        return emitted;
+    }
+
+    /**
+     * Why these matchers cannot be compiled for these parameters, or null if they can
+     */
+    private static String check(List<ArgumentMatcher> matchers, Type[] argumentTypes) {
+        if (matchers.size() > argumentTypes.length) {
+            return matchers.size() + " matchers for " + argumentTypes.length + " parameters";
+        }
+        for (int i = 0; i < matchers.size(); i++) {
+            ArgumentMatcher matcher = matchers.get(i);
+            if (matcher == null || matcher.getType() == null || matcher.getType() == ArgumentMatcher.Type.ANY) {
+                continue;
+            }
+            Type type = argumentTypes[i];
+            try {
+                switch (matcher.getType()) {
+                    case NULL:
+                        if (!isReference(type)) {
+                            return "argument " + i + " is primitive and cannot be null";
+                        }
+                        break;
+                    case EQ:
+                        if (matcher.getValue() == null) {
+                            return "argument " + i + " has no value to compare with";
+                        }
+                        constant(type, matcher.getValue());
+                        break;
+                    case RANGE:
+                        if (type.getSort() == Type.BOOLEAN || (isReference(type) && !NUMBER_TYPES.contains(type.getInternalName()))) {
+                            return "argument " + i + " of type " + type.getClassName() + " is not a number";
+                        }
+                        if (matcher.getMin() == null && matcher.getMax() == null) {
+                            return "argument " + i + " has a range without bounds";
+                        }
+                        if (matcher.getMin() != null) {
+                            rangeBound(type, matcher.getMin());
+                        }
+                        if (matcher.getMax() != null) {
+                            rangeBound(type, matcher.getMax());
+                        }
+                        break;
+                    case REGEX:
+                        Pattern.compile(matcher.getValue());
+                        break;
+                    default:
+                        break;
+                }
+            } catch (RuntimeException e) {
+                return "argument " + i + ": " + e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Emit a test of one argument that jumps to next when it does not match; the stack is empty before and after
+     */
+    private static void visitTest(MethodVisitor mv, ArgumentMatcher matcher, Type type, int slot, Label next) {
+        switch (matcher.getType()) {
+            case NULL:
+                mv.visitVarInsn(Opcodes.ALOAD, slot);
+                mv.visitJumpInsn(Opcodes.IFNONNULL, next);
+                break;
+            case EQ:
+                visitEquals(mv, type, slot, constant(type, matcher.getValue()), next);
+                break;
+            case RANGE:
+                if (matcher.getMin() != null) {
+                    visitCompare(mv, type, slot, rangeBound(type, matcher.getMin()), true, next);
+                }
+                if (matcher.getMax() != null) {
+                    visitCompare(mv, type, slot, rangeBound(type, matcher.getMax()), false, next);
+                }
+                break;
+            case REGEX:
+                visitLoadAsObject(mv, type, slot);
+                mv.visitLdcInsn(matcher.getValue());
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(MockRuntime.class), "matches",
+                        "(Ljava/lang/Object;Ljava/lang/String;)Z", false);
+                mv.visitJumpInsn(Opcodes.IFEQ, next);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void visitEquals(MethodVisitor mv, Type type, int slot, Object constant, Label next) {
+        switch (type.getSort()) {
+            case Type.LONG:
+                mv.visitVarInsn(Opcodes.LLOAD, slot);
+                PrologueMethodVisitor.pushConstant(mv, constant);
+                mv.visitInsn(Opcodes.LCMP);
+                mv.visitJumpInsn(Opcodes.IFNE, next);
+                break;
+            case Type.FLOAT:
+                mv.visitVarInsn(Opcodes.FLOAD, slot);
+                mv.visitLdcInsn(constant);
+                mv.visitInsn(Opcodes.FCMPL);
+                mv.visitJumpInsn(Opcodes.IFNE, next);
+                break;
+            case Type.DOUBLE:
+                mv.visitVarInsn(Opcodes.DLOAD, slot);
+                mv.visitLdcInsn(constant);
+                mv.visitInsn(Opcodes.DCMPL);
+                mv.visitJumpInsn(Opcodes.IFNE, next);
+                break;
+            case Type.OBJECT:
+            case Type.ARRAY:
+                // constant.equals(argument), so a null argument simply does not match
+                mv.visitLdcInsn(constant);
+                mv.visitVarInsn(Opcodes.ALOAD, slot);
+                if (!STRING.equals(type.getInternalName())) {
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, STRING, "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", false);
+                }
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STRING, "equals", "(Ljava/lang/Object;)Z", false);
+                mv.visitJumpInsn(Opcodes.IFEQ, next);
+                break;
+            default:
+                mv.visitVarInsn(Opcodes.ILOAD, slot);
+                PrologueMethodVisitor.pushConstant(mv, constant);
+                mv.visitJumpInsn(Opcodes.IF_ICMPNE, next);
+                break;
+        }
+    }
+
+    /**
+     * Jump to next if the argument is below a lower bound or above an upper bound; NaN is outside every range
+     */
+    private static void visitCompare(MethodVisitor mv, Type type, int slot, Object bound, boolean lower, Label next) {
+        switch (type.getSort()) {
+            case Type.LONG:
+                mv.visitVarInsn(Opcodes.LLOAD, slot);
+                PrologueMethodVisitor.pushConstant(mv, bound);
+                mv.visitInsn(Opcodes.LCMP);
+                mv.visitJumpInsn(lower ? Opcodes.IFLT : Opcodes.IFGT, next);
+                break;
+            case Type.FLOAT:
+                mv.visitVarInsn(Opcodes.FLOAD, slot);
+                mv.visitLdcInsn(bound);
+                mv.visitInsn(lower ? Opcodes.FCMPL : Opcodes.FCMPG);
+                mv.visitJumpInsn(lower ? Opcodes.IFLT : Opcodes.IFGT, next);
+                break;
+            case Type.DOUBLE:
+                mv.visitVarInsn(Opcodes.DLOAD, slot);
+                mv.visitLdcInsn(bound);
+                mv.visitInsn(lower ? Opcodes.DCMPL : Opcodes.DCMPG);
+                mv.visitJumpInsn(lower ? Opcodes.IFLT : Opcodes.IFGT, next);
+                break;
+            case Type.OBJECT:
+                // Boxed and other numbers are compared by their double value
+                mv.visitVarInsn(Opcodes.ALOAD, slot);
+                mv.visitJumpInsn(Opcodes.IFNULL, next);
+                mv.visitVarInsn(Opcodes.ALOAD, slot);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, NUMBER);
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, NUMBER, "doubleValue", "()D", false);
+                mv.visitLdcInsn(bound);
+                mv.visitInsn(lower ? Opcodes.DCMPL : Opcodes.DCMPG);
+                mv.visitJumpInsn(lower ? Opcodes.IFLT : Opcodes.IFGT, next);
+                break;
+            default:
+                mv.visitVarInsn(Opcodes.ILOAD, slot);
+                PrologueMethodVisitor.pushConstant(mv, bound);
+                mv.visitJumpInsn(lower ? Opcodes.IF_ICMPLT : Opcodes.IF_ICMPGT, next);
+                break;
+        }
+    }
+
+    /**
+     * Push the argument as an object for the regex matcher; primitives are converted to their string form
+     */
+    private static void visitLoadAsObject(MethodVisitor mv, Type type, int slot) {
+        if (isReference(type)) {
+            mv.visitVarInsn(Opcodes.ALOAD, slot);
+            return;
+        }
+        mv.visitVarInsn(type.getOpcode(Opcodes.ILOAD), slot);
+        String valueOfType;
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.LONG:
+            case Type.FLOAT:
+            case Type.DOUBLE:
+                valueOfType = type.getDescriptor();
+                break;
+            default:
+                valueOfType = "I";
+                break;
+        }
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, STRING, "valueOf", "(" + valueOfType + ")Ljava/lang/String;", false);
+    }
+
+    /**
+     * The EQ value as a constant of the parameter's type; references compare with the string itself
+     */
+    private static Object constant(Type type, String value) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+                    throw new IllegalArgumentException("not a boolean: " + value);
+                }
+                return Boolean.parseBoolean(value);
+            case Type.CHAR:
+                if (value.length() != 1) {
+                    throw new IllegalArgumentException("not a single character: " + value);
+                }
+                return value.charAt(0);
+            case Type.BYTE:
+                return Byte.parseByte(value);
+            case Type.SHORT:
+                return Short.parseShort(value);
+            case Type.INT:
+                return Integer.parseInt(value);
+            case Type.LONG:
+                return Long.parseLong(value);
+            case Type.FLOAT:
+                return Float.parseFloat(value);
+            case Type.DOUBLE:
+                return Double.parseDouble(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * A range bound in the type it is compared as; chars compare by code, boxed numbers as doubles
+     */
+    private static Object rangeBound(Type type, String value) {
+        if (type.getSort() == Type.CHAR) {
+            return value.length() == 1 ? (Object) value.charAt(0) : (Object) Integer.parseInt(value);
+        }
+        if (isReference(type)) {
+            return Double.parseDouble(value);
+        }
+        return constant(type, value);
+    }
+
+    private static boolean isReference(Type type) {
+        return type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY;
+    }
+}
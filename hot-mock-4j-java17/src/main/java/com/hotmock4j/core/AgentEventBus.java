@@ -0,0 +1,260 @@
+package com.hotmock4j.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotmock4j.log.AgentLogger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Agent event bus backing the /api/events stream.
+ * Events are kept in a fixed-size ring; slow subscribers lose the oldest events instead of
+ * blocking publishers, and learn how many they missed from the sequence gap.
+ */
+public class AgentEventBus {
+
+    public static final String PLAN_CHANGED = "plan-changed";
+    public static final String PLAN_DELETED = "plan-deleted";
+    public static final String CLASS_LOADED = "class-loaded";
+    public static final String MOCK_HITS = "mock-hits";
+
+    private static final int RING_SIZE = 1024;
+    private static final long HIT_PUBLISH_INTERVAL_SECONDS = 5;
+
+    private static final AgentEventBus INSTANCE = new AgentEventBus(RING_SIZE);
+
+    private final AtomicReferenceArray<AgentEvent> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final Object signal = new Object();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<String> classFilterList = new CopyOnWriteArrayList<>();
+    private volatile String[] classFilters = new String[0];
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private ScheduledExecutorService hitPublisher;
+    private ScheduledFuture<?> hitPublishTask;
+    private Map<String, Long> lastPublishedHits = new HashMap<>();
+
+    private AgentEventBus(int size) {
+        int capacity = Integer.highestOneBit(Math.max(2, size - 1) << 1);
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public static AgentEventBus getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publish an event; the payload is serialized once here and shared by all subscribers
+     */
+    public void publish(String type, Object payload) {
+        publish(type, null, payload);
+    }
+
+    /**
+     * Publish an event with a routing key subscribers can filter on without parsing the payload
+     */
+    public void publish(String type, String key, Object payload) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(payload);
+        } catch (Exception e) {
+            AgentLogger.warn("Failed to serialize event {}: {}", type, e.getMessage());
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        ring.set((int) (sequence & mask), new AgentEvent(sequence, type, key, data));
+        if (waiters.get() > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Publish a plan change, called after every mutation of a MockPlan
+     */
+    public void publishPlanChange(String type, MockPlan mockPlan, String change) {
+        if (subscribers.get() == 0) {
+            return;
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("projectName", mockPlan.getProject() != null ? mockPlan.getProject().getProjectName() : null);
+        payload.put("planName", mockPlan.getPlanName());
+        payload.put("version", mockPlan.getVersion());
+        payload.put("active", mockPlan.isActive());
+        payload.put("change", change);
+        publish(type, payload);
+    }
+
+    /**
+     * Called by the transformer for every newly loaded class. Costs a single volatile read
+     * while nobody subscribed to class loads.
+     */
+    public void classLoaded(String className) {
+        String[] filters = classFilters;
+        if (filters.length == 0 || className == null) {
+            return;
+        }
+        for (String filter : filters) {
+            if (className.startsWith(filter)) {
+                publish(CLASS_LOADED, className, Map.of("className", className));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sequence of the most recently published event
+     */
+    public long getLastSequence() {
+        return nextSequence.get() - 1;
+    }
+
+    /**
+     * Copy events published after the given sequence into the target list.
+     * Every sequence up to the returned cursor was either copied or already overwritten,
+     * so the number of lost events is (cursor - lastSequence - target.size()).
+     * @return the sequence of the last event consumed
+     */
+    public long readAfter(long lastSequence, List<AgentEvent> target) {
+        long last = getLastSequence();
+        long cursor = lastSequence;
+        if (last - cursor > ring.length()) {
+            cursor = last - ring.length();
+        }
+        while (cursor < last) {
+            long sequence = cursor + 1;
+            AgentEvent event = ring.get((int) (sequence & mask));
+            if (event == null || event.getSequence() < sequence) {
+                // Slot reserved but not written yet, deliver it next round
+                break;
+            }
+            if (event.getSequence() == sequence) {
+                target.add(event);
+            }
+            cursor = sequence;
+        }
+        return cursor;
+    }
+
+    /**
+     * Block until an event newer than lastSequence is published or the timeout expires
+     */
+    public void awaitEvents(long lastSequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        waiters.incrementAndGet();
+        try {
+            synchronized (signal) {
+                long remaining = timeoutMillis;
+                while (getLastSequence() <= lastSequence && remaining > 0) {
+                    signal.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Register a stream subscriber with its class name prefix filters
+     */
+    public synchronized void subscribe(List<String> classNamePrefixes) {
+        classFilterList.addAll(classNamePrefixes);
+        classFilters = classFilterList.toArray(new String[0]);
+        if (subscribers.incrementAndGet() == 1) {
+            startHitPublisher();
+        }
+    }
+
+    public synchronized void unsubscribe(List<String> classNamePrefixes) {
+        for (String prefix : classNamePrefixes) {
+            classFilterList.remove(prefix);
+        }
+        classFilters = classFilterList.toArray(new String[0]);
+        if (subscribers.decrementAndGet() == 0) {
+            stopHitPublisher();
+        }
+    }
+
+    private void startHitPublisher() {
+        if (hitPublisher == null) {
+            hitPublisher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hotmock4j-event-hits");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        hitPublishTask = hitPublisher.scheduleAtFixedRate(this::publishMockHits,
+                HIT_PUBLISH_INTERVAL_SECONDS, HIT_PUBLISH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void stopHitPublisher() {
+        if (hitPublishTask != null) {
+            hitPublishTask.cancel(false);
+            hitPublishTask = null;
+        }
+    }
+
+    /**
+     * Publish mock hit counters that changed since the last tick
+     */
+    private void publishMockHits() {
+        try {
+            Map<String, Long> current = MockHitCounter.snapshot();
+            Map<String, Long> deltas = new HashMap<>();
+            for (Map.Entry<String, Long> entry : current.entrySet()) {
+                long previous = lastPublishedHits.getOrDefault(entry.getKey(), 0L);
+                if (entry.getValue() != previous) {
+                    deltas.put(entry.getKey(), entry.getValue() - previous);
+                }
+            }
+            lastPublishedHits = current;
+            if (!deltas.isEmpty()) {
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("totals", current);
+                payload.put("deltas", deltas);
+                publish(MOCK_HITS, payload);
+            }
+        } catch (Exception e) {
+            AgentLogger.warn("Failed to publish mock hits: {}", e.getMessage());
+        }
+    }
+
+
+    /**
+     * Immutable event stored in the ring
+     */
+    public static final class AgentEvent {
+        private final long sequence;
+        private final String type;
+        private final String key;
+        private final String data;
+
+        AgentEvent(long sequence, String type, String key, String data) {
+            this.sequence = sequence;
+            this.type = type;
+            this.key = key;
+            this.data = data;
+        }
+
+        public long getSequence() { return sequence; }
+        public String getType() { return type; }
+        public String getKey() { return key; }
+        public String getData() { return data; }
+    }
+}
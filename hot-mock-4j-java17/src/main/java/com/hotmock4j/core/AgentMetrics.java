@@ -0,0 +1,282 @@
+package com.hotmock4j.core;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agent self-instrumentation exposed in Prometheus text format by /api/metrics.
+ * Counters are LongAdders and histograms use fixed buckets, so recording never locks or allocates.
+ */
+public class AgentMetrics {
+
+    public static final String MOCK_FIELD_TRANSFORMER = "mock_field";
+    public static final String INSTANCE_REGISTRATION_TRANSFORMER = "instance_registration";
+    public static final String MOCK_CONTEXT_TRANSFORMER = "mock_context";
+
+    /** Bucket upper bounds in seconds, from 10us to 5s */
+    private static final double[] BUCKETS = {
+            0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5
+    };
+
+    private static final AgentMetrics INSTANCE = new AgentMetrics();
+
+    private final Map<String, TransformerMetrics> transformers = new ConcurrentHashMap<>();
+    private final Histogram retransformDuration = new Histogram();
+    private final LongAdder retransformedClasses = new LongAdder();
+    private final Histogram templateBuildDuration = new Histogram();
+    private final Histogram persistenceWriteDuration = new Histogram();
+    private final Map<String, LongAdder> bytecodeCacheHits = new ConcurrentHashMap<>();
+    private final LongAdder bytecodeCacheMisses = new LongAdder();
+
+    private AgentMetrics() {
+    }
+
+    public static AgentMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Metrics of one transformer; transformers look this up once and keep it
+     */
+    public TransformerMetrics transformer(String name) {
+        return transformers.computeIfAbsent(name, k -> new TransformerMetrics());
+    }
+
+    public void recordRetransform(int classCount, long nanos) {
+        retransformedClasses.add(classCount);
+        retransformDuration.observe(nanos);
+    }
+
+    public void recordTemplateBuild(long nanos) {
+        templateBuildDuration.observe(nanos);
+    }
+
+    public void recordPersistenceWrite(long nanos) {
+        persistenceWriteDuration.observe(nanos);
+    }
+
+    /**
+     * A woven class file served from the bytecode cache; level is "memory" or "disk"
+     */
+    public void recordBytecodeCacheHit(String level) {
+        bytecodeCacheHits.computeIfAbsent(level, k -> new LongAdder()).increment();
+    }
+
+    public void recordBytecodeCacheMiss() {
+        bytecodeCacheMisses.increment();
+    }
+
+    /**
+     * Render all metrics in the Prometheus text exposition format (version 0.0.4)
+     */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        Map<String, TransformerMetrics> sortedTransformers = new TreeMap<>(transformers);
+
+        family(sb, "hotmock4j_classes_seen_total", "counter", "Classes passed to each transformer");
+        for (Map.Entry<String, TransformerMetrics> entry : sortedTransformers.entrySet()) {
+            sample(sb, "hotmock4j_classes_seen_total", "transformer", entry.getKey(), entry.getValue().seen.sum());
+        }
+        family(sb, "hotmock4j_classes_transformed_total", "counter", "Classes rewritten by each transformer");
+        for (Map.Entry<String, TransformerMetrics> entry : sortedTransformers.entrySet()) {
+            sample(sb, "hotmock4j_classes_transformed_total", "transformer", entry.getKey(), entry.getValue().transformed.sum());
+        }
+        family(sb, "hotmock4j_transform_duration_seconds", "histogram", "Time spent in each transformer per class");
+        for (Map.Entry<String, TransformerMetrics> entry : sortedTransformers.entrySet()) {
+            entry.getValue().duration.write(sb, "hotmock4j_transform_duration_seconds",
+                    "transformer=\"" + escape(entry.getKey()) + "\"");
+        }
+
+        family(sb, "hotmock4j_retransform_duration_seconds", "histogram", "Duration of retransform batches");
+        retransformDuration.write(sb, "hotmock4j_retransform_duration_seconds", null);
+        family(sb, "hotmock4j_retransformed_classes_total", "counter", "Classes retransformed after plan changes");
+        sample(sb, "hotmock4j_retransformed_classes_total", null, null, retransformedClasses.sum());
+
+        family(sb, "hotmock4j_bytecode_cache_hits_total", "counter", "Woven class files served from the bytecode cache");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(bytecodeCacheHits).entrySet()) {
+            sample(sb, "hotmock4j_bytecode_cache_hits_total", "level", entry.getKey(), entry.getValue().sum());
+        }
+        family(sb, "hotmock4j_bytecode_cache_misses_total", "counter", "Class files woven because no cache entry matched");
+        sample(sb, "hotmock4j_bytecode_cache_misses_total", null, null, bytecodeCacheMisses.sum());
+
+        family(sb, "hotmock4j_spy_calls_total", "counter", "Calls recorded by spied methods");
+        sample(sb, "hotmock4j_spy_calls_total", null, null, SpyRecorder.getInstance().recordedCount());
+        family(sb, "hotmock4j_spy_dropped_total", "counter", "Recorded calls overwritten before they were drained");
+        sample(sb, "hotmock4j_spy_dropped_total", null, null, SpyRecorder.getInstance().droppedCount());
+
+        ReplayStoreManager replay = ReplayStoreManager.getInstance();
+        family(sb, "hotmock4j_replay_lookups_total", "counter", "Calls of replayed methods, by whether a recorded value was found");
+        sample(sb, "hotmock4j_replay_lookups_total", "result", "hit", replay.hitCount());
+        sample(sb, "hotmock4j_replay_lookups_total", "result", "miss", replay.missCount());
+        family(sb, "hotmock4j_replay_recorded_total", "counter", "Return values queued for replay stores");
+        sample(sb, "hotmock4j_replay_recorded_total", null, null, replay.recordedCount());
+        family(sb, "hotmock4j_replay_dropped_total", "counter", "Return values dropped because the replay store writer was behind");
+        sample(sb, "hotmock4j_replay_dropped_total", null, null, replay.droppedCount());
+
+        Map<String, MemoCache> memoCaches = MemoCacheManager.getInstance().getCaches();
+        family(sb, "hotmock4j_memo_lookups_total", "counter", "Calls of memoized methods, by whether a cached result was returned");
+        for (Map.Entry<String, MemoCache> entry : memoCaches.entrySet()) {
+            methodSample(sb, "hotmock4j_memo_lookups_total", entry.getKey(), "hit", entry.getValue().hitCount());
+            methodSample(sb, "hotmock4j_memo_lookups_total", entry.getKey(), "miss", entry.getValue().missCount());
+        }
+        family(sb, "hotmock4j_memo_evictions_total", "counter", "Cached results evicted to make room for others");
+        for (Map.Entry<String, MemoCache> entry : memoCaches.entrySet()) {
+            methodSample(sb, "hotmock4j_memo_evictions_total", entry.getKey(), null, entry.getValue().evictionCount());
+        }
+        family(sb, "hotmock4j_memo_entries", "gauge", "Results held by each memo cache");
+        for (Map.Entry<String, MemoCache> entry : memoCaches.entrySet()) {
+            methodSample(sb, "hotmock4j_memo_entries", entry.getKey(), null, entry.getValue().size());
+        }
+
+        Map<String, FaultInjector.ActiveFault> faults = FaultInjector.getInstance().getFaults();
+        family(sb, "hotmock4j_fault_delay_seconds", "histogram", "Delays injected into methods in fault mode");
+        for (Map.Entry<String, FaultInjector.ActiveFault> entry : faults.entrySet()) {
+            String key = entry.getKey();
+            int idx = key.lastIndexOf('#');
+            entry.getValue().getDelays().write(sb, "hotmock4j_fault_delay_seconds", "class=\""
+                    + escape(key.substring(0, idx)) + "\",method=\"" + escape(key.substring(idx + 1)) + "\"");
+        }
+        family(sb, "hotmock4j_fault_errors_total", "counter", "Exceptions injected into methods in fault mode");
+        for (Map.Entry<String, FaultInjector.ActiveFault> entry : faults.entrySet()) {
+            methodSample(sb, "hotmock4j_fault_errors_total", entry.getKey(), null, entry.getValue().errorCount());
+        }
+        family(sb, "hotmock4j_fault_rejections_total", "counter", "Calls that timed out waiting for a permit of a capped method");
+        for (Map.Entry<String, FaultInjector.ActiveFault> entry : faults.entrySet()) {
+            methodSample(sb, "hotmock4j_fault_rejections_total", entry.getKey(), null, entry.getValue().rejectionCount());
+        }
+        family(sb, "hotmock4j_fault_in_flight", "gauge", "Calls holding a permit of a capped method");
+        for (Map.Entry<String, FaultInjector.ActiveFault> entry : faults.entrySet()) {
+            methodSample(sb, "hotmock4j_fault_in_flight", entry.getKey(), null, entry.getValue().inFlight());
+        }
+
+        family(sb, "hotmock4j_rollout_ratio", "gauge", "Share of calls answered by the mock of a method in a rollout");
+        for (Map.Entry<String, RolloutScheduler.ActiveRollout> entry : RolloutScheduler.getInstance().getRollouts().entrySet()) {
+            methodSample(sb, "hotmock4j_rollout_ratio", entry.getKey(), null, entry.getValue().rate());
+        }
+
+        family(sb, "hotmock4j_mock_hits_total", "counter", "Calls answered by a mocked method");
+        for (Map.Entry<String, Long> entry : new TreeMap<>(MockHitCounter.snapshot()).entrySet()) {
+            String key = entry.getKey();
+            int idx = key.lastIndexOf('#');
+            sb.append("hotmock4j_mock_hits_total{class=\"").append(escape(idx < 0 ? key : key.substring(0, idx)))
+                    .append("\",method=\"").append(escape(idx < 0 ? "" : key.substring(idx + 1)))
+                    .append("\"} ").append(entry.getValue()).append('\n');
+        }
+
+        family(sb, "hotmock4j_template_build_duration_seconds", "histogram", "Time to build a return value from a template");
+        templateBuildDuration.write(sb, "hotmock4j_template_build_duration_seconds", null);
+
+        family(sb, "hotmock4j_tracked_instances", "gauge", "Instance references held by the InstanceTracker, including ones not pruned yet");
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(InstanceTracker.getInstance().getTrackedCounts()).entrySet()) {
+            sample(sb, "hotmock4j_tracked_instances", "class", entry.getKey(), entry.getValue());
+        }
+
+        family(sb, "hotmock4j_persistence_write_duration_seconds", "histogram", "Time to write a MockPlan file");
+        persistenceWriteDuration.write(sb, "hotmock4j_persistence_write_duration_seconds", null);
+        return sb.toString();
+    }
+
+    /**
+     * A sample labelled with the class and method of a "className#method" key, and optionally a result
+     */
+    private static void methodSample(StringBuilder sb, String name, String key, String result, Number value) {
+        int idx = key.lastIndexOf('#');
+        sb.append(name).append("{class=\"").append(escape(key.substring(0, idx)))
+                .append("\",method=\"").append(escape(key.substring(idx + 1))).append('"');
+        if (result != null) {
+            sb.append(",result=\"").append(result).append('"');
+        }
+        sb.append("} ").append(value).append('\n');
+    }
+
+    private static void family(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String label, String labelValue, long value) {
+        sb.append(name);
+        if (label != null) {
+            sb.append('{').append(label).append("=\"").append(escape(labelValue)).append("\"}");
+        }
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Counters and timing of a ClassFileTransformer
+     */
+    public static final class TransformerMetrics {
+        private final LongAdder seen = new LongAdder();
+        private final LongAdder transformed = new LongAdder();
+        private final Histogram duration = new Histogram();
+
+        /**
+         * Record one transform call; result is the returned class file, null when the class was left alone
+         */
+        public void record(long startNanos, byte[] result) {
+            seen.increment();
+            if (result != null) {
+                transformed.increment();
+            }
+            duration.observe(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Histogram with the fixed BUCKETS; counts are kept per bucket and made cumulative when scraped
+     */
+    public static final class Histogram {
+        private static final long[] BOUNDS_NANOS = new long[BUCKETS.length];
+        private static final String[] BOUND_LABELS = new String[BUCKETS.length];
+
+        static {
+            for (int i = 0; i < BUCKETS.length; i++) {
+                BOUNDS_NANOS[i] = (long) (BUCKETS[i] * 1_000_000_000L);
+                BOUND_LABELS[i] = BigDecimal.valueOf(BUCKETS[i]).toPlainString();
+            }
+        }
+
+        private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        public void observe(long nanos) {
+            int i = 0;
+            while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+                i++;
+            }
+            counts[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        void write(StringBuilder sb, String name, String labels) {
+            String prefix = labels == null ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += counts[i].sum();
+                sb.append(name).append("_bucket{").append(prefix).append("le=\"").append(BOUND_LABELS[i]).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            cumulative += counts[BUCKETS.length].sum();
+            sb.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+            String suffix = labels == null ? "" : "{" + labels + "}";
+            sb.append(name).append("_sum").append(suffix).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+            sb.append(name).append("_count").append(suffix).append(' ').append(cumulative).append('\n');
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.hotmock4j.core;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Condition on one argument of a stubbed method.
+ * EQ compares with value (objects other than strings by their string form), RANGE checks a number against
+ * the inclusive bounds min and max (either may be left out), REGEX matches the string form against value,
+ * NULL matches a null reference and ANY matches everything.
+ */
+public class ArgumentMatcher implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+
+    public enum Type {
+        ANY, EQ, RANGE, REGEX, NULL
+    }
+
+    private Type type = Type.ANY;
+    private String value;
+    private String min;
+    private String max;
+
+    /**
+     * Regex matching for woven code; patterns are compiled once per expression
+     */
+    public static boolean regexMatches(Object argument, String regex) {
+        if (argument == null) {
+            return false;
+        }
+        return PATTERNS.computeIfAbsent(regex, Pattern::compile).matcher(String.valueOf(argument)).matches();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public String getMin() {
+        return min;
+    }
+
+    public void setMin(String min) {
+        this.min = min;
+    }
+
+    public String getMax() {
+        return max;
+    }
+
+    public void setMax(String max) {
+        this.max = max;
+    }
+}
@@ -0,0 +1,200 @@
+package com.hotmock4j.core;
+
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Loader-aware lookup of the classes, constructors and fields that mocks touch.
+ * The transformers record the defining loader of every mocked class, so a class name from a plan resolves
+ * to the classes the application actually loaded, in each loader that defined one, instead of whatever the
+ * agent's own loader or the system loader finds. Classes are cached per (loader, name) in a weak-keyed table
+ * and constructors and fields per class in ClassValues, so no cache keeps an undeployed loader alive.
+ */
+public final class ClassResolver {
+
+    private static final ClassResolver INSTANCE = new ClassResolver();
+
+    /** Loaders that defined a mocked class, by class name; a null referent stands for the bootstrap loader */
+    private final Map<String, List<LoaderRef>> definingLoaders = new ConcurrentHashMap<>();
+
+    /** Classes resolved through a loader; values are weak too, a class strongly references its loader */
+    private final Map<ClassLoader, Map<String, WeakReference<Class<?>>>> classesByLoader = new WeakHashMap<>();
+
+    /** Classes resolved relative to the class that asks, the hot path of woven template calls */
+    private final ClassValue<Map<String, Class<?>>> classesByContext = new ClassValue<Map<String, Class<?>>>() {
+        @Override
+        protected Map<String, Class<?>> computeValue(Class<?> context) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final ClassValue<Constructor<?>> noArgConstructors = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> clazz) {
+            try {
+                Constructor<?> constructor = clazz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (NoSuchMethodException | RuntimeException e) {
+                return null;
+            }
+        }
+    };
+
+    private final ClassValue<Map<String, Field>> declaredFields = new ClassValue<Map<String, Field>>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> clazz) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private ClassResolver() {
+    }
+
+    public static ClassResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Remember the loader a mocked class is defined by; called by the transformers
+     */
+    public void recordDefiningLoader(String className, ClassLoader loader) {
+        List<LoaderRef> loaders = definingLoaders.computeIfAbsent(className, k -> new CopyOnWriteArrayList<>());
+        for (LoaderRef ref : loaders) {
+            if (ref.isBootstrap ? loader == null : ref.get() == loader) {
+                return;
+            }
+        }
+        loaders.removeIf(LoaderRef::isCleared);
+        loaders.add(new LoaderRef(loader));
+    }
+
+    /**
+     * The class with this name as seen from the context class, cached for the context class
+     */
+    public Class<?> resolve(Class<?> context, String className) throws ClassNotFoundException {
+        Map<String, Class<?>> classes = classesByContext.get(context);
+        Class<?> clazz = classes.get(className);
+        if (clazz == null) {
+            clazz = resolve(context.getClassLoader(), className);
+            classes.put(className, clazz);
+        }
+        return clazz;
+    }
+
+    /**
+     * The class with this name as seen from the loader, cached per (loader, name); the class is not initialized
+     */
+    public Class<?> resolve(ClassLoader loader, String className) throws ClassNotFoundException {
+        if (loader == null) {
+            return Class.forName(className, false, null);
+        }
+        synchronized (classesByLoader) {
+            WeakReference<Class<?>> ref = classesByLoader.computeIfAbsent(loader, k -> new ConcurrentHashMap<>()).get(className);
+            Class<?> clazz = ref != null ? ref.get() : null;
+            if (clazz != null) {
+                return clazz;
+            }
+        }
+        Class<?> clazz = Class.forName(className, false, loader);
+        synchronized (classesByLoader) {
+            classesByLoader.computeIfAbsent(loader, k -> new ConcurrentHashMap<>()).put(className, new WeakReference<>(clazz));
+        }
+        return clazz;
+    }
+
+    /**
+     * Every class with this name defined by a recorded loader, else the indexed class, else the class the
+     * system loader finds; the last one is initialized, as a mock applied to it expects
+     */
+    public List<Class<?>> resolveAll(String className) throws ClassNotFoundException {
+        List<Class<?>> classes = findDefined(className);
+        if (!classes.isEmpty()) {
+            return classes;
+        }
+        Class<?> clazz = ClassSearchService.getInstance().indexedClass(className);
+        if (clazz == null) {
+            clazz = Class.forName(className, true, ClassLoader.getSystemClassLoader());
+        }
+        return Collections.singletonList(clazz);
+    }
+
+    /**
+     * A loaded class with this name, preferring a recorded defining loader over the class index; null if none
+     */
+    public Class<?> findLoaded(String className) {
+        List<Class<?>> classes = findDefined(className);
+        return classes.isEmpty() ? ClassSearchService.getInstance().indexedClass(className) : classes.get(0);
+    }
+
+    /**
+     * Create an instance through the cached no-arg constructor
+     */
+    public Object newInstance(Class<?> clazz) throws ReflectiveOperationException {
+        Constructor<?> constructor = noArgConstructors.get(clazz);
+        if (constructor == null) {
+            throw new NoSuchMethodException(clazz.getName() + ".<init>()");
+        }
+        return constructor.newInstance();
+    }
+
+    /**
+     * A declared field made accessible, cached per class
+     */
+    public Field field(Class<?> clazz, String fieldName) throws NoSuchFieldException {
+        Map<String, Field> fields = declaredFields.get(clazz);
+        Field field = fields.get(fieldName);
+        if (field == null) {
+            field = clazz.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            fields.put(fieldName, field);
+        }
+        return field;
+    }
+
+    private List<Class<?>> findDefined(String className) {
+        List<LoaderRef> loaders = definingLoaders.get(className);
+        if (loaders == null) {
+            return Collections.emptyList();
+        }
+        List<Class<?>> classes = new ArrayList<>(loaders.size());
+        for (LoaderRef ref : loaders) {
+            ClassLoader loader = ref.get();
+            if (loader == null && !ref.isBootstrap) {
+                continue;
+            }
+            try {
+                Class<?> clazz = resolve(loader, className);
+                // A child-first loader may return a class another loader defined; list each class once
+                if (!classes.contains(clazz)) {
+                    classes.add(clazz);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                // The loader can no longer produce the class
+            }
+        }
+        return classes;
+    }
+
+    private static final class LoaderRef extends WeakReference<ClassLoader> {
+        private final boolean isBootstrap;
+
+        LoaderRef(ClassLoader loader) {
+            super(loader);
+            this.isBootstrap = loader == null;
+        }
+
+        boolean isCleared() {
+            return !isBootstrap && get() == null;
+        }
+    }
+}
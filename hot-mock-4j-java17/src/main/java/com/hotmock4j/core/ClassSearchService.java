@@ -1,16 +1,34 @@
 package com.hotmock4j.core;
 
 import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.log.AgentLogger;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
+/**
+ * Class search over an index of the loaded classes. One background scan indexes the classes loaded before the
+ * transformers were registered; after that, the transformers report each class as it is loaded, by name and
+ * defining loader, and it is resolved into the index when it is first looked up.
+ */
 public class ClassSearchService {
     
     private static final ClassSearchService INSTANCE = new ClassSearchService();
+    private static final int INDEX_BATCH_SIZE = 1000;
+    /** Stands for the bootstrap loader, which a cleared reference cannot be told apart from */
+    private static final WeakReference<ClassLoader> BOOTSTRAP = new WeakReference<>(null);
+
+    private final AtomicBoolean scanStarted = new AtomicBoolean();
+    /** Classes loaded since the transformers were registered and not resolved yet, with their defining loader */
+    private final Map<String, WeakReference<ClassLoader>> loadedClasses = new ConcurrentHashMap<>();
     
     private ClassSearchService() {
     }
@@ -21,28 +39,15 @@ public class ClassSearchService {
     
 
     public List<String> getAllClassNames() {
-        Map<String, Class> classMap = AgentBootstrap.classMap;
-        if (classMap == null || classMap.isEmpty()) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(classMap.keySet());
+        return classNames().collect(Collectors.toList());
     }
 
     public List<String> searchClasses(String keyword) {
-        for (Class<?> clazz : AgentBootstrap.ins.getAllLoadedClasses()) {
-            AgentBootstrap.classMap.put(clazz.getName(), clazz);
-        }
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllClassNames();
         }
         String searchTerm = keyword.toLowerCase().trim();
-        Map<String, Class> classMap = AgentBootstrap.classMap;
-        
-        if (classMap == null || classMap.isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        return classMap.keySet().stream()
+        return classNames()
                 .filter(className -> className.toLowerCase().contains(searchTerm))
                 .sorted()
                 .collect(Collectors.toList());
@@ -50,15 +55,13 @@ public class ClassSearchService {
     
 
     public MockClass getClassInfo(String className) {
-        for (Class<?> clazz : AgentBootstrap.ins.getAllLoadedClasses()) {
-            AgentBootstrap.classMap.put(clazz.getName(), clazz);
-        }
-        Map<String, Class> classMap = AgentBootstrap.classMap;
-        if (classMap == null || !classMap.containsKey(className)) {
+        indexLoadedClassesAsync();
+        // A mocked class is described as its recorded defining loader sees it, not by whichever copy was indexed
+        Class clazz = ClassResolver.getInstance().findLoaded(className);
+        if (clazz == null) {
             return null;
         }
         
-        Class clazz = classMap.get(className);
         MockClass mockClass = new MockClass(
             clazz.getPackage() != null ? clazz.getPackage().getName() : "", clazz.getName()
         );
@@ -78,6 +81,97 @@ public class ClassSearchService {
     }
 
 
+    /**
+     * Names of the indexed classes and of those loaded since, not resolved yet
+     */
+    private Stream<String> classNames() {
+        indexLoadedClassesAsync();
+        Map<String, Class> classMap = AgentBootstrap.classMap;
+        return Stream.concat(classMap.keySet().stream(),
+                loadedClasses.keySet().stream().filter(className -> !classMap.containsKey(className)));
+    }
+
+
+    /**
+     * Record a class being loaded; called by the transformer for every class it is offered, before the class
+     * is defined. An entry for an earlier class of the same name, since unloaded or in another loader, is replaced.
+     */
+    public void classLoaded(ClassLoader loader, String className) {
+        String standardClassName = className.replace('/', '.');
+        loadedClasses.put(standardClassName, loader != null ? new WeakReference<>(loader) : BOOTSTRAP);
+        AgentBootstrap.classMap.remove(standardClassName);
+    }
+
+
+    /**
+     * The indexed class with this name, resolving a class reported by the transformers on first use; null if none
+     */
+    public Class<?> indexedClass(String className) {
+        Class<?> clazz = AgentBootstrap.classMap.get(className);
+        if (clazz != null) {
+            return clazz;
+        }
+        WeakReference<ClassLoader> ref = loadedClasses.get(className);
+        if (ref == null) {
+            return null;
+        }
+        ClassLoader loader = ref.get();
+        if (loader == null && ref != BOOTSTRAP) {
+            // The loader, and with it the class, was collected
+            loadedClasses.remove(className, ref);
+            return null;
+        }
+        try {
+            clazz = Class.forName(className, false, loader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        if (loadedClasses.remove(className, ref)) {
+            AgentBootstrap.classMap.put(className, clazz);
+        }
+        return clazz;
+    }
+
+
+    /**
+     * Index the classes that were loaded before the transformers were registered, once, on a daemon thread
+     */
+    public void indexLoadedClassesAsync() {
+        if (AgentBootstrap.ins == null || !scanStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread indexer = new Thread(this::indexLoadedClasses, "hotmock4j-class-index");
+        indexer.setDaemon(true);
+        indexer.setPriority(Thread.MIN_PRIORITY);
+        indexer.start();
+    }
+
+
+    /**
+     * Index in batches, yielding between them so a JVM with many classes is not stalled. A class the
+     * transformers reported meanwhile is newer than the scan's copy and is kept.
+     */
+    private void indexLoadedClasses() {
+        long start = System.nanoTime();
+        try {
+            Class<?>[] classes = AgentBootstrap.ins.getAllLoadedClasses();
+            Map<String, Class> classMap = AgentBootstrap.classMap;
+            for (int i = 0; i < classes.length; i++) {
+                String className = classes[i].getName();
+                if (!loadedClasses.containsKey(className)) {
+                    classMap.putIfAbsent(className, classes[i]);
+                }
+                if (i % INDEX_BATCH_SIZE == INDEX_BATCH_SIZE - 1) {
+                    Thread.yield();
+                }
+            }
+            AgentLogger.debug("Indexed {} loaded classes in {} ms", classes.length, (System.nanoTime() - start) / 1_000_000);
+        } catch (Throwable t) {
+            AgentLogger.warn("Failed to index loaded classes: {}", t.toString());
+        }
+    }
+
+
     public MockClass getClassInfoWithMockComparison(String className, MockClass existingMockClass) {
         MockClass latestClassInfo = getClassInfo(className);
         if (latestClassInfo == null) {
@@ -106,13 +200,27 @@ public class ClassSearchService {
         }
         
         if (latestClassInfo.getMethods() != null && existingMockClass.getMethods() != null) {
-            Map<String, MockMethod> existingMethodMap = existingMockClass.getMethods().stream()
-                    .collect(Collectors.toMap(MockMethod::getMethodName, method -> method));
+            // Overloads share a name; a mock without a descriptor still applies to each of them
+            Map<String, MockMethod> existingMethodMap = new HashMap<>();
+            for (MockMethod method : existingMockClass.getMethods()) {
+                existingMethodMap.putIfAbsent(method.getMethodName() + method.getDescriptor(), method);
+            }
             
             for (MockMethod latestMethod : latestClassInfo.getMethods()) {
-                MockMethod existingMethod = existingMethodMap.get(latestMethod.getMethodName());
+                MockMethod existingMethod = existingMethodMap.get(latestMethod.getMethodName() + latestMethod.getDescriptor());
+                if (existingMethod == null) {
+                    existingMethod = existingMethodMap.get(latestMethod.getMethodName() + null);
+                }
                 if (existingMethod != null) {
                     latestMethod.setReturnObject(existingMethod.getReturnObject());
+                    latestMethod.setStubs(existingMethod.getStubs());
+                    latestMethod.setMethodSpy(existingMethod.getMethodSpy());
+                    latestMethod.setRecording(existingMethod.getRecording());
+                    latestMethod.setReplay(existingMethod.getReplay());
+                    latestMethod.setMemo(existingMethod.getMemo());
+                    latestMethod.setFault(existingMethod.getFault());
+                    latestMethod.setRollout(existingMethod.getRollout());
+                    latestMethod.setContext(existingMethod.getContext());
                     latestMethod.setActive(existingMethod.isActive());
                     latestMethod.setReturnClassName(existingMethod.getReturnClassName());
                     latestMethod.setActiveReturnTemplateName(existingMethod.getActiveReturnTemplateName());
@@ -145,7 +253,7 @@ public class ClassSearchService {
                 fields.add(mockField);
             }
         } catch (Exception e) {
-            System.err.println("Failed to get field info for class: " + clazz.getName());
+            AgentLogger.warn("Failed to get field info for class: {}", clazz.getName());
         }
         return fields;
     }
@@ -158,6 +266,7 @@ public class ClassSearchService {
             for (java.lang.reflect.Method method : declaredMethods) {
                 MockMethod mockMethod = new MockMethod();
                 mockMethod.setMethodName(method.getName());
+                mockMethod.setDescriptor(org.objectweb.asm.Type.getMethodDescriptor(method));
                 mockMethod.setReturnType(method.getReturnType().getName());
                 mockMethod.setReturnObject(null);
                 mockMethod.setActive(false);
@@ -175,13 +284,16 @@ public class ClassSearchService {
                 methods.add(mockMethod);
             }
         } catch (Exception e) {
-            System.err.println("Failed to get method info for class: " + clazz.getName());
+            AgentLogger.warn("Failed to get method info for class: {}", clazz.getName());
         }
         return methods;
     }
     
 
     public ClassStatistics getClassStatistics() {
+        for (String className : new ArrayList<>(loadedClasses.keySet())) {
+            indexedClass(className);
+        }
         Map<String, Class> classMap = AgentBootstrap.classMap;
         if (classMap == null || classMap.isEmpty()) {
             return new ClassStatistics(0, 0, 0, 0, 0, 0);
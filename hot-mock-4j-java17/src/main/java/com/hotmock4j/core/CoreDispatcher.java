@@ -0,0 +1,92 @@
+package com.hotmock4j.core;
+
+import com.hotmock4j.runtime.MockDispatcher;
+import com.hotmock4j.runtime.MockRuntime;
+
+/**
+ * Routes MockRuntime calls from woven code to the core services
+ */
+public final class CoreDispatcher implements MockDispatcher {
+
+    private static final CoreDispatcher INSTANCE = new CoreDispatcher();
+
+    private CoreDispatcher() {
+    }
+
+    /**
+     * Install the dispatcher in MockRuntime; called before any class is woven
+     */
+    public static void install() {
+        MockRuntime.install(INSTANCE);
+    }
+
+    @Override
+    public void recordHit(String key) {
+        MockHitCounter.recordHit(key);
+    }
+
+    @Override
+    public Object buildFromTemplate(Class<?> caller, String className, String templateName) {
+        return MockPlanManager.buildInstanceFromActiveTemplate(caller, className, templateName);
+    }
+
+    @Override
+    public void registerInstance(String className, Object instance) {
+        InstanceTracker.registerInstance(className, instance);
+    }
+
+    @Override
+    public boolean matches(Object argument, String regex) {
+        return ArgumentMatcher.regexMatches(argument, regex);
+    }
+
+    @Override
+    public boolean sampleSpy(double sampleRate) {
+        return SpyRecorder.getInstance().sample(sampleRate);
+    }
+
+    @Override
+    public void recordSpy(String key, long startNanos, Object[] arguments, Object returnValue, Throwable thrown) {
+        SpyRecorder.getInstance().record(key, startNanos, arguments, returnValue, thrown);
+    }
+
+    @Override
+    public void recordReturn(String key, Object returnValue) {
+        TemplateRecorder.getInstance().capture(key, returnValue);
+    }
+
+    @Override
+    public Object replay(Class<?> caller, String key, Object[] arguments) {
+        return ReplayStoreManager.getInstance().replay(caller, key, arguments);
+    }
+
+    @Override
+    public void recordReplay(String key, Object[] arguments, Object returnValue) {
+        ReplayStoreManager.getInstance().record(key, arguments, returnValue);
+    }
+
+    @Override
+    public Object memoLookup(String key, Object[] arguments) {
+        return MemoCacheManager.getInstance().lookup(key, arguments);
+    }
+
+    @Override
+    public void memoStore(String key, Object[] arguments, Object returnValue) {
+        MemoCacheManager.getInstance().store(key, arguments, returnValue);
+    }
+
+    @Override
+    public Object enterFault(Class<?> caller, String key) {
+        return FaultInjector.getInstance().enter(caller, key);
+    }
+
+    @Override
+    public void exitFault(Object permit) {
+        FaultInjector.getInstance().exit(permit);
+    }
+
+    @Override
+    public boolean divert(String key) {
+        return RolloutScheduler.getInstance().divert(key);
+    }
+}
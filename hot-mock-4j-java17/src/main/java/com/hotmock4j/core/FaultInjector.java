@@ -0,0 +1,278 @@
+package com.hotmock4j.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotmock4j.log.AgentLogger;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Injects the faults of methods in fault mode. Woven methods call enter before their code runs and exit with its
+ * result when they return or throw. Faults are held per "className#methodName", with the descriptor when the
+ * method selects one overload: the plan's fault is applied when the class is woven, and the API can replace it
+ * at any time without weaving again. Applying a changed fault restarts its ramp. Delays park the thread with
+ * LockSupport, so virtual threads unmount while they wait.
+ */
+public final class FaultInjector {
+
+    private static final FaultInjector INSTANCE = new FaultInjector();
+
+    private final Map<String, ActiveFault> faults = new ConcurrentHashMap<>();
+    private final ObjectMapper configMapper = new ObjectMapper();
+
+    private FaultInjector() {
+    }
+
+    public static FaultInjector getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Apply the method's fault from the plan; called when its class is woven. An unchanged fault keeps its ramp.
+     */
+    public void register(String className, MockMethod mockMethod) {
+        MethodFault config = mockMethod.getFault();
+        faults.compute(mockMethod.methodKey(className),
+                (k, existing) -> existing != null && sameConfig(existing.config, config) ? existing : new ActiveFault(config));
+    }
+
+    /**
+     * Replace a method's fault live; a disabled fault turns injection off until it is replaced again
+     *
+     * @return false if the method has no fault in the active plan, so its calls do not reach the injector
+     */
+    public boolean update(String methodKey, MethodFault config) {
+        return faults.replace(methodKey, new ActiveFault(config)) != null;
+    }
+
+    /**
+     * Snapshot of the faults by method key, sorted
+     */
+    public Map<String, ActiveFault> getFaults() {
+        return new TreeMap<>(faults);
+    }
+
+    /**
+     * Take a permit, wait and possibly throw, as the method's fault says
+     *
+     * @param caller the woven class, whose loader the exception class is resolved from; null for pre-1.5 class files
+     * @return the permit to hand to exit, or null
+     */
+    public Object enter(Class<?> caller, String key) {
+        ActiveFault fault = faults.get(key);
+        if (fault == null || !fault.config.isEnabled()) {
+            return null;
+        }
+        Semaphore permits = fault.permits;
+        if (permits != null) {
+            fault.acquire(caller);
+        }
+        try {
+            double intensity = fault.intensity();
+            long delayNanos = (long) (fault.sampleDelayNanos() * intensity);
+            if (delayNanos > 0) {
+                park(delayNanos);
+                fault.delays.observe(delayNanos);
+            }
+            double errorRate = fault.config.getErrorRate() * intensity;
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                fault.errors.increment();
+                throw sneakyThrow(fault.newException(caller, fault.config.getExceptionMessage()));
+            }
+        } catch (Throwable t) {
+            if (permits != null) {
+                permits.release();
+            }
+            throw sneakyThrow(t);
+        }
+        return permits;
+    }
+
+    /**
+     * Called when a method in fault mode returns or throws, with what enter returned
+     */
+    public void exit(Object permit) {
+        if (permit instanceof Semaphore) {
+            ((Semaphore) permit).release();
+        }
+    }
+
+    private boolean sameConfig(MethodFault a, MethodFault b) {
+        try {
+            return Objects.equals(configMapper.writeValueAsString(a), configMapper.writeValueAsString(b));
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Park for the delay; parkNanos may return early, and an interrupt ends the delay and stays set
+     */
+    private static void park(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Throw any exception, checked ones included, without declaring it
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> RuntimeException sneakyThrow(Throwable t) throws T {
+        throw (T) t;
+    }
+
+    /**
+     * A fault in effect, with the state its calls share
+     */
+    public static final class ActiveFault {
+        private final MethodFault config;
+        private final long appliedAt = System.nanoTime();
+        /** Null when concurrency is not capped */
+        private final Semaphore permits;
+        /** Upper bounds in nanoseconds and cumulative counts of the histogram buckets */
+        private final long[] bucketBounds;
+        private final long[] cumulativeCounts;
+        private volatile Constructor<?> exceptionConstructor;
+        private final AgentMetrics.Histogram delays = new AgentMetrics.Histogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+
+        ActiveFault(MethodFault config) {
+            this.config = config != null ? config : new MethodFault();
+            this.permits = this.config.getMaxConcurrency() > 0 ? new Semaphore(this.config.getMaxConcurrency(), true) : null;
+            List<MethodFault.DelayBucket> histogram = this.config.getHistogram();
+            int size = histogram != null ? histogram.size() : 0;
+            this.bucketBounds = new long[size];
+            this.cumulativeCounts = new long[size];
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                total += Math.max(0, histogram.get(i).getCount());
+                bucketBounds[i] = TimeUnit.MILLISECONDS.toNanos(histogram.get(i).getUpToMillis());
+                cumulativeCounts[i] = total;
+            }
+        }
+
+        public MethodFault getConfig() {
+            return config;
+        }
+
+        /**
+         * Share of the configured delay and error rate applied now, from 0 to 1 over the ramp
+         */
+        public double intensity() {
+            long rampNanos = TimeUnit.MILLISECONDS.toNanos(config.getRampMillis());
+            return rampNanos <= 0 ? 1.0 : Math.min(1.0, (double) (System.nanoTime() - appliedAt) / rampNanos);
+        }
+
+        /**
+         * Calls holding a permit, 0 when concurrency is not capped
+         */
+        public int inFlight() {
+            return permits != null ? config.getMaxConcurrency() - permits.availablePermits() : 0;
+        }
+
+        public long errorCount() {
+            return errors.sum();
+        }
+
+        public long rejectionCount() {
+            return rejections.sum();
+        }
+
+        public AgentMetrics.Histogram getDelays() {
+            return delays;
+        }
+
+        private void acquire(Class<?> caller) {
+            long timeout = config.getAcquireTimeoutMillis();
+            if (timeout <= 0) {
+                permits.acquireUninterruptibly();
+                return;
+            }
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                rejections.increment();
+                throw sneakyThrow(newException(caller, "No permit within " + timeout + " ms"));
+            }
+        }
+
+        private long sampleDelayNanos() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long min = TimeUnit.MILLISECONDS.toNanos(config.getMinDelayMillis());
+            long max = TimeUnit.MILLISECONDS.toNanos(config.getMaxDelayMillis());
+            switch (config.getDelayType()) {
+                case FIXED:
+                    return TimeUnit.MILLISECONDS.toNanos(config.getDelayMillis());
+                case UNIFORM:
+                    return max > min ? random.nextLong(min, max + 1) : min;
+                case NORMAL:
+                    double sample = config.getDelayMillis() + random.nextGaussian() * config.getStddevMillis();
+                    long nanos = Math.max(min, (long) (sample * 1_000_000));
+                    return max > 0 ? Math.min(max, nanos) : nanos;
+                case HISTOGRAM:
+                    return sampleHistogram(random);
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Pick a bucket weighted by its count, then a delay uniformly between its bounds
+         */
+        private long sampleHistogram(ThreadLocalRandom random) {
+            int size = cumulativeCounts.length;
+            if (size == 0 || cumulativeCounts[size - 1] == 0) {
+                return 0;
+            }
+            long pick = random.nextLong(cumulativeCounts[size - 1]);
+            int bucket = 0;
+            while (cumulativeCounts[bucket] <= pick) {
+                bucket++;
+            }
+            long lower = bucket == 0 ? 0 : bucketBounds[bucket - 1];
+            long upper = bucketBounds[bucket];
+            return upper > lower ? random.nextLong(lower, upper + 1) : upper;
+        }
+
+        private Throwable newException(Class<?> caller, String message) {
+            try {
+                Constructor<?> constructor = exceptionConstructor;
+                if (constructor == null) {
+                    String name = config.getExceptionClass() != null ? config.getExceptionClass() : "java.lang.RuntimeException";
+                    Class<?> type = caller != null ? ClassResolver.getInstance().resolve(caller, name)
+                            : Class.forName(name, false, null);
+                    try {
+                        constructor = type.getConstructor(String.class);
+                    } catch (NoSuchMethodException e) {
+                        constructor = type.getConstructor();
+                    }
+                    exceptionConstructor = constructor;
+                }
+                return (Throwable) (constructor.getParameterCount() == 1
+                        ? constructor.newInstance(message) : constructor.newInstance());
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                AgentLogger.warn("Cannot create injected {}: {}", config.getExceptionClass(), e.toString());
+                return new RuntimeException(message);
+            }
+        }
+    }
+}
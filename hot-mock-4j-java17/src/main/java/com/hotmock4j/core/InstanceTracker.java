@@ -1,5 +1,8 @@
 package com.hotmock4j.core;
 
+import com.hotmock4j.jfr.FieldSweepEvent;
+import com.hotmock4j.log.AgentLogger;
+
 import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -24,7 +27,7 @@ public class InstanceTracker {
     public static void registerInstance(String className, Object instance) {
         getInstance().instancesByClass.computeIfAbsent(className, k -> Collections.synchronizedSet(new HashSet<>()))
                        .add(new WeakReference<>(instance));
-        System.out.println("Registered instance of " + className + ": " + instance);
+        AgentLogger.trace("Registered instance of {}", className);
     }
     
     /**
@@ -53,22 +56,55 @@ public class InstanceTracker {
     }
     
     /**
-     * Update field values for all instances of specified class
+     * Number of instance references held per class, including collected ones not yet pruned
+     */
+    public Map<String, Integer> getTrackedCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, Set<WeakReference<Object>>> entry : instancesByClass.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+        return counts;
+    }
+    
+    /**
+     * Update field values for all instances of specified class.
+     * Instances are registered by class name, so only those of this very class, or a subclass, are updated;
+     * a class with the same name from another class loader is swept separately.
      */
-    public void updateFieldValues(String className, String fieldName, Object fieldValue) {
+    public void updateFieldValues(Class<?> targetClass, String fieldName, Object fieldValue) {
+        String className = targetClass.getName();
+        FieldSweepEvent event = new FieldSweepEvent();
+        event.begin();
         List<Object> instances = getInstances(className);
-        System.out.println("Updating field " + fieldName + " for " + instances.size() + " instances of " + className);
+        AgentLogger.debug("Updating field {} for {} instances of {}", fieldName, instances.size(), className);
         
+        java.lang.reflect.Field field;
+        try {
+            field = ClassResolver.getInstance().field(targetClass, fieldName);
+        } catch (NoSuchFieldException e) {
+            AgentLogger.warn("Failed to update field {} of {}: no such field", fieldName, className);
+            return;
+        }
+        int failures = 0;
         for (Object instance : instances) {
+            if (!targetClass.isInstance(instance)) {
+                continue;
+            }
             try {
-                java.lang.reflect.Field field = instance.getClass().getDeclaredField(fieldName);
-                field.setAccessible(true);
                 field.set(instance, fieldValue);
-                System.out.println("Updated field " + fieldName + " = " + fieldValue + " for instance: " + instance);
             } catch (Exception e) {
-                System.err.println("Failed to update field " + fieldName + " for instance " + instance + ": " + e.getMessage());
+                failures++;
+                AgentLogger.warn("Failed to update field {} for an instance of {}: {}", fieldName, className, e.getMessage());
             }
         }
+        
+        if (event.shouldCommit()) {
+            event.className = className;
+            event.fieldName = fieldName;
+            event.instances = instances.size();
+            event.failures = failures;
+            event.commit();
+        }
     }
     
     /**
@@ -0,0 +1,226 @@
+package com.hotmock4j.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of one memoized method, keyed by its receiver and arguments (compared with Arrays.deepEquals).
+ * Entries are spread over stripes, each an access-ordered LinkedHashMap behind its own lock, so calls with
+ * different arguments rarely contend. A full stripe evicts its least recently used entry, but only for a key a
+ * shared frequency sketch has seen more often than that entry (TinyLFU admission), so a burst of one-off
+ * arguments does not flush the ones asked for again and again. An expired entry is a miss and is always evicted.
+ */
+public final class MemoCache {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Stripe[] stripes;
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    MemoCache(MethodMemo config) {
+        this.ttlMillis = Math.max(0, config.getTtlMillis());
+        this.maxEntries = Math.max(1, config.getMaxEntries());
+        // At least 16 entries per stripe, so small caches still evict close to LRU order
+        int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, maxEntries / 16)));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxEntries / stripeCount + (i < maxEntries % stripeCount ? 1 : 0));
+        }
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * The cached result for these arguments, or null on a miss
+     */
+    Object get(Object[] arguments) {
+        Key key = new Key(arguments);
+        sketch.increment(key.hash);
+        Stripe stripe = stripe(key.hash);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(System.nanoTime())) {
+                    hits.increment();
+                    return entry.value;
+                }
+                stripe.entries.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(Object[] arguments, Object value) {
+        Key key = new Key(arguments);
+        long now = System.nanoTime();
+        Entry entry = new Entry(value, ttlMillis == 0 ? 0 : now + ttlMillis * 1_000_000L);
+        Stripe stripe = stripe(key.hash);
+        synchronized (stripe) {
+            if (stripe.entries.size() >= stripe.capacity && !stripe.entries.containsKey(key)) {
+                Iterator<Map.Entry<Key, Entry>> eldest = stripe.entries.entrySet().iterator();
+                Map.Entry<Key, Entry> victim = eldest.next();
+                if (!victim.getValue().isExpired(now)
+                        && sketch.frequency(key.hash) <= sketch.frequency(victim.getKey().hash)) {
+                    return;
+                }
+                eldest.remove();
+                evictions.increment();
+            }
+            stripe.entries.put(key, entry);
+        }
+    }
+
+    void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+            }
+        }
+    }
+
+    boolean hasConfig(MethodMemo config) {
+        return ttlMillis == Math.max(0, config.getTtlMillis()) && maxEntries == Math.max(1, config.getMaxEntries());
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private Stripe stripe(int hash) {
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe {
+        private final int capacity;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private static final class Key {
+        private final Object[] arguments;
+        private final int hash;
+
+        Key(Object[] arguments) {
+            this.arguments = arguments;
+            this.hash = Arrays.deepHashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash && Arrays.deepEquals(arguments, ((Key) o).arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        /** System.nanoTime() the entry expires at, 0 if it does not */
+        private final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Count-min sketch of how often keys were looked up, with four counters per key capped at 15. All counters
+     * are halved once ten lookups per counter have been counted, so the estimate follows recent popularity.
+     * Updates race without locks; a lost increment only makes an estimate slightly low.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxEntries) {
+            int size = Integer.highestOneBit(Math.max(64, Math.min(maxEntries, 1 << 24)) * 2 - 1);
+            this.counters = new byte[size];
+            this.mask = size - 1;
+            this.sampleSize = 10 * size;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int seed : SEEDS) {
+                int index = index(hash, seed);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int seed : SEEDS) {
+                frequency = Math.min(frequency, counters[index(hash, seed)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int seed) {
+            int h = hash * seed;
+            return (h ^ (h >>> 17)) & mask;
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>= 1;
+            }
+            additions = 0;
+        }
+    }
+}
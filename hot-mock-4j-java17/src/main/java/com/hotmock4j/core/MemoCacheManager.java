@@ -0,0 +1,123 @@
+package com.hotmock4j.core;
+
+import com.hotmock4j.log.AgentLogger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches of the methods in memo mode, one per woven method, keyed "className#methodName" followed by the
+ * descriptor. A cache is created on the first call and is cleared when its method is woven again with a
+ * different memo configuration; it can also be invalidated through the API.
+ */
+public final class MemoCacheManager {
+
+    private static final MemoCacheManager INSTANCE = new MemoCacheManager();
+
+    /** Memo configurations by method key: "className#methodName", with the descriptor for one overload */
+    private final Map<String, MethodMemo> configs = new ConcurrentHashMap<>();
+    private final Map<String, MemoCache> caches = new ConcurrentHashMap<>();
+
+    private MemoCacheManager() {
+    }
+
+    public static MemoCacheManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Use this configuration for the method's calls; called when its class is woven
+     */
+    public void register(String className, MockMethod mockMethod) {
+        MethodMemo config = mockMethod.getMemo();
+        configs.put(mockMethod.methodKey(className), config);
+        caches.entrySet().removeIf(entry -> configOf(entry.getKey()) == config && !entry.getValue().hasConfig(config));
+    }
+
+    /**
+     * The cached result of an earlier call with equal arguments, or null if the method has to run
+     */
+    public Object lookup(String key, Object[] arguments) {
+        MemoCache cache = cache(key);
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return cache.get(arguments);
+        } catch (RuntimeException e) {
+            // hashCode or equals of an argument failed; the call runs as if nothing was cached
+            AgentLogger.warn("Memo lookup of {} failed: {}", key, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Cache the result of a call that ran the method; null results are not cached
+     */
+    public void store(String key, Object[] arguments, Object returnValue) {
+        MemoCache cache = cache(key);
+        if (cache == null || returnValue == null) {
+            return;
+        }
+        try {
+            cache.put(arguments, returnValue);
+        } catch (RuntimeException e) {
+            AgentLogger.warn("Memo store of {} failed: {}", key, e.toString());
+        }
+    }
+
+    /**
+     * Clear the caches of a method ("className#methodName", with or without descriptor), of all methods of a
+     * class, or of every method when target is null
+     *
+     * @return number of caches cleared
+     */
+    public int invalidate(String target) {
+        int cleared = 0;
+        for (Map.Entry<String, MemoCache> entry : caches.entrySet()) {
+            String key = entry.getKey();
+            if (target == null || key.equals(target) || methodOf(key).equals(target)
+                    || key.startsWith(target + "#")) {
+                entry.getValue().clear();
+                cleared++;
+            }
+        }
+        return cleared;
+    }
+
+    /**
+     * Snapshot of the caches by key, sorted
+     */
+    public Map<String, MemoCache> getCaches() {
+        return new TreeMap<>(caches);
+    }
+
+    private MemoCache cache(String key) {
+        MemoCache cache = caches.get(key);
+        if (cache == null) {
+            MethodMemo config = configOf(key);
+            if (config == null) {
+                return null;
+            }
+            cache = caches.computeIfAbsent(key, k -> new MemoCache(config));
+        }
+        return cache;
+    }
+
+    /**
+     * Configuration of a cache key: the one of its overload, else the one of all overloads of the method
+     */
+    private MethodMemo configOf(String key) {
+        MethodMemo config = configs.get(key);
+        return config != null ? config : configs.get(methodOf(key));
+    }
+
+    /**
+     * "className#methodName" of a key
+     */
+    private static String methodOf(String key) {
+        int paren = key.indexOf('(');
+        return paren < 0 ? key : key.substring(0, paren);
+    }
+}
@@ -0,0 +1,169 @@
+package com.hotmock4j.core;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Fault injection of a mocked method, applied by FaultInjector before the real implementation runs: a call
+ * first takes a permit when concurrency is capped, then waits for a sampled delay, then fails at errorRate.
+ * Delays and the error rate grow linearly from zero over rampMillis after the fault is applied.
+ */
+public class MethodFault implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum DelayType {
+        NONE, FIXED, UNIFORM, NORMAL, HISTOGRAM
+    }
+
+    /**
+     * A histogram bucket: count calls took up to upToMillis, and longer than the previous bucket's bound
+     */
+    public static class DelayBucket implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long upToMillis;
+        private long count;
+
+        public long getUpToMillis() {
+            return upToMillis;
+        }
+
+        public void setUpToMillis(long upToMillis) {
+            this.upToMillis = upToMillis;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+    }
+
+    private boolean enabled;
+    private DelayType delayType = DelayType.NONE;
+    /** FIXED delay, or the mean of a NORMAL one */
+    private long delayMillis;
+    /** Bounds of a UNIFORM delay; a NORMAL delay is clamped to them, maxDelayMillis 0 leaving it unbounded */
+    private long minDelayMillis;
+    private long maxDelayMillis;
+    private long stddevMillis;
+    /** Buckets of a HISTOGRAM delay in increasing order, e.g. from a latency histogram of the real dependency */
+    private List<DelayBucket> histogram;
+    /** Fraction of calls that throw, from 0 to 1 */
+    private double errorRate;
+    /** Thrown with exceptionMessage; checked exceptions are thrown even if the method does not declare them */
+    private String exceptionClass = "java.lang.RuntimeException";
+    private String exceptionMessage = "Injected fault";
+    /** Calls allowed in the method at once, 0 for no limit */
+    private int maxConcurrency;
+    /** How long a call waits for a permit before it fails, 0 to wait as long as it takes */
+    private long acquireTimeoutMillis;
+    private long rampMillis;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DelayType getDelayType() {
+        return delayType;
+    }
+
+    public void setDelayType(DelayType delayType) {
+        this.delayType = delayType;
+    }
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    public void setMinDelayMillis(long minDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public long getStddevMillis() {
+        return stddevMillis;
+    }
+
+    public void setStddevMillis(long stddevMillis) {
+        this.stddevMillis = stddevMillis;
+    }
+
+    public List<DelayBucket> getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(List<DelayBucket> histogram) {
+        this.histogram = histogram;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public String getExceptionClass() {
+        return exceptionClass;
+    }
+
+    public void setExceptionClass(String exceptionClass) {
+        this.exceptionClass = exceptionClass;
+    }
+
+    public String getExceptionMessage() {
+        return exceptionMessage;
+    }
+
+    public void setExceptionMessage(String exceptionMessage) {
+        this.exceptionMessage = exceptionMessage;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public long getRampMillis() {
+        return rampMillis;
+    }
+
+    public void setRampMillis(long rampMillis) {
+        this.rampMillis = rampMillis;
+    }
+}
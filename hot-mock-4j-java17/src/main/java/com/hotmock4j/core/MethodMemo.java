@@ -0,0 +1,41 @@
+package com.hotmock4j.core;
+
+import java.io.Serializable;
+
+/**
+ * Memo mode of a mocked method: the first call with some arguments runs the real implementation, and later
+ * calls with equal arguments return its result from a MemoCache until it expires or is evicted.
+ */
+public class MethodMemo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean enabled;
+    /** How long a result is returned, in milliseconds; 0 keeps it until it is evicted or invalidated */
+    private long ttlMillis;
+    private int maxEntries = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+}
@@ -0,0 +1,63 @@
+package com.hotmock4j.core;
+
+import java.io.Serializable;
+
+/**
+ * Record mode of a mocked method: the real implementation runs, and the first sampled return values are turned
+ * into templates of the plan by TemplateRecorder. Once count values are recorded, record mode switches itself
+ * off and the method returns the first recorded template.
+ */
+public class MethodRecording implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean enabled;
+    /** Return values to record */
+    private int count = 1;
+    /** Return values recorded so far, kept so a restart does not record more than count */
+    private int recorded;
+    /** Fraction of returns considered for recording, from 0 to 1 */
+    private double sampleRate = 1.0;
+    /** Levels of nested objects turned into templates below the returned one */
+    private int maxDepth = 3;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public int getRecorded() {
+        return recorded;
+    }
+
+    public void setRecorded(int recorded) {
+        this.recorded = recorded;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+}
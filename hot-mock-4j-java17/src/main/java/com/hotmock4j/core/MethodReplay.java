@@ -0,0 +1,47 @@
+package com.hotmock4j.core;
+
+import java.io.Serializable;
+
+/**
+ * Replay mode of a mocked method, backed by a store of ReplayStoreManager. In RECORD mode the real
+ * implementation runs and each non-null return value is appended to the store under a hash of the method and
+ * its arguments. In REPLAY mode a call whose arguments are in the store returns the recorded value, and any
+ * other call runs the real implementation.
+ */
+public class MethodReplay implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Mode {
+        RECORD, REPLAY
+    }
+
+    private boolean enabled;
+    private Mode mode = Mode.REPLAY;
+    /** Name of the store's files under the replay directory; letters, digits, '.', '_' and '-' */
+    private String store;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getStore() {
+        return store;
+    }
+
+    public void setStore(String store) {
+        this.store = store;
+    }
+}
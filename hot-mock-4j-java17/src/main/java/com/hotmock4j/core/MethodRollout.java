@@ -0,0 +1,70 @@
+package com.hotmock4j.core;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Gradual rollout of a mocked method's return value or stubs: only a share of calls is answered by the mock,
+ * the rest run the real implementation. The share starts at probability and follows the schedule, moving
+ * linearly from one step to the next, e.g. from 0.05 to 1.0 over ten minutes.
+ */
+public class MethodRollout implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A point of the schedule: afterMillis after the rollout is applied, probability of the calls are mocked
+     */
+    public static class RolloutStep implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long afterMillis;
+        private double probability;
+
+        public long getAfterMillis() {
+            return afterMillis;
+        }
+
+        public void setAfterMillis(long afterMillis) {
+            this.afterMillis = afterMillis;
+        }
+
+        public double getProbability() {
+            return probability;
+        }
+
+        public void setProbability(double probability) {
+            this.probability = probability;
+        }
+    }
+
+    private boolean enabled;
+    /** Share of calls answered by the mock when the rollout is applied, from 0 to 1 */
+    private double probability = 1.0;
+    /** Steps in increasing afterMillis; after the last one its probability holds */
+    private List<RolloutStep> schedule;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    public void setProbability(double probability) {
+        this.probability = probability;
+    }
+
+    public List<RolloutStep> getSchedule() {
+        return schedule;
+    }
+
+    public void setSchedule(List<RolloutStep> schedule) {
+        this.schedule = schedule;
+    }
+}
@@ -2,8 +2,31 @@ package com.hotmock4j.core;
 
 import java.io.Serializable;
 
+/**
+ * Spy mode of a mocked method: the real implementation runs and sampled calls are recorded by SpyRecorder.
+ * A spied method ignores its returnObject, stubs and return template.
+ */
 public class MethodSpy implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    private boolean enabled;
+    /** Fraction of calls recorded, from 0 to 1 */
+    private double sampleRate = 1.0;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
 }
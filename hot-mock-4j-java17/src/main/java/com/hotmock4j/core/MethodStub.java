@@ -1,8 +1,31 @@
 package com.hotmock4j.core;
 
 import java.io.Serializable;
+import java.util.List;
 
+/**
+ * A return value used only when the call's arguments match.
+ * Matchers apply to the arguments by position; missing trailing matchers match anything.
+ */
 public class MethodStub implements Serializable {
     private static final long serialVersionUID = 1L;
-    MockClass mockClass;
+
+    private List<ArgumentMatcher> arguments;
+    private Object returnObject;
+
+    public List<ArgumentMatcher> getArguments() {
+        return arguments;
+    }
+
+    public void setArguments(List<ArgumentMatcher> arguments) {
+        this.arguments = arguments;
+    }
+
+    public Object getReturnObject() {
+        return returnObject;
+    }
+
+    public void setReturnObject(Object returnObject) {
+        this.returnObject = returnObject;
+    }
 }
@@ -23,7 +23,8 @@ public class MockClass implements Serializable {
     private List<MockMethod> methods;
     private boolean isActive;
     private String templateName;
-
+    /** Data-only entry, such as a recorded template, that builds instances and does not mock its class */
+    private boolean template;
 
 
     public MockClass() {
@@ -143,4 +144,16 @@ public class MockClass implements Serializable {
     public void setTemplateName(String templateName) {
         this.templateName = templateName;
     }
+
+    /**
+     * Whether the entry is data-only, such as a recorded template; it builds instances and does not mock its class.
+     * Mock entries keep their templateName, which other entries can still build instances from.
+     */
+    public boolean isTemplate() {
+        return template;
+    }
+
+    public void setTemplate(boolean template) {
+        this.template = template;
+    }
 }
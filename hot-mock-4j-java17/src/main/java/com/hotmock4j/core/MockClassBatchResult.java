@@ -0,0 +1,88 @@
+package com.hotmock4j.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk MockClass update: per-class results plus totals and timing
+ */
+public class MockClassBatchResult {
+
+    private boolean success;
+    private String message;
+    private final List<ClassResult> results = new ArrayList<>();
+    private int retransformedClasses;
+    private long elapsedMillis;
+    /** Plan version the batch wrote, 0 when it was rejected */
+    private long version;
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public List<ClassResult> getResults() {
+        return results;
+    }
+
+    public int getRetransformedClasses() {
+        return retransformedClasses;
+    }
+
+    public void setRetransformedClasses(int retransformedClasses) {
+        this.retransformedClasses = retransformedClasses;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public void addResult(String className, String templateName, String status, String message) {
+        results.add(new ClassResult(className, templateName, status, message));
+    }
+
+    /**
+     * Result for one MockClass of the batch; status is created, updated or invalid
+     */
+    public static class ClassResult {
+        private final String className;
+        private final String templateName;
+        private final String status;
+        private final String message;
+
+        public ClassResult(String className, String templateName, String status, String message) {
+            this.className = className;
+            this.templateName = templateName;
+            this.status = status;
+            this.message = message;
+        }
+
+        public String getClassName() { return className; }
+        public String getTemplateName() { return templateName; }
+        public String getStatus() { return status; }
+        public String getMessage() { return message; }
+    }
+}
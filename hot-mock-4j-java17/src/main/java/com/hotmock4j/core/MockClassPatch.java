@@ -0,0 +1,87 @@
+package com.hotmock4j.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON-Patch style edit of a single MockClass.
+ * Paths address members by name: "/fields/{fieldName}" or "/methods/{methodName}",
+ * optionally followed by a property, e.g. "/fields/count/mockFieldValue" or "/methods/load/active".
+ * "~1" and "~0" escape "/" and "~" as in JSON Pointer.
+ */
+public class MockClassPatch {
+
+    private String className;
+    private String templateName;
+    private List<Operation> operations;
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public void setTemplateName(String templateName) {
+        this.templateName = templateName;
+    }
+
+    public List<Operation> getOperations() {
+        if (operations == null) {
+            operations = new ArrayList<>();
+        }
+        return operations;
+    }
+
+    public void setOperations(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * One patch operation; op is add, replace or remove.
+     * add creates the member when missing, replace requires it to exist, and both merge the value into it.
+     */
+    public static class Operation {
+        private String op;
+        private String path;
+        private Object value;
+
+        public Operation() {
+        }
+
+        public Operation(String op, String path, Object value) {
+            this.op = op;
+            this.path = path;
+            this.value = value;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public void setOp(String op) {
+            this.op = op;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public void setValue(Object value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.hotmock4j.core;
+
+import com.hotmock4j.jfr.MockHitEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often woven mock methods answered with mock data.
+ * Keys are "className#methodName" constants embedded in the woven bytecode.
+ */
+public class MockHitCounter {
+
+    private static final Map<String, LongAdder> HITS = new ConcurrentHashMap<>();
+
+    private MockHitCounter() {
+    }
+
+    /**
+     * Called from woven method prologues
+     */
+    public static void recordHit(String key) {
+        LongAdder adder = HITS.get(key);
+        if (adder == null) {
+            adder = HITS.computeIfAbsent(key, k -> new LongAdder());
+        }
+        adder.increment();
+        MockHitEvent.sample(key);
+    }
+
+    /**
+     * Current totals per "className#methodName"
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : HITS.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    public static void clear() {
+        HITS.clear();
+    }
+}
@@ -9,11 +9,22 @@ public class MockMethod implements Serializable {
 
     private Object returnObject;
     private String methodName;
+    /** JVM method descriptor selecting one overload; null applies the mock to every overload */
+    private String descriptor;
     private String returnType;
     private List<Object> parameters;
     private List<String> parameterTypes;
     private MethodSpy methodSpy;
+    private MethodRecording recording;
+    private MethodReplay replay;
+    private MethodMemo memo;
+    private MethodFault fault;
+    private MethodRollout rollout;
+    /** Mock context the mock and fault are limited to ("*" for any); null applies them to every caller */
+    private String context;
     private MethodStub methodStub;
+    /** Tried in order before returnObject; without returnObject an unmatched call runs the original method */
+    private List<MethodStub> stubs;
     private boolean isActive;
     private String returnClassName;
     private String activeReturnTemplateName;
@@ -34,6 +45,21 @@ public class MockMethod implements Serializable {
         this.methodName = methodName;
     }
 
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public void setDescriptor(String descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * "className#methodName", followed by the descriptor when the method selects one overload
+     */
+    public String methodKey(String className) {
+        return className + "#" + methodName + (descriptor != null ? descriptor : "");
+    }
+
     public String getReturnType() {
         return returnType;
     }
@@ -66,6 +92,54 @@ public class MockMethod implements Serializable {
         this.methodSpy = methodSpy;
     }
 
+    public MethodRecording getRecording() {
+        return recording;
+    }
+
+    public void setRecording(MethodRecording recording) {
+        this.recording = recording;
+    }
+
+    public MethodReplay getReplay() {
+        return replay;
+    }
+
+    public void setReplay(MethodReplay replay) {
+        this.replay = replay;
+    }
+
+    public MethodMemo getMemo() {
+        return memo;
+    }
+
+    public void setMemo(MethodMemo memo) {
+        this.memo = memo;
+    }
+
+    public MethodFault getFault() {
+        return fault;
+    }
+
+    public void setFault(MethodFault fault) {
+        this.fault = fault;
+    }
+
+    public MethodRollout getRollout() {
+        return rollout;
+    }
+
+    public void setRollout(MethodRollout rollout) {
+        this.rollout = rollout;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public void setContext(String context) {
+        this.context = context;
+    }
+
     public MethodStub getMethodStub() {
         return methodStub;
     }
@@ -74,6 +148,14 @@ public class MockMethod implements Serializable {
         this.methodStub = methodStub;
     }
 
+    public List<MethodStub> getStubs() {
+        return stubs;
+    }
+
+    public void setStubs(List<MethodStub> stubs) {
+        this.stubs = stubs;
+    }
+
     public boolean isActive() {
         return isActive;
     }
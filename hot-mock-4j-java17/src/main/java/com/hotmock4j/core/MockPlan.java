@@ -20,6 +20,7 @@ public class MockPlan implements Serializable {
 
     private List<MockClass> mockClassList;
     private boolean isActive;
+    private long version;
 
     public MockPlan(MockProject project, String planName) {
         this.project = project;
@@ -39,13 +40,15 @@ public class MockPlan implements Serializable {
                    @JsonProperty("jsonFileName") String jsonFileName,
                    @JsonProperty("creationDate") Date creationDate,
                    @JsonProperty("mockClassList") List<MockClass> mockClassList,
-                   @JsonProperty("active") boolean isActive) {
+                   @JsonProperty("active") boolean isActive,
+                   @JsonProperty("version") long version) {
         this.project = project;
         this.planName = planName;
         this.jsonFileName = jsonFileName;
         this.creationDate = creationDate;
         this.mockClassList = mockClassList;
         this.isActive = isActive;
+        this.version = version;
     }
 
     public MockProject getProject() {
@@ -100,6 +103,14 @@ public class MockPlan implements Serializable {
         isActive = active;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public void putMockClass(MockClass mockClass) {
         if (mockClassList == null) {
             mockClassList = new ArrayList<>();
@@ -1,6 +1,10 @@
 package com.hotmock4j.core;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.jfr.PlanActivatedEvent;
+import com.hotmock4j.jfr.RetransformEvent;
+import com.hotmock4j.log.AgentLogger;
 
 import java.io.File;
 import java.io.IOException;
@@ -10,25 +14,40 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * MockPlan Manager, responsible for CRUD operations and persistence of MockPlans
+ * MockPlan Manager, responsible for CRUD operations and persistence of MockPlans.
+ * Mutations of one plan are serialized by a lock stripe chosen from the plan key, so edits of
+ * different plans proceed in parallel. Every mutation can be guarded by the version the caller last saw.
  */
 public class MockPlanManager {
     
     private static final MockPlanManager INSTANCE = new MockPlanManager();
+    private static final int LOCK_STRIPES = 16;
+    /** Returned by the versioned mutators when the plan or class does not exist */
+    public static final long NOT_FOUND = -1;
     private final Map<String, MockPlan> mockPlans = new ConcurrentHashMap<>();
+    private final ReentrantLock[] planLocks = new ReentrantLock[LOCK_STRIPES];
+    private final AtomicReference<MockPlan> activePlan = new AtomicReference<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private static final String STORAGE_DIR = "mock-plans";
+    private final AgentEventBus eventBus = AgentEventBus.getInstance();
+    private final AgentMetrics metrics = AgentMetrics.getInstance();
+    private final ClassResolver classResolver = ClassResolver.getInstance();
+    private final String storageDir = AgentBootstrap.agentArgs.getStorageDir();
     
 
     private MockPlanManager() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            planLocks[i] = new ReentrantLock();
+        }
         // Create storage directory
         try {
-            Files.createDirectories(Paths.get(STORAGE_DIR));
+            Files.createDirectories(Paths.get(storageDir));
             loadAllFromFiles();
         } catch (IOException e) {
-            System.err.println("Failed to create storage directory: " + e.getMessage());
+            AgentLogger.error("Failed to create storage directory: {}", e.getMessage());
         }
     }
     
@@ -41,19 +60,26 @@ public class MockPlanManager {
      */
     public MockPlan createMockPlan(String planName, MockProject project) {
         String key = generateKey(project, planName);
-        if (mockPlans.containsKey(key)) {
-            throw new IllegalArgumentException("MockPlan already exists: " + planName);
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            if (mockPlans.containsKey(key)) {
+                throw new IllegalArgumentException("MockPlan already exists: " + planName);
+            }
+            
+            MockPlan mockPlan = new MockPlan(project, planName);
+            mockPlan.setCreationDate(new Date());
+            mockPlan.setJsonFileName(generateJsonFileName(planName));
+            mockPlan.setActive(false);
+            
+            mockPlans.put(key, mockPlan);
+            markChanged(mockPlan, "created");
+            saveToFile(mockPlan);
+            
+            return mockPlan;
+        } finally {
+            lock.unlock();
         }
-        
-        MockPlan mockPlan = new MockPlan(project, planName);
-        mockPlan.setCreationDate(new Date());
-        mockPlan.setJsonFileName(generateJsonFileName(planName));
-        mockPlan.setActive(false);
-        
-        mockPlans.put(key, mockPlan);
-        saveToFile(mockPlan);
-        
-        return mockPlan;
     }
     
     /**
@@ -75,123 +101,572 @@ public class MockPlanManager {
      * Delete MockPlan
      */
     public boolean deleteMockPlan(MockProject project, String planName) {
+        return deleteMockPlan(project, planName, null);
+    }
+    
+    /**
+     * Delete MockPlan if it is still at the expected version (null skips the check)
+     */
+    public boolean deleteMockPlan(MockProject project, String planName, Long expectedVersion) {
         String key = generateKey(project, planName);
-        MockPlan mockPlan = mockPlans.remove(key);
-        if (mockPlan != null) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            MockPlan mockPlan = mockPlans.get(key);
+            if (mockPlan == null) {
+                return false;
+            }
+            checkVersion(mockPlan, expectedVersion);
+            mockPlans.remove(key);
+            activePlan.compareAndSet(mockPlan, null);
             deleteFile(mockPlan);
+            eventBus.publishPlanChange(AgentEventBus.PLAN_DELETED, mockPlan, "deleted");
             return true;
+        } finally {
+            lock.unlock();
         }
-        return false;
     }
 
     /**
      * Delete all MockClass entries that match className in the specified MockPlan
      */
     public boolean deleteMockClass(String projectName, String planName, String className) {
-        MockPlan mockPlan = getMockPlan(projectName, planName);
-        if (mockPlan == null || className == null || className.trim().isEmpty()) {
-            return false;
-        }
-        List<MockClass> list = mockPlan.getMockClassList();
-        if (list == null || list.isEmpty()) {
-            return false;
+        return deleteMockClass(projectName, planName, className, null) != NOT_FOUND;
+    }
+
+    /**
+     * Delete all MockClass entries that match className if the plan is still at the expected version
+     * @return the plan version written, or NOT_FOUND when the plan or class does not exist
+     */
+    public long deleteMockClass(String projectName, String planName, String className, Long expectedVersion) {
+        if (className == null || className.trim().isEmpty()) {
+            return NOT_FOUND;
         }
-        int before = list.size();
-        list.removeIf(mc -> className.equals(mc.getClassName()));
-        boolean removed = list.size() < before;
-        if (removed) {
+        ReentrantLock lock = lockFor(projectName, planName);
+        lock.lock();
+        try {
+            MockPlan mockPlan = getMockPlan(projectName, planName);
+            if (mockPlan == null) {
+                return NOT_FOUND;
+            }
+            checkVersion(mockPlan, expectedVersion);
+            List<MockClass> list = new ArrayList<>(mockPlan.getMockClassList());
+            if (!list.removeIf(mc -> className.equals(mc.getClassName()))) {
+                return NOT_FOUND;
+            }
+            mockPlan.setMockClassList(list);
+            markChanged(mockPlan, "class-deleted");
             saveToFile(mockPlan);
+            return mockPlan.getVersion();
+        } finally {
+            lock.unlock();
         }
-        return removed;
     }
     
     /**
      * Activate MockPlan
      */
     public boolean activateMockPlan(MockProject project, String planName) {
-        // First deactivate all other MockPlans
-        mockPlans.values().forEach(plan -> plan.setActive(false));
-        
-        // Activate the specified MockPlan
+        return activateMockPlan(project, planName, null) != NOT_FOUND;
+    }
+    
+    /**
+     * Activate MockPlan if it is still at the expected version (null skips the check).
+     * Only the plan being activated and the previously active one are locked and rewritten.
+     * @return the plan version written, or NOT_FOUND when the plan does not exist
+     */
+    public long activateMockPlan(MockProject project, String planName, Long expectedVersion) {
         String key = generateKey(project, planName);
-        MockPlan mockPlan = mockPlans.get(key);
-        if (mockPlan != null) {
-            mockPlan.setActive(true);
-            saveToFile(mockPlan);
-            return true;
+        while (true) {
+            MockPlan previous = activePlan.get();
+            String previousKey = previous != null ? generateKey(previous.getProject(), previous.getPlanName()) : key;
+            
+            // Lock both stripes in index order so two concurrent activations cannot deadlock
+            ReentrantLock first = lockFor(key);
+            ReentrantLock second = lockFor(previousKey);
+            if (stripeOf(previousKey) < stripeOf(key)) {
+                ReentrantLock tmp = first;
+                first = second;
+                second = tmp;
+            }
+            first.lock();
+            second.lock();
+            try {
+                if (activePlan.get() != previous) {
+                    // Another activation won the race while we were waiting, retry against the new pointer
+                    continue;
+                }
+                MockPlan mockPlan = mockPlans.get(key);
+                if (mockPlan == null) {
+                    return NOT_FOUND;
+                }
+                checkVersion(mockPlan, expectedVersion);
+                
+                if (previous != null && previous != mockPlan) {
+                    previous.setActive(false);
+                    markChanged(previous, "deactivated");
+                    saveToFile(previous);
+                }
+                mockPlan.setActive(true);
+                activePlan.set(mockPlan);
+                markChanged(mockPlan, "activated");
+                saveToFile(mockPlan);
+                
+                PlanActivatedEvent event = new PlanActivatedEvent();
+                if (event.shouldCommit()) {
+                    event.projectName = project != null ? project.getProjectName() : null;
+                    event.planName = planName;
+                    event.planVersion = mockPlan.getVersion();
+                    event.mockClassCount = mockPlan.getMockClassList() != null ? mockPlan.getMockClassList().size() : 0;
+                    event.previousPlanName = previous != null && previous != mockPlan ? previous.getPlanName() : null;
+                    event.commit();
+                }
+                return mockPlan.getVersion();
+            } finally {
+                second.unlock();
+                first.unlock();
+            }
         }
-        return false;
     }
     
     /**
      * Get currently active MockPlan
      */
     public MockPlan getActiveMockPlan() {
-        return mockPlans.values().stream()
-                .filter(MockPlan::isActive)
-                .findFirst()
-                .orElse(null);
+        return activePlan.get();
+    }
+    
+    /**
+     * Retransform those of the given loaded classes that the active plan mocks.
+     * Used for classes loaded before the transformers were registered.
+     * @return number of classes retransformed
+     */
+    public int retransformMockedClasses(Set<String> classNames) {
+        MockPlan plan = activePlan.get();
+        if (plan == null || plan.getMockClassList() == null) {
+            return 0;
+        }
+        Set<String> mocked = new HashSet<>();
+        for (MockClass mockClass : plan.getMockClassList()) {
+            if (classNames.contains(mockClass.getClassName())) {
+                mocked.add(mockClass.getClassName());
+            }
+        }
+        return retransformClasses(mocked);
+    }
+    
+    /**
+     * Retransform every loaded class the active plan mocks, e.g. after attaching to a running JVM
+     * @return number of classes retransformed
+     */
+    public int retransformActivePlan() {
+        MockPlan plan = activePlan.get();
+        if (plan == null || plan.getMockClassList() == null) {
+            return 0;
+        }
+        Set<String> classNames = new HashSet<>();
+        for (MockClass mockClass : plan.getMockClassList()) {
+            classNames.add(mockClass.getClassName());
+        }
+        return retransformClasses(classNames);
     }
     
     /**
      * Add class to MockPlan
      */
     public boolean addClassToMockPlan(String projectName, String planName, String className) {
-        MockPlan mockPlan = getMockPlan(projectName, planName);
-        if (mockPlan == null) {
-            return false;
+        ReentrantLock lock = lockFor(projectName, planName);
+        lock.lock();
+        try {
+            MockPlan mockPlan = getMockPlan(projectName, planName);
+            if (mockPlan == null) {
+                return false;
+            }
+            // Allow adding the same class multiple times; uniqueness is enforced by templateName
+            // Create new MockClass
+            MockClass mockClass = new MockClass("", className);
+            List<MockClass> list = new ArrayList<>(mockPlan.getMockClassList());
+            list.add(mockClass);
+            mockPlan.setMockClassList(list);
+            
+            markChanged(mockPlan, "class-added");
+            saveToFile(mockPlan);
+            return true;
+        } finally {
+            lock.unlock();
         }
-        // Allow adding the same class multiple times; uniqueness is enforced by templateName
-        // Create new MockClass
-        MockClass mockClass = new MockClass("", className);
-        mockPlan.getMockClassList().add(mockClass);
-        
-        saveMockPlans();
-        return true;
     }
     
     /**
      * Update field mock values for MockClass
      */
     public boolean updateMockClass(String projectName, String planName, MockClass updatedClass) {
+        return updateMockClass(projectName, planName, updatedClass, null) != NOT_FOUND;
+    }
+    
+    /**
+     * Update a MockClass if the plan is still at the expected version (null skips the check)
+     * @return the plan version written, or NOT_FOUND when the plan does not exist
+     */
+    public long updateMockClass(String projectName, String planName, MockClass updatedClass, Long expectedVersion) {
+        ReentrantLock lock = lockFor(projectName, planName);
+        lock.lock();
+        try {
+            MockPlan mockPlan = getMockPlan(projectName, planName);
+            boolean isUpdate = false;
+            if (mockPlan == null) {
+                return NOT_FOUND;
+            }
+            checkVersion(mockPlan, expectedVersion);
+            
+            // Validate templateName uniqueness within the same mock plan
+            if (updatedClass.getTemplateName() != null && !updatedClass.getTemplateName().trim().isEmpty()) {
+                if (!isTemplateNameUnique(mockPlan, updatedClass.getTemplateName(), updatedClass.getClassName())) {
+                    throw new IllegalArgumentException("Template name '" + updatedClass.getTemplateName() + "' already exists in this mock plan");
+                }
+            }
+            
+            // Find the corresponding MockClass by className + templateName and swap in an updated copy, so
+            // transformers reading the old one never see it half changed
+            List<MockClass> mockClasses = mockPlan.getMockClassList();
+            for (int i = 0; i < mockClasses.size(); i++) {
+                MockClass mockClass = mockClasses.get(i);
+                if (mockClass.getClassName().equals(updatedClass.getClassName())
+                        && safeEquals(mockClass.getTemplateName(), updatedClass.getTemplateName())) {
+                    List<MockClass> list = new ArrayList<>(mockClasses);
+                    list.set(i, withMembers(mockClass, updatedClass.getFields(), updatedClass.getMethods(),
+                            updatedClass.getTemplateName()));
+                    mockPlan.setMockClassList(list);
+                    markChanged(mockPlan, "class-updated");
+                    saveToFile(mockPlan);
+                    isUpdate = true;
+                    break;
+                }
+            }
+
+            if (!isUpdate) {
+                List<MockClass> list = new ArrayList<>(mockPlan.getMockClassList());
+                list.add(updatedClass);
+                mockPlan.setMockClassList(list);
+                markChanged(mockPlan, "class-added");
+                saveToFile(mockPlan);
+                isUpdate = true;
+            }
+
+            // If MockPlan is active, need to update mock field values for loaded classes
+            if (mockPlan.isActive()) {
+                updateAttachedMockFields(updatedClass);
+            }
+            
+            return mockPlan.getVersion();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Update many MockClasses at once.
+     * All definitions are validated first and nothing is applied if any of them is invalid;
+     * otherwise the plan is persisted once and all affected loaded classes are retransformed in one call.
+     */
+    public MockClassBatchResult updateMockClasses(String projectName, String planName, List<MockClass> updatedClasses) {
+        return updateMockClasses(projectName, planName, updatedClasses, null);
+    }
+    
+    /**
+     * Bulk update guarded by the plan version the caller last saw (null skips the check)
+     */
+    public MockClassBatchResult updateMockClasses(String projectName, String planName, List<MockClass> updatedClasses,
+                                                  Long expectedVersion) {
+        ReentrantLock lock = lockFor(projectName, planName);
+        lock.lock();
+        try {
+            return doUpdateMockClasses(projectName, planName, updatedClasses, expectedVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private MockClassBatchResult doUpdateMockClasses(String projectName, String planName, List<MockClass> updatedClasses,
+                                                     Long expectedVersion) {
+        long start = System.nanoTime();
+        MockClassBatchResult result = new MockClassBatchResult();
         MockPlan mockPlan = getMockPlan(projectName, planName);
-        boolean isUpdate = false;
         if (mockPlan == null) {
-            return isUpdate;
+            result.setSuccess(false);
+            result.setMessage("MockPlan not found");
+            return result;
         }
+        checkVersion(mockPlan, expectedVersion);
         
-        // Validate templateName uniqueness within the same mock plan
-        if (updatedClass.getTemplateName() != null && !updatedClass.getTemplateName().trim().isEmpty()) {
-            if (!isTemplateNameUnique(mockPlan, updatedClass.getTemplateName(), updatedClass.getClassName())) {
-                throw new IllegalArgumentException("Template name '" + updatedClass.getTemplateName() + "' already exists in this mock plan");
+        // Validate every definition before touching the plan
+        boolean valid = true;
+        Map<String, String> batchTemplateOwners = new HashMap<>();
+        for (MockClass updatedClass : updatedClasses) {
+            String className = updatedClass.getClassName();
+            String templateName = updatedClass.getTemplateName();
+            String error = null;
+            if (className == null || className.trim().isEmpty()) {
+                error = "className is required";
+            } else if (templateName != null && !templateName.trim().isEmpty()) {
+                String owner = batchTemplateOwners.putIfAbsent(templateName, className);
+                if (owner != null) {
+                    error = "Template name '" + templateName + "' is used more than once in this batch";
+                } else if (!isTemplateNameUnique(mockPlan, templateName, className)) {
+                    error = "Template name '" + templateName + "' already exists in this mock plan";
+                }
             }
+            if (error != null) {
+                valid = false;
+            }
+            result.addResult(className, templateName, error == null ? "valid" : "invalid", error);
+        }
+        if (!valid) {
+            result.setSuccess(false);
+            result.setMessage("Batch rejected, no MockClass was changed");
+            result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+            return result;
         }
         
-        // Find and update the corresponding MockClass
-        // Prefer exact match by className + templateName
-        for (MockClass mockClass : mockPlan.getMockClassList()) {
-            if (mockClass.getClassName().equals(updatedClass.getClassName())
-                    && safeEquals(mockClass.getTemplateName(), updatedClass.getTemplateName())) {
-                mockClass.setFields(updatedClass.getFields());
-                mockClass.setMethods(updatedClass.getMethods());
-                mockClass.setTemplateName(updatedClass.getTemplateName());
-                saveMockPlans();
-                isUpdate = true;
+        // Replace updated entries with new MockClass objects in a copy of the list and swap it in, so
+        // transformers and template lookups never observe a half applied batch
+        List<MockClass> newList = new ArrayList<>(mockPlan.getMockClassList());
+        result.getResults().clear();
+        for (MockClass updatedClass : updatedClasses) {
+            int existing = -1;
+            for (int i = 0; i < newList.size(); i++) {
+                MockClass mockClass = newList.get(i);
+                if (mockClass.getClassName().equals(updatedClass.getClassName())
+                        && safeEquals(mockClass.getTemplateName(), updatedClass.getTemplateName())) {
+                    existing = i;
+                    break;
+                }
+            }
+            if (existing >= 0) {
+                newList.set(existing, withMembers(newList.get(existing), updatedClass.getFields(),
+                        updatedClass.getMethods(), updatedClass.getTemplateName()));
+                result.addResult(updatedClass.getClassName(), updatedClass.getTemplateName(), "updated", null);
+            } else {
+                newList.add(updatedClass);
+                result.addResult(updatedClass.getClassName(), updatedClass.getTemplateName(), "created", null);
+            }
+        }
+        mockPlan.setMockClassList(newList);
+        markChanged(mockPlan, "classes-updated");
+        saveToFile(mockPlan);
+        result.setVersion(mockPlan.getVersion());
+        
+        // If MockPlan is active, push field values to existing instances and retransform once
+        if (mockPlan.isActive()) {
+            Set<String> classNames = new LinkedHashSet<>();
+            for (MockClass updatedClass : updatedClasses) {
+                applyFieldMocks(updatedClass);
+                classNames.add(updatedClass.getClassName());
+            }
+            result.setRetransformedClasses(retransformClasses(classNames));
+        }
+        
+        result.setSuccess(true);
+        result.setMessage(updatedClasses.size() + " MockClass definitions applied");
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+    
+    /**
+     * A new MockClass with the descriptive properties of existing and the given fields, methods and template name
+     */
+    private static MockClass withMembers(MockClass existing, List<MockField> fields, List<MockMethod> methods,
+                                         String templateName) {
+        MockClass mockClass = new MockClass(existing.getClassPackage(), existing.getClassName());
+        mockClass.setSimpleName(existing.getSimpleName());
+        mockClass.setInterface(existing.isInterface());
+        mockClass.setEnum(existing.isEnum());
+        mockClass.setAnnotation(existing.isAnnotation());
+        mockClass.setArray(existing.isArray());
+        mockClass.setPrimitive(existing.isPrimitive());
+        mockClass.setModifiers(existing.getModifiers());
+        mockClass.setActive(existing.isActive());
+        mockClass.setTemplate(existing.isTemplate());
+        mockClass.setFields(fields);
+        mockClass.setMethods(methods);
+        mockClass.setTemplateName(templateName);
+        return mockClass;
+    }
+    
+    /**
+     * Apply JSON-Patch style edits to a single MockClass.
+     * Only the touched fields are pushed to existing instances, and the class is only retransformed
+     * when the woven bytecode depends on a touched member (methods, or inlined field values).
+     * @return false when the plan or class does not exist
+     * @throws IllegalArgumentException when an operation is invalid; nothing is applied in that case
+     */
+    public boolean patchMockClass(String projectName, String planName, MockClassPatch patch) {
+        return patchMockClass(projectName, planName, patch, null) != NOT_FOUND;
+    }
+    
+    /**
+     * Patch guarded by the plan version the caller last saw (null skips the check)
+     * @return the plan version written, or NOT_FOUND when the plan or class does not exist
+     */
+    public long patchMockClass(String projectName, String planName, MockClassPatch patch, Long expectedVersion) {
+        ReentrantLock lock = lockFor(projectName, planName);
+        lock.lock();
+        try {
+            return doPatchMockClass(projectName, planName, patch, expectedVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private long doPatchMockClass(String projectName, String planName, MockClassPatch patch, Long expectedVersion) {
+        MockPlan mockPlan = getMockPlan(projectName, planName);
+        if (mockPlan == null || patch.getClassName() == null) {
+            return NOT_FOUND;
+        }
+        checkVersion(mockPlan, expectedVersion);
+        List<MockClass> mockClasses = mockPlan.getMockClassList();
+        int index = -1;
+        for (int i = 0; i < mockClasses.size(); i++) {
+            MockClass candidate = mockClasses.get(i);
+            if (candidate.getClassName().equals(patch.getClassName())
+                    && safeEquals(candidate.getTemplateName(), patch.getTemplateName())) {
+                index = i;
                 break;
             }
         }
-
-        if (!isUpdate) {
-            mockPlan.putMockClass(updatedClass);
-            isUpdate = true;
+        if (index < 0) {
+            return NOT_FOUND;
         }
-
-        // If MockPlan is active, need to update mock field values for loaded classes
-        if (mockPlan.isActive()) {
-            updateAttachedMockFields(updatedClass);
+        MockClass mockClass = mockClasses.get(index);
+        
+        // Work on copies so a failing operation leaves the class untouched
+        List<MockField> fields = new ArrayList<>(mockClass.getFields());
+        List<MockMethod> methods = new ArrayList<>(mockClass.getMethods());
+        Set<String> touchedFields = new LinkedHashSet<>();
+        boolean needsRetransform = false;
+        
+        for (MockClassPatch.Operation operation : patch.getOperations()) {
+            String[] segments = parsePatchPath(operation.getPath());
+            String op = operation.getOp();
+            if ("fields".equals(segments[0])) {
+                Set<String> changed = patchMember(fields, MockField.class, MockField::getFieldName, MockField::new,
+                        op, segments[1], segments[2], operation.getValue());
+                touchedFields.add(segments[1]);
+                // Getter weaving inlines simple field values
+                if (changed.contains("*") || changed.contains("mockFieldValue")) {
+                    needsRetransform = true;
+                }
+            } else if ("methods".equals(segments[0])) {
+                patchMember(methods, MockMethod.class, MockMethod::getMethodName, name -> {
+                    MockMethod method = new MockMethod();
+                    method.setMethodName(name);
+                    return method;
+                }, op, segments[1], segments[2], operation.getValue());
+                needsRetransform = true;
+            } else {
+                throw new IllegalArgumentException("Unsupported patch path: " + operation.getPath());
+            }
         }
         
-        return isUpdate;
+        // Swap in a patched copy, so transformers reading the old one never see it half changed
+        List<MockClass> list = new ArrayList<>(mockClasses);
+        list.set(index, withMembers(mockClass, fields, methods, mockClass.getTemplateName()));
+        mockPlan.setMockClassList(list);
+        markChanged(mockPlan, "class-patched");
+        saveToFile(mockPlan);
+        
+        if (mockPlan.isActive() && !mockClass.isTemplate()) {
+            for (MockField mockField : fields) {
+                if (touchedFields.contains(mockField.getFieldName())
+                        && (mockField.getMockFieldValue() != null || mockField.getActiveTemplate() != null)) {
+                    updateFieldValues(mockClass.getClassName(), mockField);
+                }
+            }
+            if (needsRetransform) {
+                retransformClass(mockClass.getClassName());
+            }
+        }
+        return mockPlan.getVersion();
+    }
+    
+    /**
+     * Split "/fields/{name}[/{property}]" into its three segments, the last one possibly null
+     */
+    private String[] parsePatchPath(String path) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("Invalid patch path: " + path);
+        }
+        String[] parts = path.substring(1).split("/", -1);
+        if (parts.length < 2 || parts.length > 3 || parts[1].isEmpty()) {
+            throw new IllegalArgumentException("Invalid patch path: " + path);
+        }
+        String[] segments = new String[3];
+        for (int i = 0; i < parts.length; i++) {
+            segments[i] = parts[i].replace("~1", "/").replace("~0", "~");
+        }
+        return segments;
+    }
+    
+    /**
+     * Apply one operation to a member list, replacing the touched member with an updated copy
+     * @return the property names changed, "*" when the member was created or removed
+     */
+    private <T> Set<String> patchMember(List<T> members, Class<T> type, java.util.function.Function<T, String> nameOf,
+                                        java.util.function.Function<String, T> factory,
+                                        String op, String name, String property, Object value) {
+        int index = -1;
+        for (int i = 0; i < members.size(); i++) {
+            if (name.equals(nameOf.apply(members.get(i)))) {
+                index = i;
+                break;
+            }
+        }
+        
+        if ("remove".equals(op)) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Cannot remove missing member: " + name);
+            }
+            if (property != null) {
+                throw new IllegalArgumentException("Remove applies to whole members, not properties: " + name + "/" + property);
+            }
+            members.remove(index);
+            return Collections.singleton("*");
+        }
+        if (!"add".equals(op) && !"replace".equals(op)) {
+            throw new IllegalArgumentException("Unsupported patch op: " + op);
+        }
+        if (index < 0 && "replace".equals(op)) {
+            throw new IllegalArgumentException("Cannot replace missing member: " + name);
+        }
+        
+        Map<String, Object> updates;
+        if (property != null) {
+            updates = Collections.singletonMap(property, value);
+        } else if (value instanceof Map<?, ?>) {
+            updates = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                updates.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Member value must be an object: " + name);
+        }
+        
+        T copy = index >= 0 ? objectMapper.convertValue(members.get(index), type) : factory.apply(name);
+        try {
+            objectMapper.updateValue(copy, updates);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + e.getMessage());
+        }
+        if (!name.equals(nameOf.apply(copy))) {
+            throw new IllegalArgumentException("Members cannot be renamed by a patch: " + name);
+        }
+        
+        if (index >= 0) {
+            members.set(index, copy);
+            return updates.keySet();
+        }
+        members.add(copy);
+        return Collections.singleton("*");
     }
     
     /**
@@ -235,33 +710,59 @@ public class MockPlanManager {
     }
     
     /**
-     * Save all MockPlans to files
+     * Lock stripe guarding all mutations of the plan with the given key
      */
-    private void saveMockPlans() {
-        for (MockPlan mockPlan : mockPlans.values()) {
-            saveToFile(mockPlan);
+    private ReentrantLock lockFor(String key) {
+        return planLocks[stripeOf(key)];
+    }
+    
+    private ReentrantLock lockFor(String projectName, String planName) {
+        return lockFor(generateKey(new MockProject(projectName), planName));
+    }
+    
+    private int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+    
+    /**
+     * Reject the mutation when the caller edited an older version of the plan
+     */
+    private void checkVersion(MockPlan mockPlan, Long expectedVersion) {
+        if (expectedVersion != null && expectedVersion != mockPlan.getVersion()) {
+            throw new PlanVersionConflictException(mockPlan.getPlanName(), expectedVersion, mockPlan.getVersion());
         }
     }
     
+    /**
+     * Bump the plan version and notify event stream subscribers
+     */
+    private void markChanged(MockPlan mockPlan, String change) {
+        mockPlan.setVersion(mockPlan.getVersion() + 1);
+        eventBus.publishPlanChange(AgentEventBus.PLAN_CHANGED, mockPlan, change);
+    }
+    
     private void saveToFile(MockPlan mockPlan) {
         try {
             String fileName = mockPlan.getJsonFileName();
-            File file = new File(STORAGE_DIR, fileName);
+            File file = new File(storageDir, fileName);
+            long start = System.nanoTime();
             objectMapper.writeValue(file, mockPlan);
+            metrics.recordPersistenceWrite(System.nanoTime() - start);
         } catch (IOException e) {
-            System.err.println("Failed to save MockPlan to file: " + e.getMessage());
+            AgentLogger.error("Failed to save MockPlan to file: {}", e.getMessage());
         }
     }
     
     private void deleteFile(MockPlan mockPlan) {
         try {
             String fileName = mockPlan.getJsonFileName();
-            File file = new File(STORAGE_DIR, fileName);
+            File file = new File(storageDir, fileName);
             if (file.exists()) {
                 Files.delete(file.toPath());
             }
         } catch (IOException e) {
-            System.err.println("Failed to delete MockPlan file: " + e.getMessage());
+            AgentLogger.error("Failed to delete MockPlan file: {}", e.getMessage());
         }
     }
     
@@ -270,13 +771,26 @@ public class MockPlanManager {
      * When MockPlan is activated, need to apply mock configuration to loaded classes
      */
     private void updateAttachedMockFields(MockClass mockClass) {
-        System.out.println("Updating mock fields for class: " + mockClass.getClassName());
+        AgentLogger.debug("Updating mock fields for class: {}", mockClass.getClassName());
         
+        applyFieldMocks(mockClass);
+        
+        // Retransform class through bytecode enhancement (affects newly created instances)
+        retransformClass(mockClass.getClassName());
+    }
+    
+    /**
+     * Push the field mock values of a MockClass to its static fields and tracked instances
+     */
+    private void applyFieldMocks(MockClass mockClass) {
+        if (mockClass.isTemplate()) {
+            return;
+        }
         // If there are field mock configurations, need to apply to loaded classes
         if (mockClass.getFields() != null) {
             for (MockField mockField : mockClass.getFields()) {
                 if (mockField.getMockFieldValue() != null || mockField.getActiveTemplate() != null) {
-                    System.out.println("Mock field: " + mockField.getFieldName() + " = " + mockField.getMockFieldValue());
+                    AgentLogger.debug("Mock field: {} = {}", mockField.getFieldName(), mockField.getMockFieldValue());
                     // Use reflection to modify field values of existing instances
                     updateFieldValues(mockClass.getClassName(), mockField);
                 }
@@ -287,31 +801,27 @@ public class MockPlanManager {
         if (mockClass.getMethods() != null) {
             for (MockMethod mockMethod : mockClass.getMethods()) {
                 if (mockMethod.getReturnObject() != null) {
-                    System.out.println("Mock method: " + mockMethod.getMethodName() + " returns " + mockMethod.getReturnObject());
+                    AgentLogger.debug("Mock method: {} returns {}", mockMethod.getMethodName(), mockMethod.getReturnObject());
                 }
             }
         }
-        
-        // Retransform class through bytecode enhancement (affects newly created instances)
-        retransformClass(mockClass.getClassName());
     }
     
     /**
-     * Use reflection to modify field values of existing instances
+     * Use reflection to modify field values of existing instances,
+     * in every class with this name that a different class loader defined
      */
     private void updateFieldValues(String className, MockField mockField) {
         try {
-            // Get target class
-            Class<?> targetClass = Class.forName(className);
-            
-            // Update static fields
-            updateStaticField(targetClass, mockField);
-            
-            // Update instance fields (requires instance tracking mechanism)
-            updateInstanceFields(targetClass, mockField);
-            
+            for (Class<?> targetClass : classResolver.resolveAll(className)) {
+                // Update static fields
+                updateStaticField(targetClass, mockField);
+                
+                // Update instance fields (requires instance tracking mechanism)
+                updateInstanceFields(targetClass, mockField);
+            }
         } catch (Exception e) {
-            System.err.println("Failed to update field values for " + className + "." + mockField.getFieldName() + ": " + e.getMessage());
+            AgentLogger.warn("Failed to update field values for {}.{}: {}", className, mockField.getFieldName(), e.getMessage());
         }
     }
     
@@ -321,18 +831,17 @@ public class MockPlanManager {
      */
     private void updateInstanceFields(Class<?> targetClass, MockField mockField) {
         try {
-            Field field = targetClass.getDeclaredField(mockField.getFieldName());
-            field.setAccessible(true);
+            Field field = classResolver.field(targetClass, mockField.getFieldName());
             
             // Check if it's an instance field
             if (!Modifier.isStatic(field.getModifiers())) {
-                System.out.println("Updating instance field: " + targetClass.getName() + "." + mockField.getFieldName());
+                AgentLogger.debug("Updating instance field: {}.{}", targetClass.getName(), mockField.getFieldName());
                 
                 // Get all loaded instances and modify field values
                 updateAllInstances(targetClass, field, mockField);
             }
         } catch (Exception e) {
-            System.err.println("Failed to update instance field " + targetClass.getName() + "." + mockField.getFieldName() + ": " + e.getMessage());
+            AgentLogger.warn("Failed to update instance field {}.{}: {}", targetClass.getName(), mockField.getFieldName(), e.getMessage());
         }
     }
     
@@ -358,14 +867,13 @@ public class MockPlanManager {
                                 .findFirst()
                                 .orElse(null);
                         if (templateClass != null) {
-                            valueToSet = buildInstanceFromTemplate(mockField.getFieldClassName(), templateClass);
+                            valueToSet = buildInstanceFromTemplate(targetClass, mockField.getFieldClassName(), templateClass);
                         } else {
-                            System.err.println("Template not found for field '" + mockField.getFieldName() + "': "
-                                    + mockField.getFieldClassName() + "#" + mockField.getActiveTemplate());
+                            AgentLogger.warn("Template not found for field '{}': {}#{}", mockField.getFieldName(), mockField.getFieldClassName(), mockField.getActiveTemplate());
                         }
                     }
                 } catch (Exception e) {
-                    System.err.println("Failed to build instance from template for field '" + mockField.getFieldName() + "': " + e.getMessage());
+                    AgentLogger.warn("Failed to build instance from template for field '{}': {}", mockField.getFieldName(), e.getMessage());
                 }
             }
 
@@ -375,19 +883,20 @@ public class MockPlanManager {
             }
 
             if (valueToSet != null) {
-                instanceTracker.updateFieldValues(targetClass.getName(), mockField.getFieldName(), valueToSet);
-                System.out.println("Updated instance field " + targetClass.getName() + "." + mockField.getFieldName() + " = " + valueToSet);
+                instanceTracker.updateFieldValues(targetClass, mockField.getFieldName(), valueToSet);
+                AgentLogger.debug("Updated instance field {}.{} = {}", targetClass.getName(), mockField.getFieldName(), valueToSet);
             }
         } catch (Exception e) {
-            System.err.println("Failed to update all instances: " + e.getMessage());
+            AgentLogger.warn("Failed to update all instances: {}", e.getMessage());
         }
     }
 
     /**
      * Static helper for ASM: build an instance for the given class using the specified template
      * from the currently active MockPlan. Returns null if not found or on failure.
+     * The class is resolved from the caller's loader; without a caller, from a recorded defining loader.
      */
-    public static Object buildInstanceFromActiveTemplate(String className, String templateName) {
+    public static Object buildInstanceFromActiveTemplate(Class<?> caller, String className, String templateName) {
         try {
             MockPlanManager mgr = getInstance();
             MockPlan activePlan = mgr.getActiveMockPlan();
@@ -402,9 +911,12 @@ public class MockPlanManager {
             if (templateClass == null) {
                 return null;
             }
-            return mgr.buildInstanceFromTemplate(className, templateClass);
+            long start = System.nanoTime();
+            Object instance = mgr.buildInstanceFromTemplate(caller, className, templateClass);
+            mgr.metrics.recordTemplateBuild(System.nanoTime() - start);
+            return instance;
         } catch (Exception e) {
-            System.err.println("buildInstanceFromActiveTemplate failed: " + e.getMessage());
+            AgentLogger.warn("buildInstanceFromActiveTemplate failed: {}", e.getMessage());
             return null;
         }
     }
@@ -413,23 +925,25 @@ public class MockPlanManager {
      * Build a new instance for the given class name and populate its fields from a template definition.
      * Supports recursive population when field templates reference other class templates.
      */
-    private Object buildInstanceFromTemplate(String className, MockClass templateClass) {
-        return buildInstanceFromTemplate(className, templateClass, new HashSet<>());
+    private Object buildInstanceFromTemplate(Class<?> context, String className, MockClass templateClass) {
+        return buildInstanceFromTemplate(context, className, templateClass, new HashSet<>());
     }
 
     /**
      * Internal recursive helper with cycle detection via visited set (class#template).
+     * Nested templates are resolved relative to the class that holds the field.
      */
-    private Object buildInstanceFromTemplate(String className, MockClass templateClass, Set<String> visited) {
+    private Object buildInstanceFromTemplate(Class<?> context, String className, MockClass templateClass, Set<String> visited) {
         try {
-            Class<?> clazz = Class.forName(className);
-            Object instance = clazz.getDeclaredConstructor().newInstance();
+            Class<?> clazz = context != null
+                    ? classResolver.resolve(context, className)
+                    : classResolver.resolveAll(className).get(0);
+            Object instance = classResolver.newInstance(clazz);
 
             if (templateClass.getFields() != null) {
                 for (MockField tf : templateClass.getFields()) {
                     try {
-                        java.lang.reflect.Field f = clazz.getDeclaredField(tf.getFieldName());
-                        f.setAccessible(true);
+                        java.lang.reflect.Field f = classResolver.field(clazz, tf.getFieldName());
 
                         // 1) Simple mock value (primitives / String)
                         if (tf.getMockFieldValue() != null) {
@@ -458,14 +972,14 @@ public class MockPlanManager {
                                             .orElse(null);
                                     if (nestedTemplate != null) {
                                         visited.add(nestedKey);
-                                        Object nestedInstance = buildInstanceFromTemplate(tf.getFieldClassName(), nestedTemplate, visited);
+                                        Object nestedInstance = buildInstanceFromTemplate(clazz, tf.getFieldClassName(), nestedTemplate, visited);
                                         if (nestedInstance != null) {
                                             f.set(instance, nestedInstance);
                                         }
                                     }
                                 }
                             } catch (Exception nestedEx) {
-                                System.err.println("Failed to build nested template for field '" + tf.getFieldName() + "' of class '" + className + "': " + nestedEx.getMessage());
+                                AgentLogger.warn("Failed to build nested template for field '{}' of class '{}': {}", tf.getFieldName(), className, nestedEx.getMessage());
                             }
                         }
                     } catch (NoSuchFieldException nsf) {
@@ -476,7 +990,7 @@ public class MockPlanManager {
 
             return instance;
         } catch (Exception e) {
-            System.err.println("Failed to build instance from template for class '" + className + "': " + e.getMessage());
+            AgentLogger.warn("Failed to build instance from template for class '{}': {}", className, e.getMessage());
             return null;
         }
     }
@@ -490,10 +1004,10 @@ public class MockPlanManager {
                 com.hotmock4j.agent.transformer.InstanceRegistrationTransformer transformer =
                     new com.hotmock4j.agent.transformer.InstanceRegistrationTransformer();
                 com.hotmock4j.agent.AgentBootstrap.ins.addTransformer(transformer, true);
-                System.out.println("InstanceRegistrationTransformer added to instrumentation");
+                AgentLogger.info("InstanceRegistrationTransformer added to instrumentation");
             }
         } catch (Exception e) {
-            System.err.println("Failed to add InstanceRegistrationTransformer: " + e.getMessage());
+            AgentLogger.warn("Failed to add InstanceRegistrationTransformer: {}", e.getMessage());
         }
     }
     
@@ -502,19 +1016,18 @@ public class MockPlanManager {
      */
     private void updateStaticField(Class<?> targetClass, MockField mockField) {
         try {
-            java.lang.reflect.Field field = targetClass.getDeclaredField(mockField.getFieldName());
-            field.setAccessible(true);
+            java.lang.reflect.Field field = classResolver.field(targetClass, mockField.getFieldName());
             
             // Check if it's a static field
             if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) {
                 Object mockValue = convertToReflectionType(mockField.getMockFieldValue().toString(), field.getType());
                 if (mockValue != null) {
                     field.set(null, mockValue);
-                    System.out.println("Updated static field: " + targetClass.getName() + "." + mockField.getFieldName() + " = " + mockValue);
+                    AgentLogger.debug("Updated static field: {}.{} = {}", targetClass.getName(), mockField.getFieldName(), mockValue);
                 }
             }
         } catch (Exception e) {
-            System.err.println("Failed to update static field " + targetClass.getName() + "." + mockField.getFieldName() + ": " + e.getMessage());
+            AgentLogger.warn("Failed to update static field {}.{}: {}", targetClass.getName(), mockField.getFieldName(), e.getMessage());
         }
     }
     
@@ -546,7 +1059,7 @@ public class MockPlanManager {
                 return null;
             }
         } catch (Exception e) {
-            System.err.println("Failed to convert mock value '" + value + "' to type " + type + ": " + e.getMessage());
+            AgentLogger.warn("Failed to convert mock value '{}' to type {}: {}", value, type, e.getMessage());
             return null;
         }
     }
@@ -558,31 +1071,80 @@ public class MockPlanManager {
         try {
             // Get Instrumentation instance
             if (com.hotmock4j.agent.AgentBootstrap.ins != null) {
-                // Find loaded classes
-                Class<?> targetClass = null;
+                // Find loaded classes; each class loader may have defined its own
+                List<Class<?>> targetClasses = new ArrayList<>();
                 for (Class<?> clazz : com.hotmock4j.agent.AgentBootstrap.ins.getAllLoadedClasses()) {
                     if (clazz.getName().equals(className)) {
-                        targetClass = clazz;
-                        break;
+                        targetClasses.add(clazz);
                     }
                 }
                 
-                if (targetClass != null) {
-                    System.out.println("Retransforming class: " + className);
-                    com.hotmock4j.agent.AgentBootstrap.ins.retransformClasses(targetClass);
+                if (!targetClasses.isEmpty()) {
+                    AgentLogger.debug("Retransforming class: {}", className);
+                    RetransformEvent event = new RetransformEvent();
+                    event.begin();
+                    long start = System.nanoTime();
+                    com.hotmock4j.agent.AgentBootstrap.ins.retransformClasses(targetClasses.toArray(new Class<?>[0]));
+                    metrics.recordRetransform(targetClasses.size(), System.nanoTime() - start);
+                    commitRetransformEvent(event, Collections.singletonList(className), targetClasses.size());
                 } else {
-                    System.out.println("Class not loaded yet: " + className);
+                    AgentLogger.debug("Class not loaded yet: {}", className);
                 }
             } else {
-                System.out.println("Instrumentation not available, adding MockFieldTransformer");
+                AgentLogger.debug("Instrumentation not available, adding MockFieldTransformer");
                 // If Instrumentation is not available, add MockFieldTransformer
                 addMockFieldTransformer();
             }
         } catch (Exception e) {
-            System.err.println("Failed to retransform class " + className + ": " + e.getMessage());
+            AgentLogger.warn("Failed to retransform class {}: {}", className, e.getMessage());
         }
     }
     
+    /**
+     * Retransform all loaded classes with the given names in a single Instrumentation call
+     * @return number of classes retransformed
+     */
+    private int retransformClasses(Collection<String> classNames) {
+        java.lang.instrument.Instrumentation ins = com.hotmock4j.agent.AgentBootstrap.ins;
+        if (ins == null || classNames.isEmpty()) {
+            return 0;
+        }
+        List<Class<?>> targets = new ArrayList<>();
+        for (Class<?> clazz : ins.getAllLoadedClasses()) {
+            if (classNames.contains(clazz.getName()) && ins.isModifiableClass(clazz)) {
+                targets.add(clazz);
+            }
+        }
+        if (targets.isEmpty()) {
+            return 0;
+        }
+        RetransformEvent event = new RetransformEvent();
+        event.begin();
+        try {
+            AgentLogger.debug("Retransforming {} classes", targets.size());
+            long start = System.nanoTime();
+            ins.retransformClasses(targets.toArray(new Class<?>[0]));
+            metrics.recordRetransform(targets.size(), System.nanoTime() - start);
+            commitRetransformEvent(event, classNames, targets.size());
+            return targets.size();
+        } catch (Exception e) {
+            AgentLogger.warn("Failed to retransform classes {}: {}", classNames, e.getMessage());
+            commitRetransformEvent(event, classNames, 0);
+            return 0;
+        }
+    }
+    
+    private void commitRetransformEvent(RetransformEvent event, Collection<String> classNames, int retransformed) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        String names = String.join(",", classNames);
+        event.classCount = retransformed;
+        event.classNames = names.length() > 1024 ? names.substring(0, 1024) + "..." : names;
+        event.succeeded = retransformed > 0;
+        event.commit();
+    }
+    
     /**
      * Add MockFieldTransformer to Instrumentation
      */
@@ -592,10 +1154,81 @@ public class MockPlanManager {
                 com.hotmock4j.agent.transformer.MockFieldTransformer transformer =
                     new com.hotmock4j.agent.transformer.MockFieldTransformer();
                 com.hotmock4j.agent.AgentBootstrap.ins.addTransformer(transformer, true);
-                System.out.println("MockFieldTransformer added to instrumentation");
+                AgentLogger.info("MockFieldTransformer added to instrumentation");
             }
         } catch (Exception e) {
-            System.err.println("Failed to add MockFieldTransformer: " + e.getMessage());
+            AgentLogger.warn("Failed to add MockFieldTransformer: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Store the templates recorded from one return value of a method in record mode.
+     * The first recorded template becomes the method's return template unless it already has one; after the
+     * last recording, record mode is switched off and the class retransformed, so the method replays from then on.
+     * Template names are relative to the returned object and are prefixed here with a name free in the plan.
+     */
+    public void addRecordedTemplates(MockProject project, String planName, String className, String methodName,
+                                     String descriptor, List<MockClass> templates, boolean finished) {
+        ReentrantLock lock = lockFor(generateKey(project, planName));
+        lock.lock();
+        try {
+            MockPlan mockPlan = getMockPlan(project, planName);
+            if (mockPlan == null) {
+                return;
+            }
+            MockMethod mockMethod = null;
+            for (MockClass mockClass : mockPlan.getMockClassList()) {
+                if (mockClass.getClassName().equals(className) && !mockClass.isTemplate() && mockClass.getMethods() != null) {
+                    for (MockMethod candidate : mockClass.getMethods()) {
+                        if (candidate.getMethodName().equals(methodName) && safeEquals(candidate.getDescriptor(), descriptor)
+                                && candidate.getRecording() != null) {
+                            mockMethod = candidate;
+                            break;
+                        }
+                    }
+                }
+            }
+            
+            if (!templates.isEmpty()) {
+                String base = methodName + "-recorded-";
+                int index = 1;
+                while (!isTemplateNameUnique(mockPlan, base + index, null)) {
+                    index++;
+                }
+                base = base + index;
+                for (MockClass template : templates) {
+                    template.setTemplateName(base + template.getTemplateName());
+                    for (MockField field : template.getFields()) {
+                        if (field.getActiveTemplate() != null) {
+                            field.setActiveTemplate(base + field.getActiveTemplate());
+                        }
+                    }
+                }
+                List<MockClass> list = new ArrayList<>(mockPlan.getMockClassList());
+                list.addAll(templates);
+                mockPlan.setMockClassList(list);
+                if (mockMethod != null && (mockMethod.getActiveReturnTemplateName() == null
+                        || mockMethod.getActiveReturnTemplateName().trim().isEmpty())) {
+                    mockMethod.setActiveReturnTemplateName(base);
+                    mockMethod.setReturnClassName(templates.get(0).getClassName());
+                }
+                AgentLogger.info("Recorded {} templates from {}#{} as '{}'", templates.size(), className, methodName, base);
+            }
+            if (mockMethod != null) {
+                MethodRecording recording = mockMethod.getRecording();
+                recording.setRecorded(recording.getRecorded() + 1);
+                if (finished) {
+                    recording.setEnabled(false);
+                }
+            }
+            markChanged(mockPlan, "templates-recorded");
+            saveToFile(mockPlan);
+            
+            if (finished && mockPlan.isActive()) {
+                retransformClass(className);
+            }
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -637,7 +1270,7 @@ public class MockPlanManager {
      */
     public void loadAllFromFiles() {
         try {
-            File storageDir = new File(STORAGE_DIR);
+            File storageDir = new File(this.storageDir);
             if (!storageDir.exists()) {
                 return;
             }
@@ -649,14 +1282,17 @@ public class MockPlanManager {
                         MockPlan mockPlan = objectMapper.readValue(file, MockPlan.class);
                         String key = generateKey(mockPlan.getProject(), mockPlan.getPlanName());
                         mockPlans.put(key, mockPlan);
+                        if (mockPlan.isActive() && !activePlan.compareAndSet(null, mockPlan)) {
+                            // Only one plan can be active, keep the first one found
+                            mockPlan.setActive(false);
+                        }
                     } catch (IOException e) {
-                        System.err.println(e.getMessage());
-                        System.err.println("Failed to load MockPlan from file: " + file.getName());
+                        AgentLogger.error("Failed to load MockPlan from file {}: {}", file.getName(), e.getMessage());
                     }
                 }
             }
         } catch (Exception e) {
-            System.err.println("Failed to load MockPlans from files: " + e.getMessage());
+            AgentLogger.error("Failed to load MockPlans from files: {}", e.getMessage());
         }
     }
 }
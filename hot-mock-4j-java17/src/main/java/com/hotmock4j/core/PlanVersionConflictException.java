@@ -0,0 +1,27 @@
+package com.hotmock4j.core;
+
+/**
+ * Thrown when a mutation was based on an older version of a MockPlan than the current one
+ */
+public class PlanVersionConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    public PlanVersionConflictException(String planName, long expectedVersion, long currentVersion) {
+        super("MockPlan '" + planName + "' was modified: expected version " + expectedVersion
+                + " but current version is " + currentVersion);
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
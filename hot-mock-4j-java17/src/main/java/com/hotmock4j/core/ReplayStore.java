@@ -0,0 +1,439 @@
+package com.hotmock4j.core;
+
+import com.hotmock4j.log.AgentLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One replay store: an append-only data file of recorded values and an open-addressed index over it.
+ * A data entry holds the 128-bit key, the value's length and the value. The index is a memory-mapped table of
+ * (key, data offset) slots, probed linearly from the key's low bits and at most half full. It is built from the
+ * data file the first time the store is replayed, and rebuilt when the data file no longer has the length it was
+ * built from, which lookups check at most once a second; so a recording made later, or entries appended meanwhile,
+ * are replayed without a restart. The first entry of a key wins. Values are read from the data file on first use and kept in an LRU
+ * bounded in bytes. Recorded entries are written by a background thread; when it falls behind they are dropped.
+ */
+final class ReplayStore {
+
+    private static final int DATA_MAGIC = 0x484d3444; // "HM4D"
+    private static final int INDEX_MAGIC = 0x484d3449; // "HM4I"
+    private static final int VERSION = 1;
+    private static final int DATA_HEADER = 8;
+    /** Key and value length */
+    private static final int ENTRY_HEADER = 20;
+    /** Magic, version, length of the indexed data, capacity and entry count */
+    private static final int INDEX_HEADER = 24;
+    /** Key and data offset; offset 0 marks an empty slot */
+    private static final int SLOT = 24;
+    /** Keeps the mapped index below 2 GB */
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final int MAX_QUEUED = 8192;
+    /** How often lookups check whether the data file has changed */
+    private static final long CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final File dataFile;
+    private final File indexFile;
+    private final long maxCacheBytes;
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+    private volatile Thread writerThread;
+    /** Guarded by this */
+    private OutputStream out;
+
+    private final Object openLock = new Object();
+    /** Null until the store was opened */
+    private volatile Index index;
+    private volatile long nextCheckNanos = System.nanoTime();
+    /** Read channel of the data file, shared by the indexes built over it until the file is replaced; guarded by openLock */
+    private FileChannel data;
+    private Object dataFileKey;
+    /** Guarded by openLock */
+    private boolean reportedMissing;
+    private final Map<Long, byte[]> values = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    ReplayStore(String name, File directory, long maxCacheBytes) {
+        this.name = name;
+        this.dataFile = new File(directory, name + ".data");
+        this.indexFile = new File(directory, name + ".index");
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Queue an entry for the data file
+     *
+     * @return false if the writer is behind and the entry was dropped
+     */
+    boolean append(byte[] key, byte[] value) {
+        if (writerThread == null) {
+            startWriter();
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER + value.length);
+        entry.put(key, 0, 16).putInt(value.length).put(value);
+        return queue.offer(entry.array());
+    }
+
+    /**
+     * The value recorded under the key, or null if there is none
+     */
+    byte[] get(byte[] key) throws IOException {
+        ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+        Index current = index();
+        long offset = current.find(keyBuffer.getLong(0), keyBuffer.getLong(8));
+        if (offset == 0) {
+            return null;
+        }
+        synchronized (values) {
+            byte[] value = values.get(offset);
+            if (value != null) {
+                return value;
+            }
+        }
+        byte[] value = current.read(offset);
+        // Offsets of a replaced data file point elsewhere, so values read through an older index are not cached
+        if (value.length <= maxCacheBytes && index == current) {
+            synchronized (values) {
+                byte[] previous = values.put(offset, value);
+                cachedBytes += value.length - (previous != null ? previous.length : 0);
+                Iterator<byte[]> eldest = values.values().iterator();
+                while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+                    cachedBytes -= eldest.next().length;
+                    eldest.remove();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Write the queued entries; called on shutdown
+     */
+    void flush() {
+        List<byte[]> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        write(batch);
+    }
+
+    private synchronized void startWriter() {
+        if (writerThread != null) {
+            return;
+        }
+        Thread thread = new Thread(this::writeLoop, "hotmock4j-replay-writer-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        writerThread = thread;
+    }
+
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private synchronized void write(List<byte[]> batch) {
+        try {
+            if (out == null) {
+                out = openForAppend();
+            }
+            for (byte[] entry : batch) {
+                out.write(entry);
+            }
+            out.flush();
+        } catch (IOException e) {
+            AgentLogger.warn("Failed to write replay store {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Open the data file to add entries after the existing ones; a torn entry left by a crash is cut off first
+     */
+    private OutputStream openForAppend() throws IOException {
+        File directory = dataFile.getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        long length = dataFile.length();
+        if (length < DATA_HEADER) {
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), 1 << 16));
+            stream.writeInt(DATA_MAGIC);
+            stream.writeInt(VERSION);
+            return stream;
+        }
+        long end = scan(length, (offset, keyHigh, keyLow) -> { });
+        if (end < length) {
+            AgentLogger.warn("Dropping {} bytes of a torn entry at the end of replay store {}", length - end, name);
+            try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        return new BufferedOutputStream(new FileOutputStream(dataFile, true), 1 << 16);
+    }
+
+    /**
+     * The current index; at most once per check interval, the data file's length is compared with the one the
+     * index was built from and the index is opened or rebuilt when they differ
+     */
+    private Index index() {
+        Index current = index;
+        if (System.nanoTime() - nextCheckNanos < 0) {
+            return current != null ? current : Index.EMPTY;
+        }
+        synchronized (openLock) {
+            current = index;
+            long now = System.nanoTime();
+            if (now - nextCheckNanos >= 0) {
+                nextCheckNanos = now + CHECK_NANOS;
+                BasicFileAttributes attributes = dataAttributes();
+                long dataLength = attributes != null ? attributes.size() : -1;
+                if (current == null || current.dataLength != dataLength
+                        || (attributes != null && !Objects.equals(attributes.fileKey(), dataFileKey))) {
+                    Index opened = open(dataLength, attributes != null ? attributes.fileKey() : null);
+                    if (opened != null) {
+                        index = opened;
+                        current = opened;
+                    }
+                }
+            }
+        }
+        return current != null ? current : Index.EMPTY;
+    }
+
+    private BasicFileAttributes dataAttributes() {
+        try {
+            return Files.readAttributes(dataFile.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Map or build the index of a data file of this length (-1 when it does not exist)
+     *
+     * @return null if the store cannot be opened yet; it is tried again at the next check
+     */
+    private Index open(long dataLength, Object fileKey) {
+        if (dataLength < 0) {
+            if (!reportedMissing) {
+                AgentLogger.warn("Replay store {} has no recording at {} yet", name, dataFile);
+                reportedMissing = true;
+            }
+            return null;
+        }
+        try {
+            MappedByteBuffer slots = mapIndex(dataLength);
+            if (slots == null) {
+                buildIndex(dataLength);
+                slots = mapIndex(dataLength);
+                if (slots == null) {
+                    throw new IOException("index was not written");
+                }
+            }
+            if (data == null || !Objects.equals(fileKey, dataFileKey)) {
+                // A new or replaced data file; cached values are keyed by offsets into the old one
+                if (data != null) {
+                    data.close();
+                    synchronized (values) {
+                        values.clear();
+                        cachedBytes = 0;
+                    }
+                }
+                data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+                dataFileKey = fileKey;
+            }
+            AgentLogger.info("Opened replay store {} with {} recorded values", name, slots.getInt(20));
+            return new Index(slots, data, dataLength);
+        } catch (IOException | RuntimeException e) {
+            AgentLogger.warn("Failed to open replay store {}: {}", name, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Map the index file if it was built from a data file of this length, otherwise return null
+     */
+    private MappedByteBuffer mapIndex(long dataLength) throws IOException {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < INDEX_HEADER || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer slots = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int capacity = slots.getInt(16);
+            boolean valid = slots.getInt(0) == INDEX_MAGIC && slots.getInt(4) == VERSION
+                    && slots.getLong(8) == dataLength && Integer.bitCount(capacity) == 1
+                    && size == INDEX_HEADER + (long) capacity * SLOT;
+            return valid ? slots : null;
+        }
+    }
+
+    private void buildIndex(long dataLength) throws IOException {
+        // Count first, so the table is sized before it is filled
+        long[] count = new long[1];
+        scan(dataLength, (offset, keyHigh, keyLow) -> count[0]++);
+        long wanted = Math.max(16, count[0] * 2);
+        int capacity = wanted >= MAX_CAPACITY ? MAX_CAPACITY : Integer.highestOneBit((int) wanted * 2 - 1);
+        int mask = capacity - 1;
+        int[] indexed = new int[1];
+
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+            long size = INDEX_HEADER + (long) capacity * SLOT;
+            file.setLength(0);
+            file.setLength(size);
+            MappedByteBuffer slots = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            scan(dataLength, (offset, keyHigh, keyLow) -> {
+                if (indexed[0] >= capacity / 2) {
+                    return;
+                }
+                int slot = (int) keyLow & mask;
+                while (true) {
+                    int position = INDEX_HEADER + slot * SLOT;
+                    if (slots.getLong(position + 16) == 0) {
+                        slots.putLong(position, keyHigh).putLong(position + 8, keyLow).putLong(position + 16, offset);
+                        indexed[0]++;
+                        return;
+                    }
+                    if (slots.getLong(position) == keyHigh && slots.getLong(position + 8) == keyLow) {
+                        return;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            });
+            slots.putInt(0, INDEX_MAGIC).putInt(4, VERSION).putLong(8, dataLength)
+                    .putInt(16, capacity).putInt(20, indexed[0]);
+            slots.force();
+        }
+        Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (count[0] > capacity / 2) {
+            AgentLogger.warn("Replay store {} holds {} entries; only the first {} are indexed", name, count[0], capacity / 2);
+        }
+        AgentLogger.info("Indexed replay store {}: {} entries, {} distinct keys", name, count[0], indexed[0]);
+    }
+
+    /**
+     * Visit the complete entries in the first end bytes of the data file
+     *
+     * @return the end of the last complete entry
+     */
+    private long scan(long end, EntryVisitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFile), 1 << 16))) {
+            if (end < DATA_HEADER || in.readInt() != DATA_MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a replay store: " + dataFile);
+            }
+            long offset = DATA_HEADER;
+            while (offset + ENTRY_HEADER <= end) {
+                long keyHigh = in.readLong();
+                long keyLow = in.readLong();
+                int length = in.readInt();
+                if (length < 0 || offset + ENTRY_HEADER + length > end) {
+                    break;
+                }
+                in.skipNBytes(length);
+                visitor.visit(offset, keyHigh, keyLow);
+                offset += ENTRY_HEADER + length;
+            }
+            return offset;
+        }
+    }
+
+    private interface EntryVisitor {
+        void visit(long offset, long keyHigh, long keyLow);
+    }
+
+    /**
+     * The mapped index of a store being replayed and the data file it points into
+     */
+    private static final class Index {
+        static final Index EMPTY = new Index(null, null, -1);
+
+        private final MappedByteBuffer slots;
+        private final FileChannel data;
+        /** Length of the data file the index was built from */
+        private final long dataLength;
+        private final int mask;
+
+        Index(MappedByteBuffer slots, FileChannel data, long dataLength) {
+            this.slots = slots;
+            this.data = data;
+            this.dataLength = dataLength;
+            this.mask = slots != null ? slots.getInt(16) - 1 : 0;
+        }
+
+        /**
+         * Offset of the key's entry in the data file, or 0 if the key was not recorded
+         */
+        long find(long keyHigh, long keyLow) {
+            if (slots == null) {
+                return 0;
+            }
+            int slot = (int) keyLow & mask;
+            while (true) {
+                int position = INDEX_HEADER + slot * SLOT;
+                long offset = slots.getLong(position + 16);
+                if (offset == 0) {
+                    return 0;
+                }
+                if (slots.getLong(position) == keyHigh && slots.getLong(position + 8) == keyLow) {
+                    return offset;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        byte[] read(long offset) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(length, offset + 16);
+            ByteBuffer value = ByteBuffer.allocate(length.getInt(0));
+            readFully(value, offset + ENTRY_HEADER);
+            return value.array();
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = data.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("replay entry at " + position + " is cut off");
+                }
+                position += read;
+            }
+        }
+    }
+}
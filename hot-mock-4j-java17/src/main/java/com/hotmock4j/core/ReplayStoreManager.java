@@ -0,0 +1,227 @@
+package com.hotmock4j.core;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.hotmock4j.agent.AgentBootstrap;
+import com.hotmock4j.log.AgentLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Records and replays the return values of methods in replay mode.
+ * A call is keyed by the SHA-256 of its method and of its arguments as JSON, cut to 128 bits, so keys stay the
+ * same across runs as long as the arguments serialize the same way. Values are stored as the JSON of their
+ * fields, after the name of their class, and are rebuilt as the method's declared return type, or as the
+ * recorded class when that is a subtype of it. Null returns are not recorded, since replay treats null as a miss.
+ */
+public final class ReplayStoreManager {
+
+    private static final Pattern STORE_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final File directory;
+    private final long maxCacheBytes;
+    private final Map<String, ReplayStore> stores = new ConcurrentHashMap<>();
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .visibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .build();
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(ReplayStoreManager::sha256);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private ReplayStoreManager(File directory, long maxCacheBytes) {
+        this.directory = directory;
+        this.maxCacheBytes = maxCacheBytes;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "hotmock4j-replay-shutdown"));
+    }
+
+    public static ReplayStoreManager getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Whether name can be used as a store name, which is also the name of its files
+     */
+    public static boolean isValidStoreName(String name) {
+        return name != null && STORE_NAME.matcher(name).matches();
+    }
+
+    /**
+     * The value recorded for these arguments, or null when there is none and the method should run
+     *
+     * @param key store name, '/' and "className#methodName" followed by the descriptor
+     */
+    public Object replay(Class<?> caller, String key, Object[] arguments) {
+        if (caller == null) {
+            return null;
+        }
+        Target target = target(key);
+        try {
+            byte[] value = target.store.get(hash(target, arguments));
+            if (value == null) {
+                misses.increment();
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+            String className = in.readUTF();
+            int offset = value.length - in.available();
+            JavaType type = target.types.computeIfAbsent(className, name -> resolveType(caller, target.methodKey, name));
+            Object result = mapper.readValue(value, offset, value.length - offset, type);
+            hits.increment();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            AgentLogger.warn("Failed to replay {}: {}", key, e.toString());
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Add a call's return value to the store; the caller's thread serializes it, a background thread writes it
+     */
+    public void record(String key, Object[] arguments, Object returnValue) {
+        if (returnValue == null) {
+            return;
+        }
+        Target target = target(key);
+        try {
+            byte[] hash = hash(target, arguments);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            new DataOutputStream(bytes).writeUTF(returnValue.getClass().getName());
+            mapper.writeValue(bytes, returnValue);
+            if (target.store.append(hash, bytes.toByteArray())) {
+                recorded.increment();
+            } else {
+                dropped.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            AgentLogger.warn("Failed to record {} for replay: {}", key, e.toString());
+        }
+    }
+
+    /**
+     * Write the recorded values still queued; called on shutdown
+     */
+    public void flush() {
+        for (ReplayStore store : stores.values()) {
+            store.flush();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long recordedCount() {
+        return recorded.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    private Target target(String key) {
+        return targets.computeIfAbsent(key, k -> {
+            int slash = k.indexOf('/');
+            ReplayStore store = stores.computeIfAbsent(k.substring(0, slash),
+                    name -> new ReplayStore(name, directory, maxCacheBytes));
+            return new Target(store, k.substring(slash + 1));
+        });
+    }
+
+    private byte[] hash(Target target, Object[] arguments) throws IOException {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        digest.update(target.methodKeyBytes);
+        digest.update(mapper.writeValueAsBytes(arguments));
+        return digest.digest();
+    }
+
+    /**
+     * The type a recorded value is rebuilt as: the declared return type, narrowed to the recorded class when the
+     * caller can see it and it is a subtype, so interface and abstract return types can be replayed
+     */
+    private JavaType resolveType(Class<?> caller, String methodKey, String recordedClassName) {
+        JavaType declared = declaredReturnType(caller, methodKey);
+        try {
+            Class<?> recordedClass = ClassResolver.getInstance().resolve(caller, recordedClassName);
+            if (recordedClass != declared.getRawClass() && declared.getRawClass().isAssignableFrom(recordedClass)) {
+                return mapper.getTypeFactory().constructSpecializedType(declared, recordedClass);
+            }
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            AgentLogger.debug("Replaying {} as its declared return type: {}", methodKey, e.toString());
+        }
+        return declared;
+    }
+
+    private JavaType declaredReturnType(Class<?> caller, String methodKey) {
+        int paren = methodKey.indexOf('(');
+        String methodName = methodKey.substring(methodKey.indexOf('#') + 1, paren);
+        String descriptor = methodKey.substring(paren);
+        for (Method method : caller.getDeclaredMethods()) {
+            if (method.getName().equals(methodName)
+                    && org.objectweb.asm.Type.getMethodDescriptor(method).equals(descriptor)) {
+                return mapper.getTypeFactory().constructType(method.getGenericReturnType());
+            }
+        }
+        return mapper.getTypeFactory().constructType(Object.class);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Target {
+        private final ReplayStore store;
+        private final String methodKey;
+        private final byte[] methodKeyBytes;
+        /** Types values are rebuilt as, by recorded class name */
+        private final Map<String, JavaType> types = new ConcurrentHashMap<>();
+
+        Target(ReplayStore store, String methodKey) {
+            this.store = store;
+            this.methodKey = methodKey;
+            this.methodKeyBytes = (methodKey + '\0').getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Holder {
+        private static final ReplayStoreManager INSTANCE = new ReplayStoreManager(
+                new File(AgentBootstrap.agentArgs.getReplayDir()),
+                AgentBootstrap.agentArgs.getReplayCacheSize() * 1024L * 1024L);
+    }
+}
@@ -0,0 +1,201 @@
+package com.hotmock4j.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which calls of methods in a rollout are answered by their mock. Each rollout keeps its current share
+ * in a volatile field; one scheduler thread moves the shares along their schedules, so a call only reads that
+ * field and draws from its thread's ThreadLocalRandom, without touching state shared with other threads.
+ * Rollouts are held per "className#methodName", with the descriptor when the method selects one overload. The
+ * plan's rollout is applied when the class is woven, and the API can replace it without weaving again; applying
+ * a changed rollout restarts its schedule.
+ */
+public final class RolloutScheduler {
+
+    private static final RolloutScheduler INSTANCE = new RolloutScheduler();
+
+    /** How often the shares move along their schedules */
+    private static final long TICK_MILLIS = 250;
+
+    private final Map<String, ActiveRollout> rollouts = new ConcurrentHashMap<>();
+    private final ObjectMapper configMapper = new ObjectMapper();
+    private volatile ScheduledExecutorService scheduler;
+
+    private RolloutScheduler() {
+    }
+
+    public static RolloutScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Apply the method's rollout from the plan; called when its class is woven. An unchanged rollout keeps its
+     * place in the schedule.
+     */
+    public void register(String className, MockMethod mockMethod) {
+        MethodRollout config = mockMethod.getRollout();
+        ActiveRollout rollout = rollouts.compute(mockMethod.methodKey(className),
+                (k, existing) -> existing != null && sameConfig(existing.config, config) ? existing : new ActiveRollout(config));
+        startIfScheduled(rollout);
+    }
+
+    /**
+     * Replace a method's rollout live; a disabled rollout mocks every call until it is replaced again
+     *
+     * @return false if the method has no rollout in the active plan, so its calls do not reach the scheduler
+     */
+    public boolean update(String methodKey, MethodRollout config) {
+        ActiveRollout rollout = new ActiveRollout(config);
+        if (rollouts.replace(methodKey, rollout) == null) {
+            return false;
+        }
+        startIfScheduled(rollout);
+        return true;
+    }
+
+    /**
+     * Snapshot of the rollouts by method key, sorted
+     */
+    public Map<String, ActiveRollout> getRollouts() {
+        return new TreeMap<>(rollouts);
+    }
+
+    /**
+     * Whether this call is answered by the mock
+     */
+    public boolean divert(String key) {
+        ActiveRollout rollout = rollouts.get(key);
+        if (rollout == null) {
+            return true;
+        }
+        double rate = rollout.rate;
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private boolean sameConfig(MethodRollout a, MethodRollout b) {
+        try {
+            return Objects.equals(configMapper.writeValueAsString(a), configMapper.writeValueAsString(b));
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Start the scheduler thread the first time a rollout has a schedule to follow
+     */
+    private void startIfScheduled(ActiveRollout rollout) {
+        if (rollout.finished || scheduler != null) {
+            return;
+        }
+        synchronized (this) {
+            if (scheduler == null) {
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "hotmock4j-rollout");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+                scheduler = executor;
+            }
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (ActiveRollout rollout : rollouts.values()) {
+            if (!rollout.finished) {
+                rollout.advance(now);
+            }
+        }
+    }
+
+    /**
+     * A rollout in effect
+     */
+    public static final class ActiveRollout {
+        private final MethodRollout config;
+        private final long appliedAt = System.nanoTime();
+        /** Schedule as (afterMillis, probability) points, starting with (0, probability) */
+        private final long[] stepMillis;
+        private final double[] stepRates;
+        /** Share of calls answered by the mock; written only by the scheduler after construction */
+        private volatile double rate;
+        private volatile boolean finished;
+
+        ActiveRollout(MethodRollout config) {
+            this.config = config != null ? config : new MethodRollout();
+            List<MethodRollout.RolloutStep> steps = new ArrayList<>();
+            if (this.config.isEnabled() && this.config.getSchedule() != null) {
+                for (MethodRollout.RolloutStep step : this.config.getSchedule()) {
+                    if (step != null && step.getAfterMillis() > 0) {
+                        steps.add(step);
+                    }
+                }
+                steps.sort(Comparator.comparingLong(MethodRollout.RolloutStep::getAfterMillis));
+            }
+            this.stepMillis = new long[steps.size() + 1];
+            this.stepRates = new double[steps.size() + 1];
+            stepRates[0] = this.config.isEnabled() ? clamp(this.config.getProbability()) : 1.0;
+            for (int i = 0; i < steps.size(); i++) {
+                stepMillis[i + 1] = steps.get(i).getAfterMillis();
+                stepRates[i + 1] = clamp(steps.get(i).getProbability());
+            }
+            this.rate = stepRates[0];
+            this.finished = steps.isEmpty();
+        }
+
+        public MethodRollout getConfig() {
+            return config;
+        }
+
+        /**
+         * Share of calls answered by the mock now, from 0 to 1
+         */
+        public double rate() {
+            return rate;
+        }
+
+        /**
+         * Whether the schedule has reached its last step
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Move the rate to where the schedule is at this time, interpolating between steps
+         */
+        private void advance(long now) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - appliedAt);
+            int last = stepMillis.length - 1;
+            if (elapsedMillis >= stepMillis[last]) {
+                rate = stepRates[last];
+                finished = true;
+                return;
+            }
+            int next = 1;
+            while (stepMillis[next] <= elapsedMillis) {
+                next++;
+            }
+            double progress = (double) (elapsedMillis - stepMillis[next - 1]) / (stepMillis[next] - stepMillis[next - 1]);
+            rate = stepRates[next - 1] + (stepRates[next] - stepRates[next - 1]) * progress;
+        }
+
+        private static double clamp(double probability) {
+            return Math.max(0.0, Math.min(1.0, probability));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.hotmock4j.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One recorded call of a spied method.
+ * Arguments and the result are kept as references and rendered with toString only when the call is drained,
+ * so recording costs the application thread no formatting.
+ */
+public final class SpyCall {
+
+    private static final int MAX_RENDERED_LENGTH = 1000;
+
+    private final long sequence;
+    private final String key;
+    private final String threadName;
+    private final long threadId;
+    private final long timestamp;
+    private final long durationNanos;
+    private final Object[] arguments;
+    private final Object returnValue;
+    private final Throwable thrown;
+
+    SpyCall(long sequence, String key, String threadName, long threadId, long timestamp, long durationNanos,
+            Object[] arguments, Object returnValue, Throwable thrown) {
+        this.sequence = sequence;
+        this.key = key;
+        this.threadName = threadName;
+        this.threadId = threadId;
+        this.timestamp = timestamp;
+        this.durationNanos = durationNanos;
+        this.arguments = arguments;
+        this.returnValue = returnValue;
+        this.thrown = thrown;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    /**
+     * "className#methodName" followed by the method descriptor
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    /**
+     * Wall clock time the call ended, in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public List<String> getArguments() {
+        List<String> rendered = new ArrayList<>(arguments != null ? arguments.length : 0);
+        if (arguments != null) {
+            for (Object argument : arguments) {
+                rendered.add(render(argument));
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * The rendered return value; null for void methods and calls that threw
+     */
+    public String getReturnValue() {
+        return thrown == null ? render(returnValue) : null;
+    }
+
+    public String getThrown() {
+        return thrown != null ? render(thrown) : null;
+    }
+
+    private static String render(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text;
+        try {
+            text = value.getClass().isArray() ? Arrays.deepToString(new Object[]{value}) : String.valueOf(value);
+            if (value.getClass().isArray()) {
+                text = text.substring(1, text.length() - 1);
+            }
+        } catch (RuntimeException | LinkageError e) {
+            text = value.getClass().getName() + " (toString failed: " + e + ")";
+        }
+        return text.length() > MAX_RENDERED_LENGTH ? text.substring(0, MAX_RENDERED_LENGTH) + "..." : text;
+    }
+}
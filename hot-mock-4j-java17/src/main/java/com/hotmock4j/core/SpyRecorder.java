@@ -0,0 +1,231 @@
+package com.hotmock4j.core;
+
+import com.hotmock4j.agent.AgentBootstrap;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records calls of spied methods into bounded per-thread ring buffers.
+ * Only the owning thread writes a buffer, without locks: it stores the call in the next slot and then publishes
+ * its write position. A drain reads up to the published position and skips calls that were overwritten before
+ * it got to them, so a slow or absent reader costs the application only its oldest calls. Drains are
+ * serialized among themselves and never block a recording thread, and they clear the slots they take.
+ * A thread registering its buffer sweeps those of ended threads: drained ones are unlinked and their slots reused
+ * by the new buffer, and at the bound on buffers the oldest with undrained calls is dropped. While every buffer
+ * belongs to a live thread, further threads record nothing.
+ */
+public final class SpyRecorder {
+
+    private static final int MAX_BUFFERS = 512;
+    /** How often a thread without a buffer sweeps again for one at the bound */
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int capacity;
+    private final int mask;
+    /** Null for a thread that found every buffer taken */
+    private final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(this::register);
+    private final Queue<Buffer> allBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferCount = new AtomicInteger();
+    private volatile long lastSweepNanos = System.nanoTime();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private SpyRecorder(int capacity) {
+        // A power of two, so the slot is a mask of the position
+        this.capacity = Integer.highestOneBit(Math.max(1, Math.min(capacity, 1 << 20) * 2 - 1));
+        this.mask = this.capacity - 1;
+    }
+
+    public static SpyRecorder getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Whether to record this call; decided on entry, so unsampled calls capture nothing
+     */
+    public boolean sample(double sampleRate) {
+        return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Called on the thread that made the call, as it returns or throws
+     */
+    public void record(String key, long startNanos, Object[] arguments, Object returnValue, Throwable thrown) {
+        long durationNanos = System.nanoTime() - startNanos;
+        Buffer buffer = buffers.get();
+        if (buffer == null) {
+            dropped.increment();
+            if (bufferCount.get() < MAX_BUFFERS || System.nanoTime() - lastSweepNanos > RETRY_NANOS) {
+                buffers.remove();
+            }
+            return;
+        }
+        buffer.add(key, System.currentTimeMillis(), durationNanos, arguments, returnValue, thrown);
+        recorded.increment();
+    }
+
+    /**
+     * Move up to limit calls recorded since the last drain into calls, oldest first per thread and ordered by
+     * the time they ended
+     *
+     * @return calls lost since the last drain because a buffer wrapped around
+     */
+    public synchronized long drain(int limit, List<SpyCall> calls) {
+        long lost = 0;
+        int start = calls.size();
+        Iterator<Buffer> iterator = allBuffers.iterator();
+        while (iterator.hasNext() && calls.size() - start < limit) {
+            Buffer buffer = iterator.next();
+            lost += buffer.drain(limit - (calls.size() - start), calls);
+            if (buffer.isDead() && buffer.isDrained()) {
+                unlink(buffer);
+            }
+        }
+        dropped.add(lost);
+        calls.subList(start, calls.size()).sort(Comparator.comparingLong(SpyCall::getTimestamp));
+        return lost;
+    }
+
+    public long recordedCount() {
+        return recorded.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * A buffer for the current thread, or null when every buffer belongs to a live thread
+     */
+    private Buffer register() {
+        Buffer reusable = sweep();
+        if (bufferCount.incrementAndGet() > MAX_BUFFERS) {
+            bufferCount.decrementAndGet();
+            return null;
+        }
+        // Positions continue from the reused buffer, so calls left in its slots never match a new position
+        Buffer buffer = reusable != null ? new Buffer(Thread.currentThread(), reusable.slots, reusable.written.get())
+                : new Buffer(Thread.currentThread(), new AtomicReferenceArray<>(capacity), 0);
+        allBuffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Unlink the drained buffers of ended threads, and at the bound the oldest one still holding calls
+     *
+     * @return an unlinked buffer whose slots can be reused, or null
+     */
+    private Buffer sweep() {
+        lastSweepNanos = System.nanoTime();
+        Buffer reusable = null;
+        Buffer oldestPending = null;
+        for (Buffer buffer : allBuffers) {
+            if (!buffer.isDead()) {
+                continue;
+            }
+            if (buffer.isDrained()) {
+                if (unlink(buffer) && reusable == null) {
+                    reusable = buffer;
+                }
+            } else if (oldestPending == null) {
+                oldestPending = buffer;
+            }
+        }
+        if (bufferCount.get() >= MAX_BUFFERS && oldestPending != null && unlink(oldestPending)) {
+            dropped.add(oldestPending.pending());
+        }
+        return reusable;
+    }
+
+    private boolean unlink(Buffer buffer) {
+        if (allBuffers.remove(buffer)) {
+            bufferCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private final class Buffer {
+        private final WeakReference<Thread> thread;
+        private final String threadName;
+        private final long threadId;
+        private final AtomicReferenceArray<SpyCall> slots;
+        /** Calls published so far; written only by the owning thread */
+        private final AtomicLong written;
+        /** Position of the next call to drain; written only under the drain lock */
+        private volatile long read;
+
+        Buffer(Thread owner, AtomicReferenceArray<SpyCall> slots, long start) {
+            this.thread = new WeakReference<>(owner);
+            this.threadName = owner.getName();
+            this.threadId = owner.getId();
+            this.slots = slots;
+            this.written = new AtomicLong(start);
+            this.read = start;
+        }
+
+        void add(String key, long timestamp, long durationNanos, Object[] arguments, Object returnValue, Throwable thrown) {
+            long position = written.get();
+            slots.lazySet((int) position & mask, new SpyCall(position, key, threadName, threadId, timestamp,
+                    durationNanos, arguments, returnValue, thrown));
+            written.lazySet(position + 1);
+        }
+
+        long drain(int limit, List<SpyCall> calls) {
+            long end = written.get();
+            long lost = 0;
+            if (end - read > capacity) {
+                lost += end - capacity - read;
+                read = end - capacity;
+            }
+            long position = read;
+            for (int taken = 0; position < end && taken < limit; position++) {
+                int slot = (int) position & mask;
+                SpyCall call = slots.get(slot);
+                // The writer may have lapped this slot since the position was read
+                if (call == null || call.sequence() != position) {
+                    lost++;
+                    continue;
+                }
+                calls.add(call);
+                // Let the call's arguments and result go; a newer call in the slot is left alone
+                slots.compareAndSet(slot, call, null);
+                taken++;
+            }
+            read = position;
+            return lost;
+        }
+
+        boolean isDrained() {
+            return read >= written.get();
+        }
+
+        boolean isDead() {
+            Thread owner = thread.get();
+            return owner == null || !owner.isAlive();
+        }
+
+        /**
+         * Calls not drained yet, at most a buffer's worth
+         */
+        long pending() {
+            return Math.max(0, Math.min(capacity, written.get() - read));
+        }
+    }
+
+    private static final class Holder {
+        private static final SpyRecorder INSTANCE = new SpyRecorder(AgentBootstrap.agentArgs.getSpyBufferSize());
+    }
+}
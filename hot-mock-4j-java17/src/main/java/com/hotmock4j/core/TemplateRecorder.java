@@ -0,0 +1,191 @@
+package com.hotmock4j.core;
+
+import com.hotmock4j.log.AgentLogger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns real return values of methods in record mode into templates.
+ * The returned object is walked on the calling thread, so the templates show it as it was returned: scalar
+ * fields become mock values and object fields become nested templates, down to the configured depth. A field
+ * pointing back to an object on the current path refers to that object's template instead of being walked
+ * again. Storing the templates in the plan happens on a background thread.
+ */
+public final class TemplateRecorder {
+
+    private static final TemplateRecorder INSTANCE = new TemplateRecorder();
+    /** Bound on the templates made from one return value */
+    private static final int MAX_TEMPLATES_PER_VALUE = 64;
+
+    private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hotmock4j-template-recorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TemplateRecorder() {
+    }
+
+    public static TemplateRecorder getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start recording the returns of a method of the active plan; called when its class is woven
+     */
+    public void register(String className, MockMethod mockMethod) {
+        MockPlan plan = MockPlanManager.getInstance().getActiveMockPlan();
+        MethodRecording config = mockMethod.getRecording();
+        if (plan == null || config == null) {
+            return;
+        }
+        recordings.compute(mockMethod.methodKey(className), (k, existing) -> existing != null && existing.plan == plan
+                ? existing : new Recording(plan, className, mockMethod.getMethodName(), mockMethod.getDescriptor(), config));
+    }
+
+    /**
+     * Called with each object a method in record mode returns
+     */
+    public void capture(String key, Object value) {
+        Recording recording = recordings.get(key);
+        if (recording == null || value == null || !isTemplatable(value.getClass())) {
+            return;
+        }
+        double sampleRate = recording.sampleRate;
+        if (sampleRate < 1.0 && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        int left = recording.remaining.getAndDecrement();
+        if (left <= 0) {
+            return;
+        }
+        boolean last = left == 1;
+        if (last) {
+            recordings.remove(key, recording);
+        }
+
+        List<MockClass> templates = new ArrayList<>();
+        try {
+            walk(value, "", 0, recording.maxDepth, new IdentityHashMap<>(), templates);
+        } catch (RuntimeException e) {
+            AgentLogger.warn("Failed to record return value of {}: {}", key, e.toString());
+            templates.clear();
+        }
+        writer.execute(() -> MockPlanManager.getInstance().addRecordedTemplates(recording.plan.getProject(),
+                recording.plan.getPlanName(), recording.className, recording.methodName, recording.descriptor, templates, last));
+    }
+
+    /**
+     * Add the template of value and those of its nested objects; template names are paths of field names
+     * relative to the returned object, which is named ""
+     */
+    private void walk(Object value, String name, int depth, int maxDepth, Map<Object, String> path,
+                      List<MockClass> templates) {
+        Class<?> clazz = value.getClass();
+        MockClass template = new MockClass(clazz.getPackageName(), clazz.getName());
+        template.setSimpleName(clazz.getSimpleName());
+        template.setTemplateName(name);
+        template.setTemplate(true);
+        templates.add(template);
+        path.put(value, name);
+
+        // Templates fill declared fields only, so inherited ones are not recorded
+        List<MockField> fields = new ArrayList<>();
+        for (Field declared : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(declared.getModifiers()) || declared.isSynthetic()) {
+                continue;
+            }
+            Object fieldValue;
+            try {
+                fieldValue = ClassResolver.getInstance().field(clazz, declared.getName()).get(value);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                continue;
+            }
+            if (fieldValue == null) {
+                continue;
+            }
+            MockField mockField = new MockField(declared.getName());
+            mockField.setFieldType(declared.getType().getSimpleName());
+            mockField.setPrimitive(declared.getType().isPrimitive());
+            mockField.setActive(true);
+            if (isScalar(declared.getType())) {
+                mockField.setMockFieldValue(String.valueOf(fieldValue));
+            } else if (path.containsKey(fieldValue)) {
+                mockField.setActiveTemplate(path.get(fieldValue));
+                mockField.setFieldClassName(fieldValue.getClass().getName());
+            } else if (depth < maxDepth && templates.size() < MAX_TEMPLATES_PER_VALUE
+                    && isTemplatable(fieldValue.getClass())) {
+                String nestedName = name + "." + declared.getName();
+                walk(fieldValue, nestedName, depth + 1, maxDepth, path, templates);
+                mockField.setActiveTemplate(nestedName);
+                mockField.setFieldClassName(fieldValue.getClass().getName());
+            } else {
+                continue;
+            }
+            fields.add(mockField);
+        }
+        template.setFields(fields);
+        path.remove(value);
+    }
+
+    /**
+     * Types a template stores as a mock value
+     */
+    private static boolean isScalar(Class<?> type) {
+        return type.isPrimitive() || type == String.class || type == Boolean.class || type == Character.class
+                || type == Byte.class || type == Short.class || type == Integer.class || type == Long.class
+                || type == Float.class || type == Double.class;
+    }
+
+    /**
+     * Classes a template can rebuild: concrete application classes with a no-arg constructor
+     */
+    private static boolean isTemplatable(Class<?> clazz) {
+        if (clazz.isArray() || clazz.isEnum() || clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+            return false;
+        }
+        String name = clazz.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || name.startsWith("sun.") || name.startsWith("com.sun.")) {
+            return false;
+        }
+        try {
+            clazz.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static final class Recording {
+        private final MockPlan plan;
+        private final String className;
+        private final String methodName;
+        /** Overload the recording is for, or null for every overload */
+        private final String descriptor;
+        private final double sampleRate;
+        private final int maxDepth;
+        private final AtomicInteger remaining;
+
+        Recording(MockPlan plan, String className, String methodName, String descriptor, MethodRecording config) {
+            this.plan = plan;
+            this.className = className;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+            this.sampleRate = config.getSampleRate();
+            this.maxDepth = Math.max(0, config.getMaxDepth());
+            this.remaining = new AtomicInteger(Math.max(0, config.getCount() - config.getRecorded()));
+        }
+    }
+}
@@ -1,27 +1,44 @@
 package com.hotmock4j.http;
 
+import com.hotmock4j.http.handlers.EventStreamHandler;
+import com.hotmock4j.http.handlers.MetricsHandler;
+import com.hotmock4j.http.handlers.MemoHandler;
+import com.hotmock4j.http.handlers.FaultHandler;
+import com.hotmock4j.http.handlers.RolloutHandler;
+import com.hotmock4j.http.handlers.SpyHandler;
 import com.hotmock4j.http.handlers.StaticResourceHandler;
 import com.hotmock4j.http.handlers.MockPlanHandler;
 import com.hotmock4j.http.handlers.ClassSearchHandler;
+import com.hotmock4j.log.AgentLogger;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class AgentHttpServer {
 
 
-    public static void startHttpServer() {
+    public static void startHttpServer(int port) {
         try {
-            HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
             
             configureHandlers(server);
             
+            // Event streams hold their exchange open, so requests need more than the default dispatcher thread
+            AtomicInteger threadIndex = new AtomicInteger();
+            server.setExecutor(Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "hotmock4j-http-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+            
             server.start();
-            System.out.println("Agent server started on http://localhost:8080");
+            AgentLogger.info("Agent server started on http://localhost:{}", port);
         } catch (IOException e) {
-            e.printStackTrace();
+            AgentLogger.error("Failed to start agent server on port {}", port, e);
         }
     }
 
@@ -32,5 +49,17 @@ public class AgentHttpServer {
         server.createContext("/api/mockplans", new MockPlanHandler());
         
         server.createContext("/api/classes", new ClassSearchHandler());
+        
+        server.createContext("/api/events", new EventStreamHandler());
+        
+        server.createContext("/api/metrics", new MetricsHandler());
+        
+        server.createContext("/api/spy", new SpyHandler());
+        
+        server.createContext("/api/memo", new MemoHandler());
+        
+        server.createContext("/api/faults", new FaultHandler());
+        
+        server.createContext("/api/rollouts", new RolloutHandler());
     }
 }
@@ -1,6 +1,7 @@
 package com.hotmock4j.http.handlers;
 
 import com.hotmock4j.core.*;
+import com.hotmock4j.log.AgentLogger;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -39,7 +40,7 @@ public class ClassSearchHandler implements HttpHandler {
                 responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            AgentLogger.error("Class search request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
             responseHelper.sendErrorResponse(exchange, 500, "Internal server error: " + e.getMessage());
         }
     }
@@ -0,0 +1,181 @@
+package com.hotmock4j.http.handlers;
+
+import com.hotmock4j.core.AgentEventBus;
+import com.hotmock4j.core.MockPlan;
+import com.hotmock4j.core.MockPlanManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events endpoint streaming plan changes, class loads and mock hit counters.
+ * Query parameter classFilter takes comma separated class name prefixes to receive class-loaded events for.
+ */
+public class EventStreamHandler implements HttpHandler {
+
+    private static final int MAX_SUBSCRIBERS = 32;
+    private static final long HEARTBEAT_MILLIS = 15000;
+
+    private final AgentEventBus eventBus;
+    private final MockPlanManager mockPlanManager;
+    private final ObjectMapper objectMapper;
+    private final ResponseHelper responseHelper;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    public EventStreamHandler() {
+        this.eventBus = AgentEventBus.getInstance();
+        this.mockPlanManager = MockPlanManager.getInstance();
+        this.objectMapper = new ObjectMapper();
+        this.responseHelper = new ResponseHelper();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
+            return;
+        }
+        if (activeStreams.incrementAndGet() > MAX_SUBSCRIBERS) {
+            activeStreams.decrementAndGet();
+            responseHelper.sendErrorResponse(exchange, 503, "Too many event stream subscribers");
+            return;
+        }
+
+        List<String> classFilters = extractClassFilters(exchange.getRequestURI().getRawQuery());
+        long lastSequence = resolveStartSequence(exchange.getRequestHeaders().getFirst("Last-Event-ID"));
+
+        eventBus.subscribe(classFilters);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, 0);
+
+            try (OutputStream os = exchange.getResponseBody()) {
+                writeEvent(os, lastSequence, "snapshot", objectMapper.writeValueAsString(planVersions()));
+                os.flush();
+                streamEvents(os, lastSequence, classFilters);
+            }
+        } catch (IOException e) {
+            // Client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            eventBus.unsubscribe(classFilters);
+            activeStreams.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+
+    private void streamEvents(OutputStream os, long lastSequence, List<String> classFilters)
+            throws IOException, InterruptedException {
+        List<AgentEventBus.AgentEvent> batch = new ArrayList<>();
+        long lastWrite = System.currentTimeMillis();
+        while (true) {
+            eventBus.awaitEvents(lastSequence, HEARTBEAT_MILLIS);
+            batch.clear();
+            long cursor = eventBus.readAfter(lastSequence, batch);
+            long dropped = cursor - lastSequence - batch.size();
+            if (dropped > 0) {
+                writeEvent(os, lastSequence, "dropped", "{\"count\":" + dropped + "}");
+            }
+            for (AgentEventBus.AgentEvent event : batch) {
+                if (AgentEventBus.CLASS_LOADED.equals(event.getType()) && !matchesClassFilter(event.getKey(), classFilters)) {
+                    continue;
+                }
+                writeEvent(os, event.getSequence(), event.getType(), event.getData());
+            }
+            lastSequence = cursor;
+            long now = System.currentTimeMillis();
+            if (dropped > 0 || !batch.isEmpty()) {
+                lastWrite = now;
+                os.flush();
+            } else if (now - lastWrite >= HEARTBEAT_MILLIS) {
+                // SSE comment line keeps proxies from closing an idle stream and detects dead clients
+                os.write(":heartbeat\n\n".getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                lastWrite = now;
+            }
+        }
+    }
+
+
+    private void writeEvent(OutputStream os, long id, String type, String data) throws IOException {
+        String frame = "id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n";
+        os.write(frame.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private boolean matchesClassFilter(String className, List<String> classFilters) {
+        for (String filter : classFilters) {
+            if (className != null && className.startsWith(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private List<Map<String, Object>> planVersions() {
+        List<Map<String, Object>> plans = new ArrayList<>();
+        for (MockPlan mockPlan : mockPlanManager.getAllMockPlans()) {
+            Map<String, Object> plan = new HashMap<>();
+            plan.put("projectName", mockPlan.getProject() != null ? mockPlan.getProject().getProjectName() : null);
+            plan.put("planName", mockPlan.getPlanName());
+            plan.put("version", mockPlan.getVersion());
+            plan.put("active", mockPlan.isActive());
+            plans.add(plan);
+        }
+        return plans;
+    }
+
+
+    /**
+     * Resume after the Last-Event-ID sent by a reconnecting EventSource, otherwise start with new events only
+     */
+    private long resolveStartSequence(String lastEventId) {
+        long current = eventBus.getLastSequence();
+        if (lastEventId != null) {
+            try {
+                long requested = Long.parseLong(lastEventId.trim());
+                if (requested >= 0 && requested <= current) {
+                    return requested;
+                }
+            } catch (NumberFormatException ignore) {
+                // fall through to the current position
+            }
+        }
+        return current;
+    }
+
+
+    private List<String> extractClassFilters(String query) {
+        List<String> filters = new ArrayList<>();
+        if (query == null) {
+            return filters;
+        }
+        for (String param : query.split("&")) {
+            int idx = param.indexOf('=');
+            if (idx > 0 && "classFilter".equals(param.substring(0, idx))) {
+                String value = URLDecoder.decode(param.substring(idx + 1), StandardCharsets.UTF_8);
+                for (String prefix : value.split(",")) {
+                    if (!prefix.trim().isEmpty()) {
+                        filters.add(prefix.trim());
+                    }
+                }
+            }
+        }
+        return filters;
+    }
+}
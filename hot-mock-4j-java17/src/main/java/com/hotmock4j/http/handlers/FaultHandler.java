@@ -0,0 +1,89 @@
+package com.hotmock4j.http.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotmock4j.core.FaultInjector;
+import com.hotmock4j.core.MethodFault;
+import com.hotmock4j.log.AgentLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live control of injected faults. GET lists each faulted method with its fault, ramp intensity, calls in flight,
+ * errors and rejections; PUT or POST with {"key": "className#methodName", "fault": {...}} replaces a method's
+ * fault without weaving its class again; a mock of one overload has the descriptor appended to its key. The replacement holds until the class is woven again from the plan.
+ */
+public class FaultHandler implements HttpHandler {
+
+    private final FaultInjector faultInjector;
+    private final ObjectMapper objectMapper;
+    private final ResponseHelper responseHelper;
+
+    public FaultHandler() {
+        this.faultInjector = FaultInjector.getInstance();
+        this.objectMapper = new ObjectMapper();
+        this.responseHelper = new ResponseHelper();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                handleList(exchange);
+            } else if ("PUT".equals(exchange.getRequestMethod()) || "POST".equals(exchange.getRequestMethod())) {
+                handleUpdate(exchange);
+            } else {
+                responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
+            }
+        } catch (Exception e) {
+            AgentLogger.error("Fault request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            responseHelper.sendErrorResponse(exchange, 500, "Internal server error: " + e.getMessage());
+        }
+    }
+
+    private void handleList(HttpExchange exchange) throws IOException {
+        List<Map<String, Object>> faults = new ArrayList<>();
+        for (Map.Entry<String, FaultInjector.ActiveFault> entry : faultInjector.getFaults().entrySet()) {
+            FaultInjector.ActiveFault fault = entry.getValue();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("key", entry.getKey());
+            stats.put("fault", fault.getConfig());
+            stats.put("intensity", fault.intensity());
+            stats.put("inFlight", fault.inFlight());
+            stats.put("errors", fault.errorCount());
+            stats.put("rejections", fault.rejectionCount());
+            faults.add(stats);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("faults", faults);
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(response), "application/json");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handleUpdate(HttpExchange exchange) throws IOException {
+        String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, Object> request = objectMapper.readValue(requestBody, Map.class);
+        Object key = request.get("key");
+        if (!(key instanceof String) || !(request.get("fault") instanceof Map)) {
+            responseHelper.sendErrorResponse(exchange, 400, "Expected {\"key\": \"className#methodName\", \"fault\": {...}}");
+            return;
+        }
+        MethodFault fault = objectMapper.convertValue(request.get("fault"), MethodFault.class);
+        if (!faultInjector.update((String) key, fault)) {
+            responseHelper.sendErrorResponse(exchange, 404, "No fault in the active plan for " + key);
+            return;
+        }
+        AgentLogger.info("Updated fault of {}: enabled={}", key, fault.isEnabled());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("key", key);
+        response.put("fault", fault);
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(response), "application/json");
+    }
+}
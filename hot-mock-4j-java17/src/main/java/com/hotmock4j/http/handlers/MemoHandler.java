@@ -0,0 +1,87 @@
+package com.hotmock4j.http.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotmock4j.core.MemoCache;
+import com.hotmock4j.core.MemoCacheManager;
+import com.hotmock4j.log.AgentLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics and invalidation of memoized methods. GET lists each cache with its hits, misses, evictions and
+ * size; DELETE clears the caches of ?target= (a class, "className#methodName" or a full key), or all of them.
+ */
+public class MemoHandler implements HttpHandler {
+
+    private final MemoCacheManager memoCacheManager;
+    private final ObjectMapper objectMapper;
+    private final ResponseHelper responseHelper;
+
+    public MemoHandler() {
+        this.memoCacheManager = MemoCacheManager.getInstance();
+        this.objectMapper = new ObjectMapper();
+        this.responseHelper = new ResponseHelper();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                handleStats(exchange);
+            } else if ("DELETE".equals(exchange.getRequestMethod())) {
+                handleInvalidate(exchange);
+            } else {
+                responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
+            }
+        } catch (Exception e) {
+            AgentLogger.error("Memo request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            responseHelper.sendErrorResponse(exchange, 500, "Internal server error: " + e.getMessage());
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        List<Map<String, Object>> caches = new ArrayList<>();
+        for (Map.Entry<String, MemoCache> entry : memoCacheManager.getCaches().entrySet()) {
+            MemoCache cache = entry.getValue();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("key", entry.getKey());
+            stats.put("hits", cache.hitCount());
+            stats.put("misses", cache.missCount());
+            stats.put("evictions", cache.evictionCount());
+            stats.put("size", cache.size());
+            stats.put("maxEntries", cache.getMaxEntries());
+            stats.put("ttlMillis", cache.getTtlMillis());
+            caches.add(stats);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("caches", caches);
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(response), "application/json");
+    }
+
+    private void handleInvalidate(HttpExchange exchange) throws IOException {
+        String target = null;
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String[] keyValue = param.split("=", 2);
+                if (keyValue.length == 2 && "target".equals(keyValue[0]) && !keyValue[1].isEmpty()) {
+                    target = URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8);
+                }
+            }
+        }
+        int cleared = memoCacheManager.invalidate(target);
+        AgentLogger.info("Invalidated {} memo caches of {}", cleared, target != null ? target : "all methods");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("cleared", cleared);
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(response), "application/json");
+    }
+}
@@ -0,0 +1,36 @@
+package com.hotmock4j.http.handlers;
+
+import com.hotmock4j.core.AgentMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+
+/**
+ * Prometheus scrape endpoint for the agent's own metrics
+ */
+public class MetricsHandler implements HttpHandler {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    private final AgentMetrics agentMetrics;
+    private final ResponseHelper responseHelper;
+
+    public MetricsHandler() {
+        this.agentMetrics = AgentMetrics.getInstance();
+        this.responseHelper = new ResponseHelper();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                responseHelper.sendResponse(exchange, 200, agentMetrics.scrape(), CONTENT_TYPE);
+            } else {
+                responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
+            }
+        } catch (Exception e) {
+            responseHelper.sendErrorResponse(exchange, 500, "Internal server error: " + e.getMessage());
+        }
+    }
+}
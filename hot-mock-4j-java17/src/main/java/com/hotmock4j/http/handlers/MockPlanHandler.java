@@ -1,12 +1,15 @@
 package com.hotmock4j.http.handlers;
 
 import com.hotmock4j.core.*;
+import com.hotmock4j.log.AgentLogger;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +17,9 @@ import java.util.Map;
 
 public class MockPlanHandler implements HttpHandler {
     
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() { };
+    private static final TypeReference<List<Map<String, Object>>> MAP_LIST_TYPE = new TypeReference<List<Map<String, Object>>>() { };
+    
     private final MockPlanManager mockPlanManager;
     private final ObjectMapper objectMapper;
     private final ResponseHelper responseHelper;
@@ -40,6 +46,9 @@ public class MockPlanHandler implements HttpHandler {
                 case "PUT":
                     handlePutRequest(exchange, path);
                     break;
+                case "PATCH":
+                    handlePatchRequest(exchange, path);
+                    break;
                 case "DELETE":
                     handleDeleteRequest(exchange, path);
                     break;
@@ -47,8 +56,13 @@ public class MockPlanHandler implements HttpHandler {
                     responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
                     break;
             }
+        } catch (PlanVersionConflictException e) {
+            exchange.getResponseHeaders().set("ETag", planETag(e.getCurrentVersion()));
+            responseHelper.sendErrorResponse(exchange, 412, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            responseHelper.sendErrorResponse(exchange, 400, e.getMessage());
         } catch (Exception e) {
-            e.printStackTrace();
+            AgentLogger.error("Mock plan request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
             responseHelper.sendErrorResponse(exchange, 500, "Internal server error: " + e.getMessage());
         }
     }
@@ -61,13 +75,45 @@ public class MockPlanHandler implements HttpHandler {
         } else if (path.startsWith("/api/mockplans/active")) {
             MockPlan activePlan = mockPlanManager.getActiveMockPlan();
             String response = objectMapper.writeValueAsString(activePlan);
+            if (activePlan != null) {
+                exchange.getResponseHeaders().set("ETag", planETag(activePlan.getVersion()));
+            }
             responseHelper.sendResponse(exchange, 200, response, "application/json");
+        } else if (path.startsWith("/api/mockplans/plan")) {
+            handleGetMockPlan(exchange);
         } else {
             responseHelper.sendErrorResponse(exchange, 404, "Not found");
         }
     }
     
 
+    /**
+     * GET /api/mockplans/plan?projectName=..&planName=.. returns one plan with its version as ETag
+     */
+    private void handleGetMockPlan(HttpExchange exchange) throws IOException {
+        Map<String, String> params = extractQueryParams(exchange);
+        String projectName = params.get("projectName");
+        String planName = params.get("planName");
+        if (projectName == null || planName == null) {
+            responseHelper.sendErrorResponse(exchange, 400, "Missing required parameters: projectName and planName");
+            return;
+        }
+        MockPlan mockPlan = mockPlanManager.getMockPlan(projectName, planName);
+        if (mockPlan == null) {
+            responseHelper.sendErrorResponse(exchange, 404, "MockPlan not found");
+            return;
+        }
+        String etag = planETag(mockPlan.getVersion());
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(mockPlan), "application/json");
+    }
+    
+
     private void handlePostRequest(HttpExchange exchange, String path) throws IOException {
         if (path.equals("/api/mockplans")) {
             String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
@@ -84,6 +130,7 @@ public class MockPlanHandler implements HttpHandler {
             MockProject project = new MockProject(projectName);
             MockPlan mockPlan = mockPlanManager.createMockPlan(planName, project);
             String response = objectMapper.writeValueAsString(mockPlan);
+            exchange.getResponseHeaders().set("ETag", planETag(mockPlan.getVersion()));
             responseHelper.sendResponse(exchange, 201, response, "application/json");
         } else {
             responseHelper.sendErrorResponse(exchange, 404, "Not found");
@@ -94,6 +141,8 @@ public class MockPlanHandler implements HttpHandler {
     private void handlePutRequest(HttpExchange exchange, String path) throws IOException {
         if (path.startsWith("/api/mockplans/activate")) {
             handleActivateMockPlan(exchange);
+        } else if (path.startsWith("/api/mockplans/classes")) {
+            handleUpdateMockClasses(exchange);
         } else if (path.startsWith("/api/mockplans/class")) {
             handleUpdateMockClass(exchange);
         } else {
@@ -115,7 +164,8 @@ public class MockPlanHandler implements HttpHandler {
         }
         
         MockProject project = new MockProject(projectName);
-        boolean activated = mockPlanManager.activateMockPlan(project, planName);
+        long version = mockPlanManager.activateMockPlan(project, planName, ifMatchVersion(exchange));
+        boolean activated = setPlanETag(exchange, version);
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", activated);
@@ -142,7 +192,8 @@ public class MockPlanHandler implements HttpHandler {
         try {
             MockClass mockClass = convertAndFilterMockClass(mockClassData);
             
-            boolean updated = mockPlanManager.updateMockClass(projectName, planName, mockClass);
+            long version = mockPlanManager.updateMockClass(projectName, planName, mockClass, ifMatchVersion(exchange));
+            boolean updated = setPlanETag(exchange, version);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", updated);
@@ -161,12 +212,91 @@ public class MockPlanHandler implements HttpHandler {
     }
     
 
+    /**
+     * Bulk update: {"projectName", "planName", "mockClasses": [MockClass, ...]}
+     */
+    private void handleUpdateMockClasses(HttpExchange exchange) throws IOException {
+        String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, Object> requestData = objectMapper.readValue(requestBody, MAP_TYPE);
+        
+        String projectName = (String) requestData.get("projectName");
+        String planName = (String) requestData.get("planName");
+        Object mockClassesData = requestData.get("mockClasses");
+        
+        if (projectName == null || planName == null || !(mockClassesData instanceof List)) {
+            responseHelper.sendErrorResponse(exchange, 400, "Missing required parameters: projectName, planName, and mockClasses");
+            return;
+        }
+        
+        if (mockPlanManager.getMockPlan(projectName, planName) == null) {
+            responseHelper.sendErrorResponse(exchange, 404, "MockPlan not found");
+            return;
+        }
+        
+        List<MockClass> mockClasses = new ArrayList<>();
+        for (Map<String, Object> mockClassData : objectMapper.convertValue(mockClassesData, MAP_LIST_TYPE)) {
+            mockClasses.add(convertAndFilterMockClass(mockClassData));
+        }
+        
+        MockClassBatchResult result = mockPlanManager.updateMockClasses(projectName, planName, mockClasses,
+                ifMatchVersion(exchange));
+        if (result.isSuccess()) {
+            setPlanETag(exchange, result.getVersion());
+        }
+        responseHelper.sendResponse(exchange, result.isSuccess() ? 200 : 400,
+            objectMapper.writeValueAsString(result), "application/json");
+    }
+    
+
+    private void handlePatchRequest(HttpExchange exchange, String path) throws IOException {
+        if (!path.startsWith("/api/mockplans/class")) {
+            responseHelper.sendErrorResponse(exchange, 404, "Not found");
+            return;
+        }
+        String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, Object> requestData = objectMapper.readValue(requestBody, MAP_TYPE);
+        
+        String projectName = (String) requestData.get("projectName");
+        String planName = (String) requestData.get("planName");
+        
+        if (projectName == null || planName == null || requestData.get("className") == null
+                || !(requestData.get("operations") instanceof List)) {
+            responseHelper.sendErrorResponse(exchange, 400, "Missing required parameters: projectName, planName, className and operations");
+            return;
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        try {
+            MockClassPatch patch = new MockClassPatch();
+            patch.setClassName((String) requestData.get("className"));
+            patch.setTemplateName((String) requestData.get("templateName"));
+            for (Map<String, Object> operationData : objectMapper.convertValue(requestData.get("operations"), MAP_LIST_TYPE)) {
+                patch.getOperations().add(new MockClassPatch.Operation(
+                        (String) operationData.get("op"), (String) operationData.get("path"), operationData.get("value")));
+            }
+            
+            long version = mockPlanManager.patchMockClass(projectName, planName, patch, ifMatchVersion(exchange));
+            boolean patched = setPlanETag(exchange, version);
+            response.put("success", patched);
+            response.put("message", patched ? "MockClass patched successfully" : "MockClass not found");
+            responseHelper.sendResponse(exchange, patched ? 200 : 404,
+                objectMapper.writeValueAsString(response), "application/json");
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            responseHelper.sendResponse(exchange, 400,
+                objectMapper.writeValueAsString(response), "application/json");
+        }
+    }
+    
+
     private MockClass convertAndFilterMockClass(Map<String, Object> mockClassData) {
         MockClass mockClass = new MockClass();
         mockClass.setClassName((String) mockClassData.get("className"));
         mockClass.setClassPackage((String) mockClassData.get("classPackage"));
         
         mockClass.setTemplateName((String) mockClassData.get("templateName"));
+        mockClass.setTemplate(Boolean.TRUE.equals(mockClassData.get("template")));
         
         Object activeValue = mockClassData.get("isActive");
         if (activeValue == null) {
@@ -219,6 +349,33 @@ public class MockPlanHandler implements HttpHandler {
                 if (methodData.containsKey("returnClassName")) {
                     method.setReturnClassName((String) methodData.get("returnClassName"));
                 }
+                if (methodData.containsKey("descriptor")) {
+                    method.setDescriptor((String) methodData.get("descriptor"));
+                }
+                if (methodData.get("context") instanceof String && !((String) methodData.get("context")).isEmpty()) {
+                    method.setContext((String) methodData.get("context"));
+                }
+                if (methodData.get("stubs") instanceof List) {
+                    method.setStubs(objectMapper.convertValue(methodData.get("stubs"), new TypeReference<List<MethodStub>>() { }));
+                }
+                if (methodData.get("methodSpy") instanceof Map) {
+                    method.setMethodSpy(objectMapper.convertValue(methodData.get("methodSpy"), MethodSpy.class));
+                }
+                if (methodData.get("recording") instanceof Map) {
+                    method.setRecording(objectMapper.convertValue(methodData.get("recording"), MethodRecording.class));
+                }
+                if (methodData.get("replay") instanceof Map) {
+                    method.setReplay(objectMapper.convertValue(methodData.get("replay"), MethodReplay.class));
+                }
+                if (methodData.get("memo") instanceof Map) {
+                    method.setMemo(objectMapper.convertValue(methodData.get("memo"), MethodMemo.class));
+                }
+                if (methodData.get("fault") instanceof Map) {
+                    method.setFault(objectMapper.convertValue(methodData.get("fault"), MethodFault.class));
+                }
+                if (methodData.get("rollout") instanceof Map) {
+                    method.setRollout(objectMapper.convertValue(methodData.get("rollout"), MethodRollout.class));
+                }
                 
                 Object methodActiveValue = methodData.get("isActive");
                 if (methodActiveValue == null) {
@@ -232,7 +389,14 @@ public class MockPlanHandler implements HttpHandler {
                     !method.getReturnObject().toString().trim().isEmpty();
                 boolean hasReturnTemplate = method.getActiveReturnTemplateName() != null && 
                     !method.getActiveReturnTemplateName().trim().isEmpty();
-                if ((hasReturnMock || hasReturnTemplate) && method.isActive()) {
+                boolean hasStubs = method.getStubs() != null && !method.getStubs().isEmpty();
+                boolean hasSpy = method.getMethodSpy() != null && method.getMethodSpy().isEnabled();
+                boolean hasRecording = method.getRecording() != null && method.getRecording().isEnabled();
+                boolean hasReplay = method.getReplay() != null && method.getReplay().isEnabled();
+                boolean hasMemo = method.getMemo() != null && method.getMemo().isEnabled();
+                boolean hasFault = method.getFault() != null && method.getFault().isEnabled();
+                if ((hasReturnMock || hasReturnTemplate || hasStubs || hasSpy || hasRecording || hasReplay || hasMemo
+                        || hasFault) && method.isActive()) {
                     mockClass.getMethods().add(method);
                 }
             }
@@ -260,16 +424,8 @@ public class MockPlanHandler implements HttpHandler {
         }
 
         // Fallback to query string params when body is empty
-        if (requestData.isEmpty() && exchange.getRequestURI().getQuery() != null) {
-            String[] pairs = exchange.getRequestURI().getQuery().split("&");
-            for (String p : pairs) {
-                int idx = p.indexOf('=');
-                if (idx > 0) {
-                    String k = java.net.URLDecoder.decode(p.substring(0, idx), StandardCharsets.UTF_8);
-                    String v = java.net.URLDecoder.decode(p.substring(idx + 1), StandardCharsets.UTF_8);
-                    requestData.put(k, v);
-                }
-            }
+        if (requestData.isEmpty()) {
+            requestData = extractQueryParams(exchange);
         }
 
         if (path.startsWith("/api/mockplans/class")) {
@@ -282,7 +438,8 @@ public class MockPlanHandler implements HttpHandler {
                 return;
             }
 
-            boolean deleted = mockPlanManager.deleteMockClass(projectName, planName, className);
+            long version = mockPlanManager.deleteMockClass(projectName, planName, className, ifMatchVersion(exchange));
+            boolean deleted = setPlanETag(exchange, version);
             Map<String, Object> response = new HashMap<>();
             response.put("success", deleted);
             response.put("message", deleted ? "MockClass deleted successfully" : "MockClass not found");
@@ -301,7 +458,7 @@ public class MockPlanHandler implements HttpHandler {
         }
 
         MockProject project = new MockProject(projectName);
-        boolean deleted = mockPlanManager.deleteMockPlan(project, planName);
+        boolean deleted = mockPlanManager.deleteMockPlan(project, planName, ifMatchVersion(exchange));
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", deleted);
@@ -310,4 +467,60 @@ public class MockPlanHandler implements HttpHandler {
         responseHelper.sendResponse(exchange, deleted ? 200 : 404,
                 objectMapper.writeValueAsString(response), "application/json");
     }
+
+
+    private Map<String, String> extractQueryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String p : query.split("&")) {
+                int idx = p.indexOf('=');
+                if (idx > 0) {
+                    String k = java.net.URLDecoder.decode(p.substring(0, idx), StandardCharsets.UTF_8);
+                    String v = java.net.URLDecoder.decode(p.substring(idx + 1), StandardCharsets.UTF_8);
+                    params.put(k, v);
+                }
+            }
+        }
+        return params;
+    }
+
+
+    /**
+     * Plan version the client based its edit on, taken from If-Match; null when absent or "*"
+     */
+    private Long ifMatchVersion(HttpExchange exchange) {
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid If-Match header: " + ifMatch);
+        }
+    }
+
+
+    /**
+     * Set the ETag to the version a mutation wrote, which it returned while still holding the plan lock
+     * @return false when the mutation found nothing to change
+     */
+    private boolean setPlanETag(HttpExchange exchange, long version) {
+        if (version == MockPlanManager.NOT_FOUND) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("ETag", planETag(version));
+        return true;
+    }
+
+
+    private String planETag(long version) {
+        return "\"" + version + "\"";
+    }
 }
@@ -0,0 +1,88 @@
+package com.hotmock4j.http.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotmock4j.core.MethodRollout;
+import com.hotmock4j.core.RolloutScheduler;
+import com.hotmock4j.log.AgentLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live control of mock rollouts. GET lists each method in a rollout with its configuration and the share of
+ * calls its mock answers now; PUT or POST with {"key": "className#methodName", "rollout": {...}} replaces a
+ * method's rollout and restarts its schedule; a mock of one overload has the descriptor appended to its key.
+ * The replacement holds until the class is woven again from the plan.
+ */
+public class RolloutHandler implements HttpHandler {
+
+    private final RolloutScheduler rolloutScheduler;
+    private final ObjectMapper objectMapper;
+    private final ResponseHelper responseHelper;
+
+    public RolloutHandler() {
+        this.rolloutScheduler = RolloutScheduler.getInstance();
+        this.objectMapper = new ObjectMapper();
+        this.responseHelper = new ResponseHelper();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                handleList(exchange);
+            } else if ("PUT".equals(exchange.getRequestMethod()) || "POST".equals(exchange.getRequestMethod())) {
+                handleUpdate(exchange);
+            } else {
+                responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
+            }
+        } catch (Exception e) {
+            AgentLogger.error("Rollout request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            responseHelper.sendErrorResponse(exchange, 500, "Internal server error: " + e.getMessage());
+        }
+    }
+
+    private void handleList(HttpExchange exchange) throws IOException {
+        List<Map<String, Object>> rollouts = new ArrayList<>();
+        for (Map.Entry<String, RolloutScheduler.ActiveRollout> entry : rolloutScheduler.getRollouts().entrySet()) {
+            RolloutScheduler.ActiveRollout rollout = entry.getValue();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("key", entry.getKey());
+            stats.put("rollout", rollout.getConfig());
+            stats.put("rate", rollout.rate());
+            stats.put("finished", rollout.isFinished());
+            rollouts.add(stats);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("rollouts", rollouts);
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(response), "application/json");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handleUpdate(HttpExchange exchange) throws IOException {
+        String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, Object> request = objectMapper.readValue(requestBody, Map.class);
+        Object key = request.get("key");
+        if (!(key instanceof String) || !(request.get("rollout") instanceof Map)) {
+            responseHelper.sendErrorResponse(exchange, 400, "Expected {\"key\": \"className#methodName\", \"rollout\": {...}}");
+            return;
+        }
+        MethodRollout rollout = objectMapper.convertValue(request.get("rollout"), MethodRollout.class);
+        if (!rolloutScheduler.update((String) key, rollout)) {
+            responseHelper.sendErrorResponse(exchange, 404, "No rollout in the active plan for " + key);
+            return;
+        }
+        AgentLogger.info("Updated rollout of {}: enabled={}, probability={}", key, rollout.isEnabled(), rollout.getProbability());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("key", key);
+        response.put("rollout", rollout);
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(response), "application/json");
+    }
+}
@@ -0,0 +1,74 @@
+package com.hotmock4j.http.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hotmock4j.core.SpyCall;
+import com.hotmock4j.core.SpyRecorder;
+import com.hotmock4j.log.AgentLogger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains calls recorded by spied methods. Each GET returns the calls recorded since the previous one,
+ * at most limit (default 1000) of them; the rest stay buffered for the next request.
+ */
+public class SpyHandler implements HttpHandler {
+
+    private static final int DEFAULT_LIMIT = 1000;
+
+    private final SpyRecorder spyRecorder;
+    private final ObjectMapper objectMapper;
+    private final ResponseHelper responseHelper;
+
+    public SpyHandler() {
+        this.spyRecorder = SpyRecorder.getInstance();
+        this.objectMapper = new ObjectMapper();
+        this.responseHelper = new ResponseHelper();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                handleDrain(exchange);
+            } else {
+                responseHelper.sendErrorResponse(exchange, 405, "Method not allowed");
+            }
+        } catch (Exception e) {
+            AgentLogger.error("Spy request failed: {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            responseHelper.sendErrorResponse(exchange, 500, "Internal server error: " + e.getMessage());
+        }
+    }
+
+    private void handleDrain(HttpExchange exchange) throws IOException {
+        int limit = DEFAULT_LIMIT;
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                String[] keyValue = param.split("=");
+                if (keyValue.length == 2 && "limit".equals(keyValue[0])) {
+                    try {
+                        limit = Math.max(1, Integer.parseInt(keyValue[1]));
+                    } catch (NumberFormatException e) {
+                        responseHelper.sendErrorResponse(exchange, 400, "Invalid limit: " + keyValue[1]);
+                        return;
+                    }
+                }
+            }
+        }
+
+        List<SpyCall> calls = new ArrayList<>();
+        long dropped = spyRecorder.drain(limit, calls);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("calls", calls);
+        response.put("count", calls.size());
+        response.put("dropped", dropped);
+        responseHelper.sendResponse(exchange, 200, objectMapper.writeValueAsString(response), "application/json");
+    }
+}
@@ -3,14 +3,43 @@ package com.hotmock4j.http.handlers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
 
 
 public class StaticResourceHandler implements HttpHandler {
-    
+
+    private static final String RESOURCE_ROOT = "/hotmock4j-ui";
+
+    /**
+     * Assets are immutable inside the agent jar, so each one is read, hashed and gzipped once
+     * and then served from memory. Misses are not cached to keep the map bounded by the jar content.
+     */
+    private static final Map<String, CachedResource> CACHE = new ConcurrentHashMap<>();
+
+    /** Assets requested when the UI is opened */
+    private static final String[] UI_ASSETS = {
+            "/index.html", "/script.js", "/styles.css",
+            "/modules/api-manager.js", "/modules/class-editor.js", "/modules/ui-manager.js"
+    };
+
+    /**
+     * Read, hash and gzip the UI assets ahead of the first request
+     */
+    public static void preloadAssets() throws IOException {
+        for (String path : UI_ASSETS) {
+            getResource(path);
+        }
+    }
+
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         String path = exchange.getRequestURI().getPath();
@@ -18,26 +47,74 @@ public class StaticResourceHandler implements HttpHandler {
             path = "/index.html";
         }
 
-        try (InputStream is = getClass().getResourceAsStream("/hotmock4j-ui" + path)) {
+        CachedResource resource = getResource(path);
+        if (resource == null) {
+            sendNotFound(exchange, path);
+            return;
+        }
+
+        // Each encoding is its own representation, with its own strong validator
+        boolean gzip = resource.gzipData != null && acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        String etag = gzip ? resource.gzipEtag : resource.etag;
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+
+        if (matchesETag(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] data = resource.data;
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            data = resource.gzipData;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", resource.contentType + "; charset=UTF-8");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, data.length);
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(data);
+        }
+    }
+
+
+    /**
+     * Get an asset from the cache, loading it from the jar on first access
+     */
+    static CachedResource getResource(String path) throws IOException {
+        CachedResource cached = CACHE.get(path);
+        if (cached != null) {
+            return cached;
+        }
+        CachedResource loaded = loadResource(path);
+        if (loaded == null) {
+            return null;
+        }
+        CachedResource previous = CACHE.putIfAbsent(path, loaded);
+        return previous != null ? previous : loaded;
+    }
+
+
+    private static CachedResource loadResource(String path) throws IOException {
+        try (InputStream is = StaticResourceHandler.class.getResourceAsStream(RESOURCE_ROOT + path)) {
             if (is == null) {
-                sendNotFound(exchange, path);
-                return;
+                return null;
             }
-
-            String contentType = getContentType(path);
             byte[] data = is.readAllBytes();
-            
-            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
-            exchange.sendResponseHeaders(200, data.length);
-            
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(data);
-            }
+            return new CachedResource(getContentType(path), data, gzip(data), computeETag(data));
         }
     }
 
 
-    private String getContentType(String path) {
+    private static String getContentType(String path) {
         if (path.endsWith(".html")) return "text/html";
         else if (path.endsWith(".js")) return "application/javascript";
         else if (path.endsWith(".css")) return "text/css";
@@ -45,6 +122,78 @@ public class StaticResourceHandler implements HttpHandler {
     }
 
 
+    /**
+     * Gzip the asset, returning null when compression would not make it smaller
+     */
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+            gzip.write(data);
+        }
+        byte[] compressed = bos.toByteArray();
+        return compressed.length < data.length ? compressed : null;
+    }
+
+
+    private static String computeETag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(34).append('"');
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every JVM, fall back to a length based tag just in case
+            return "\"" + Integer.toHexString(java.util.Arrays.hashCode(data)) + "-" + data.length + "\"";
+        }
+    }
+
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            if (!"gzip".equalsIgnoreCase(parts[0].trim())) {
+                continue;
+            }
+            // Respect an explicit "gzip;q=0"
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+
     private void sendNotFound(HttpExchange exchange, String path) throws IOException {
         String notFound = "404 Not Found: " + path;
         exchange.sendResponseHeaders(404, notFound.getBytes(StandardCharsets.UTF_8).length);
@@ -52,4 +201,25 @@ public class StaticResourceHandler implements HttpHandler {
             os.write(notFound.getBytes(StandardCharsets.UTF_8));
         }
     }
+
+
+    /**
+     * Immutable in-memory copy of a UI asset
+     */
+    static final class CachedResource {
+        final String contentType;
+        final byte[] data;
+        final byte[] gzipData;
+        final String etag;
+        /** Tag of the gzip body, the identity tag with "-gz" appended inside the quotes; null without gzipData */
+        final String gzipEtag;
+
+        CachedResource(String contentType, byte[] data, byte[] gzipData, String etag) {
+            this.contentType = contentType;
+            this.data = data;
+            this.gzipData = gzipData;
+            this.etag = etag;
+            this.gzipEtag = gzipData != null ? etag.substring(0, etag.length() - 1) + "-gz\"" : null;
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package com.hotmock4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A class file rewritten by one of the agent's transformers
+ */
+@Name("hotmock4j.ClassTransformed")
+@Label("Class Transformed")
+@Description("A class file rewritten by a HotMock4J transformer")
+@Category({"HotMock4J", "Instrumentation"})
+@Enabled(false)
+@StackTrace(false)
+public class ClassTransformedEvent extends Event {
+
+    @Label("Transformer")
+    public String transformer;
+
+    @Label("Class Name")
+    public String className;
+
+    @Label("Retransform")
+    @Description("True when the class was already loaded and is being retransformed")
+    public boolean retransform;
+
+    @Label("Bytes In")
+    @DataAmount
+    public int bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    public int bytesOut;
+}
@@ -0,0 +1,33 @@
+package com.hotmock4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A field value pushed into all tracked instances of a class
+ */
+@Name("hotmock4j.FieldSweep")
+@Label("Field Sweep")
+@Description("A mocked field value written into every tracked instance of a class")
+@Category({"HotMock4J", "Instances"})
+@Enabled(false)
+@StackTrace(false)
+public class FieldSweepEvent extends Event {
+
+    @Label("Class Name")
+    public String className;
+
+    @Label("Field Name")
+    public String fieldName;
+
+    @Label("Instances")
+    public int instances;
+
+    @Label("Failures")
+    public int failures;
+}
@@ -0,0 +1,44 @@
+package com.hotmock4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampled call of a mocked method. Only one in SAMPLE_INTERVAL hits is committed, with a stack trace
+ * showing the caller; multiply the event count by sampleInterval to estimate total hits.
+ */
+@Name("hotmock4j.MockHit")
+@Label("Mock Hit (sampled)")
+@Description("A call answered by a HotMock4J mocked method, sampled")
+@Category({"HotMock4J", "Mocks"})
+@Enabled(false)
+public class MockHitEvent extends Event {
+
+    static final int SAMPLE_INTERVAL = 100;
+
+    @Label("Mock")
+    @Description("Mocked method as className#methodName")
+    public String mock;
+
+    @Label("Sample Interval")
+    public int sampleInterval;
+
+    /**
+     * Called on every mock hit. While the event is disabled this is a single flag check on an
+     * event object the JIT eliminates.
+     */
+    public static void sample(String mock) {
+        MockHitEvent event = new MockHitEvent();
+        if (event.isEnabled() && ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) == 0) {
+            event.mock = mock;
+            event.sampleInterval = SAMPLE_INTERVAL;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.hotmock4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A MockPlan became the active plan
+ */
+@Name("hotmock4j.PlanActivated")
+@Label("Plan Activated")
+@Description("A HotMock4J MockPlan became the active plan")
+@Category({"HotMock4J", "Plans"})
+@Enabled(false)
+@StackTrace(false)
+public class PlanActivatedEvent extends Event {
+
+    @Label("Project Name")
+    public String projectName;
+
+    @Label("Plan Name")
+    public String planName;
+
+    @Label("Plan Version")
+    public long planVersion;
+
+    @Label("Mock Classes")
+    public int mockClassCount;
+
+    @Label("Previous Plan")
+    public String previousPlanName;
+}
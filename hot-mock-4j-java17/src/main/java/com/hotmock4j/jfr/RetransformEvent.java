@@ -0,0 +1,31 @@
+package com.hotmock4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One Instrumentation.retransformClasses call made after a plan change
+ */
+@Name("hotmock4j.Retransform")
+@Label("Retransform Batch")
+@Description("Loaded classes retransformed by HotMock4J after a plan change")
+@Category({"HotMock4J", "Instrumentation"})
+@Enabled(false)
+@StackTrace(false)
+public class RetransformEvent extends Event {
+
+    @Label("Class Count")
+    public int classCount;
+
+    @Label("Classes")
+    @Description("Names of the retransformed classes, truncated for large batches")
+    public String classNames;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,381 @@
+package com.hotmock4j.log;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous agent logger.
+ * Callers only check the level and put an entry into a lock-free bounded ring; formatting and
+ * I/O happen on the "hotmock4j-log" daemon thread. Messages use {} placeholders and are
+ * rate limited per message template. When the ring is full entries are dropped and counted.
+ * Arguments are formatted later on the log thread, so pass values rather than mutable objects.
+ */
+public final class AgentLogger {
+
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+    /** Messages per template and second before further ones are suppressed */
+    private static final int RATE_LIMIT = 50;
+    /** Templates tracked for rate limiting; beyond this new templates are not limited */
+    private static final int MAX_TEMPLATES = 4096;
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+    private static final long IDLE_PARK_NANOS = 5_000_000;
+
+    private static final int TRACE = LogLevel.TRACE.ordinal();
+    private static final int DEBUG = LogLevel.DEBUG.ordinal();
+    private static final int INFO = LogLevel.INFO.ordinal();
+    private static final int WARN = LogLevel.WARN.ordinal();
+    private static final int ERROR = LogLevel.ERROR.ordinal();
+
+    private static volatile int threshold = INFO;
+    /** null writes to System.out */
+    private static volatile PrintStream fileStream;
+
+    private static final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong();
+    /** Only touched by the drain thread, or by the shutdown hook after it */
+    private static long head;
+
+    private static final LongAdder dropped = new LongAdder();
+    private static final Map<String, AtomicInteger> rateWindows = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        Thread drainThread = new Thread(AgentLogger::drainLoop, "hotmock4j-log");
+        drainThread.setDaemon(true);
+        drainThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AgentLogger::drainAndFlush, "hotmock4j-log-shutdown"));
+    }
+
+    private AgentLogger() {
+    }
+
+    /**
+     * Set the level and destination; logFile "console" or null writes to stdout
+     */
+    public static void configure(LogLevel level, String logFile) {
+        threshold = level.ordinal();
+        if (logFile == null || "console".equalsIgnoreCase(logFile)) {
+            fileStream = null;
+            return;
+        }
+        try {
+            fileStream = new PrintStream(new BufferedOutputStream(new FileOutputStream(logFile, true), 64 * 1024),
+                    false, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            fileStream = null;
+            warn("Cannot open log file {}, logging to console: {}", logFile, e.getMessage());
+        }
+    }
+
+    public static LogLevel getLevel() {
+        return LogLevel.values()[threshold];
+    }
+
+    public static boolean isTraceEnabled() {
+        return TRACE >= threshold;
+    }
+
+    public static boolean isDebugEnabled() {
+        return DEBUG >= threshold;
+    }
+
+    public static void trace(String message, Object arg) {
+        if (TRACE >= threshold) {
+            enqueue(LogLevel.TRACE, message, new Object[]{arg});
+        }
+    }
+
+    public static void trace(String message, Object arg1, Object arg2) {
+        if (TRACE >= threshold) {
+            enqueue(LogLevel.TRACE, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void trace(String message, Object... args) {
+        if (TRACE >= threshold) {
+            enqueue(LogLevel.TRACE, message, args);
+        }
+    }
+
+    public static void debug(String message) {
+        if (DEBUG >= threshold) {
+            enqueue(LogLevel.DEBUG, message, null);
+        }
+    }
+
+    public static void debug(String message, Object arg) {
+        if (DEBUG >= threshold) {
+            enqueue(LogLevel.DEBUG, message, new Object[]{arg});
+        }
+    }
+
+    public static void debug(String message, Object arg1, Object arg2) {
+        if (DEBUG >= threshold) {
+            enqueue(LogLevel.DEBUG, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void debug(String message, Object... args) {
+        if (DEBUG >= threshold) {
+            enqueue(LogLevel.DEBUG, message, args);
+        }
+    }
+
+    public static void info(String message) {
+        if (INFO >= threshold) {
+            enqueue(LogLevel.INFO, message, null);
+        }
+    }
+
+    public static void info(String message, Object arg) {
+        if (INFO >= threshold) {
+            enqueue(LogLevel.INFO, message, new Object[]{arg});
+        }
+    }
+
+    public static void info(String message, Object arg1, Object arg2) {
+        if (INFO >= threshold) {
+            enqueue(LogLevel.INFO, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void info(String message, Object... args) {
+        if (INFO >= threshold) {
+            enqueue(LogLevel.INFO, message, args);
+        }
+    }
+
+    public static void warn(String message) {
+        if (WARN >= threshold) {
+            enqueue(LogLevel.WARN, message, null);
+        }
+    }
+
+    public static void warn(String message, Object arg) {
+        if (WARN >= threshold) {
+            enqueue(LogLevel.WARN, message, new Object[]{arg});
+        }
+    }
+
+    public static void warn(String message, Object arg1, Object arg2) {
+        if (WARN >= threshold) {
+            enqueue(LogLevel.WARN, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void warn(String message, Object... args) {
+        if (WARN >= threshold) {
+            enqueue(LogLevel.WARN, message, args);
+        }
+    }
+
+    public static void error(String message) {
+        if (ERROR >= threshold) {
+            enqueue(LogLevel.ERROR, message, null);
+        }
+    }
+
+    public static void error(String message, Object arg) {
+        if (ERROR >= threshold) {
+            enqueue(LogLevel.ERROR, message, new Object[]{arg});
+        }
+    }
+
+    public static void error(String message, Object arg1, Object arg2) {
+        if (ERROR >= threshold) {
+            enqueue(LogLevel.ERROR, message, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void error(String message, Object... args) {
+        if (ERROR >= threshold) {
+            enqueue(LogLevel.ERROR, message, args);
+        }
+    }
+
+    private static void enqueue(LogLevel level, String message, Object[] args) {
+        AtomicInteger window = rateWindows.get(message);
+        if (window == null && rateWindows.size() < MAX_TEMPLATES) {
+            window = rateWindows.computeIfAbsent(message, k -> new AtomicInteger());
+        }
+        if (window != null && window.incrementAndGet() > RATE_LIMIT) {
+            // Counted in the window and reported by the drain thread
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), level, Thread.currentThread().getName(), message, args);
+        if (!offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Multi-producer bounded ring (Vyukov): a slot is free for position p when its sequence equals p
+     * and readable when it equals p + 1
+     */
+    private static boolean offer(Entry entry) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & MASK);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(idx, entry);
+                    sequences.lazySet(idx, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private static Entry poll() {
+        int idx = (int) (head & MASK);
+        if (sequences.get(idx) != head + 1) {
+            return null;
+        }
+        Entry entry = slots.get(idx);
+        slots.lazySet(idx, null);
+        sequences.lazySet(idx, head + CAPACITY);
+        head++;
+        return entry;
+    }
+
+    private static void drainLoop() {
+        long lastSweep = System.currentTimeMillis();
+        while (true) {
+            try {
+                int written = drain();
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= SWEEP_INTERVAL_MILLIS) {
+                    reportSuppressed();
+                    lastSweep = now;
+                }
+                if (written == 0) {
+                    out().flush();
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (Throwable t) {
+                // Never let the log thread die; the entry that failed is lost
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private static synchronized void drainAndFlush() {
+        drain();
+        reportSuppressed();
+        out().flush();
+    }
+
+    private static synchronized int drain() {
+        int written = 0;
+        PrintStream out = out();
+        Entry entry;
+        while ((entry = poll()) != null) {
+            out.print(entry.format());
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Start a new rate window for every template and report what the last one suppressed
+     */
+    private static void reportSuppressed() {
+        PrintStream out = out();
+        for (Map.Entry<String, AtomicInteger> window : rateWindows.entrySet()) {
+            int count = window.getValue().getAndSet(0);
+            if (count > RATE_LIMIT) {
+                out.print(new Entry(System.currentTimeMillis(), LogLevel.WARN, "hotmock4j-log",
+                        "Suppressed {} messages like: {}", new Object[]{count - RATE_LIMIT, window.getKey()}).format());
+            }
+        }
+        long lost = dropped.sumThenReset();
+        if (lost > 0) {
+            out.print(new Entry(System.currentTimeMillis(), LogLevel.WARN, "hotmock4j-log",
+                    "Log buffer full, dropped {} messages", new Object[]{lost}).format());
+        }
+    }
+
+    private static PrintStream out() {
+        PrintStream stream = fileStream;
+        return stream != null ? stream : System.out;
+    }
+
+    /**
+     * Holder so the formatter, and the java.time classes behind it, are initialized by the log thread
+     * rather than by premain
+     */
+    private static final class TimestampFormat {
+        static final DateTimeFormatter FORMAT =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    }
+
+    private static final class Entry {
+        private final long timeMillis;
+        private final LogLevel level;
+        private final String thread;
+        private final String message;
+        private final Object[] args;
+
+        Entry(long timeMillis, LogLevel level, String thread, String message, Object[] args) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.thread = thread;
+            this.message = message;
+            this.args = args;
+        }
+
+        /**
+         * Render the line, substituting {} placeholders; a Throwable left over after the
+         * placeholders is appended with its stack trace
+         */
+        String format() {
+            StringBuilder sb = new StringBuilder(64 + message.length());
+            TimestampFormat.FORMAT.formatTo(Instant.ofEpochMilli(timeMillis), sb);
+            sb.append(' ').append(level.name());
+            if (level.name().length() < 5) {
+                sb.append(' ');
+            }
+            sb.append(" [").append(thread).append("] ");
+            int argIndex = 0;
+            int start = 0;
+            int idx;
+            while (args != null && argIndex < args.length && (idx = message.indexOf("{}", start)) >= 0) {
+                sb.append(message, start, idx).append(args[argIndex++]);
+                start = idx + 2;
+            }
+            sb.append(message, start, message.length()).append(System.lineSeparator());
+            if (args != null && argIndex < args.length && args[args.length - 1] instanceof Throwable) {
+                StringWriter trace = new StringWriter();
+                ((Throwable) args[args.length - 1]).printStackTrace(new PrintWriter(trace));
+                sb.append(trace);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.hotmock4j.log;
+
+/**
+ * Agent log levels, from most to least verbose
+ */
+public enum LogLevel {
+    TRACE, DEBUG, INFO, WARN, ERROR, OFF;
+
+    /**
+     * Parse a level name case-insensitively, falling back to the default for unknown names
+     */
+    public static LogLevel parse(String name, LogLevel defaultLevel) {
+        if (name == null) {
+            return defaultLevel;
+        }
+        for (LogLevel level : values()) {
+            if (level.name().equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        return defaultLevel;
+    }
+}
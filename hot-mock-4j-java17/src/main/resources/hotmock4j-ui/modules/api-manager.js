@@ -56,6 +56,21 @@ class APIManager {
         });
     }
 
+    // operations: [{ op: 'add' | 'replace' | 'remove', path: '/fields/{name}[/{property}]', value }]
+    async patchMockClass(projectName, planName, className, templateName, operations) {
+        return this.request(`${this.baseUrl}/mockplans/class`, {
+            method: 'PATCH',
+            body: JSON.stringify({ projectName, planName, className, templateName, operations })
+        });
+    }
+
+    async updateMockClasses(projectName, planName, mockClasses) {
+        return this.request(`${this.baseUrl}/mockplans/classes`, {
+            method: 'PUT',
+            body: JSON.stringify({ projectName, planName, mockClasses })
+        });
+    }
+
     async deleteMockClass(projectName, planName, className) {
         const url = `${this.baseUrl}/mockplans/class?projectName=${encodeURIComponent(projectName)}&planName=${encodeURIComponent(planName)}&className=${encodeURIComponent(className)}`;
         return this.request(url, { method: 'DELETE' });
@@ -77,6 +92,18 @@ class APIManager {
         const url = `${this.baseUrl}/classes/${encodeURIComponent(className)}/with-mock?projectName=${encodeURIComponent(projectName)}&planName=${encodeURIComponent(planName)}`;
         return this.request(url);
     }
+
+    // Open the server-sent event stream; handlers are keyed by event type and receive parsed data
+    subscribeEvents(handlers = {}, classFilter = '') {
+        const url = classFilter
+            ? `${this.baseUrl}/events?classFilter=${encodeURIComponent(classFilter)}`
+            : `${this.baseUrl}/events`;
+        const source = new EventSource(url);
+        Object.entries(handlers).forEach(([type, handler]) => {
+            source.addEventListener(type, (event) => handler(JSON.parse(event.data)));
+        });
+        return source;
+    }
 }
 
 export default APIManager;
@@ -12,6 +12,8 @@ class MockPlanAPIManager {
         
         this.currentMockPlan = null;
         this.currentSelectedClass = null;
+        this.planVersions = new Map();
+        this.refreshTimer = null;
         
         this.init();
     }
@@ -19,6 +21,55 @@ class MockPlanAPIManager {
     init() {
         this.loadMockPlans();
         this.bindEvents();
+        this.subscribeEvents();
+    }
+
+    // Listen for plan changes made by other clients instead of polling
+    subscribeEvents() {
+        const planKey = (plan) => `${plan.projectName}::${plan.planName}`;
+        this.eventSource = this.apiManager.subscribeEvents({
+            'snapshot': (plans) => {
+                plans.forEach(plan => this.planVersions.set(planKey(plan), plan.version));
+            },
+            'plan-changed': (plan) => {
+                const known = this.planVersions.get(planKey(plan));
+                if (known === undefined || plan.version > known) {
+                    this.planVersions.set(planKey(plan), plan.version);
+                    this.scheduleRefresh();
+                }
+            },
+            'plan-deleted': (plan) => {
+                this.planVersions.delete(planKey(plan));
+                if (this.currentMockPlan
+                    && this.currentMockPlan.planName === plan.planName
+                    && this.currentMockPlan.project.projectName === plan.projectName) {
+                    this.currentMockPlan = null;
+                    this.showMockPlanDetails();
+                }
+                this.scheduleRefresh();
+            }
+        });
+    }
+
+    // Coalesce bursts of change events into a single reload
+    scheduleRefresh() {
+        if (this.refreshTimer) {
+            clearTimeout(this.refreshTimer);
+        }
+        this.refreshTimer = setTimeout(async () => {
+            this.refreshTimer = null;
+            const allMockPlans = await this.loadMockPlans();
+            if (this.currentMockPlan) {
+                const refreshed = allMockPlans.find(p =>
+                    p.planName === this.currentMockPlan.planName &&
+                    p.project.projectName === this.currentMockPlan.project.projectName
+                );
+                if (refreshed) {
+                    this.currentMockPlan = refreshed;
+                    this.showMockPlanDetails();
+                }
+            }
+        }, 300);
     }
 
     // Load MockPlans
@@ -0,0 +1,166 @@
+package com.hotmock4j.runtime;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The mock context of the current thread: a tag such as "loadtest" or "tenant-42" that limits mocks with a
+ * context to the traffic carrying it. The agent sets it from a request header and carries it into tasks
+ * submitted to executors; other entry points can open a scope themselves:
+ * <pre>
+ * try (MockContext.Scope scope = MockContext.open("loadtest")) {
+ *     ...
+ * }
+ * </pre>
+ * While no thread carries a context, checks read a single counter and do not touch the ThreadLocal. While any
+ * thread does, untagged threads also probe the ThreadLocal, as the counter is shared by all threads.
+ */
+public final class MockContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+    /** Threads carrying a context now */
+    private static final AtomicInteger TAGGED = new AtomicInteger();
+    private static final Scope NOOP = new Scope(null, false);
+
+    private MockContext() {
+    }
+
+    /**
+     * Context of the current thread, or null
+     */
+    public static String current() {
+        return TAGGED.get() == 0 ? null : CURRENT.get();
+    }
+
+    /**
+     * Set the current thread's context until the scope is closed; null clears it. Scopes nest and must be
+     * closed on the thread that opened them, in reverse order.
+     */
+    public static Scope open(String context) {
+        String previous = current();
+        if (previous == null && context == null) {
+            return NOOP;
+        }
+        set(previous, context);
+        return new Scope(previous, true);
+    }
+
+    /**
+     * Whether the current thread carries this context; "*" matches any context
+     */
+    public static boolean matches(String context) {
+        if (TAGGED.get() == 0) {
+            return false;
+        }
+        String current = CURRENT.get();
+        return current != null && ("*".equals(context) || current.equals(context));
+    }
+
+    /**
+     * The task, run in the current thread's context on whichever thread runs it; the task itself if the
+     * current thread has no context
+     */
+    public static Runnable wrap(Runnable task) {
+        String context = current();
+        if (context == null || task == null || task instanceof ContextRunnable) {
+            return task;
+        }
+        return new ContextRunnable(context, task);
+    }
+
+    /**
+     * The task, called in the current thread's context on whichever thread calls it; the task itself if the
+     * current thread has no context
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        String context = current();
+        if (context == null || task == null || task instanceof ContextCallable) {
+            return task;
+        }
+        return new ContextCallable<>(context, task);
+    }
+
+    private static void set(String previous, String context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+        if (previous == null && context != null) {
+            TAGGED.incrementAndGet();
+        } else if (previous != null && context == null) {
+            TAGGED.decrementAndGet();
+        }
+    }
+
+    /**
+     * Restores the context the thread had before the scope was opened
+     */
+    public static final class Scope implements AutoCloseable {
+        private final String previous;
+        private boolean open;
+
+        private Scope(String previous, boolean open) {
+            this.previous = previous;
+            this.open = open;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                set(CURRENT.get(), previous);
+            }
+        }
+    }
+
+    private static final class ContextRunnable implements Runnable {
+        private final String context;
+        private final Runnable task;
+
+        ContextRunnable(String context, Runnable task) {
+            this.context = context;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            Scope scope = open(context);
+            try {
+                task.run();
+            } finally {
+                scope.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    private static final class ContextCallable<T> implements Callable<T> {
+        private final String context;
+        private final Callable<T> task;
+
+        ContextCallable(String context, Callable<T> task) {
+            this.context = context;
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            Scope scope = open(context);
+            try {
+                return task.call();
+            } finally {
+                scope.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+}
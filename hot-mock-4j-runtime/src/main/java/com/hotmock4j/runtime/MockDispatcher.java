@@ -0,0 +1,53 @@
+package com.hotmock4j.runtime;
+
+/**
+ * Implemented by the agent core to answer calls made by woven code through MockRuntime
+ */
+public interface MockDispatcher {
+
+    void recordHit(String key);
+
+    /**
+     * @param caller the woven class, whose loader the template's class is resolved from; null for pre-1.5 class files
+     */
+    Object buildFromTemplate(Class<?> caller, String className, String templateName);
+
+    void registerInstance(String className, Object instance);
+
+    boolean matches(Object argument, String regex);
+
+    boolean sampleSpy(double sampleRate);
+
+    /**
+     * @param thrown the exception the call ended with, or null if it returned
+     */
+    void recordSpy(String key, long startNanos, Object[] arguments, Object returnValue, Throwable thrown);
+
+    void recordReturn(String key, Object returnValue);
+
+    /**
+     * @return the value recorded for these arguments, or null to run the method
+     */
+    Object replay(Class<?> caller, String key, Object[] arguments);
+
+    void recordReplay(String key, Object[] arguments, Object returnValue);
+
+    /**
+     * @return the cached result for these arguments, or null to run the method
+     */
+    Object memoLookup(String key, Object[] arguments);
+
+    void memoStore(String key, Object[] arguments, Object returnValue);
+
+    /**
+     * @return a permit released by exitFault, or null
+     */
+    Object enterFault(Class<?> caller, String key);
+
+    void exitFault(Object permit);
+
+    /**
+     * @return whether this call of a method in a rollout is answered by its mock
+     */
+    boolean divert(String key);
+}
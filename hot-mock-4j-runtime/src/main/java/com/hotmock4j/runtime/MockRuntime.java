@@ -0,0 +1,235 @@
+package com.hotmock4j.runtime;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Static entry points called by woven application code.
+ * This class and MockDispatcher are the only agent types application classes reference. The bootstrap
+ * agent puts them on the bootstrap class path, so woven classes resolve them from any class loader,
+ * while the core behind the dispatcher lives in its own loader. Until the core installs its dispatcher
+ * the calls do nothing. MockContext lives next to them rather than in the core, since woven JDK executors
+ * carry it too.
+ */
+public final class MockRuntime {
+
+    private static final MockDispatcher NOOP = new MockDispatcher() {
+        @Override
+        public void recordHit(String key) {
+        }
+
+        @Override
+        public Object buildFromTemplate(Class<?> caller, String className, String templateName) {
+            return null;
+        }
+
+        @Override
+        public void registerInstance(String className, Object instance) {
+        }
+
+        @Override
+        public boolean matches(Object argument, String regex) {
+            return false;
+        }
+
+        @Override
+        public boolean sampleSpy(double sampleRate) {
+            return false;
+        }
+
+        @Override
+        public void recordSpy(String key, long startNanos, Object[] arguments, Object returnValue, Throwable thrown) {
+        }
+
+        @Override
+        public void recordReturn(String key, Object returnValue) {
+        }
+
+        @Override
+        public Object replay(Class<?> caller, String key, Object[] arguments) {
+            return null;
+        }
+
+        @Override
+        public void recordReplay(String key, Object[] arguments, Object returnValue) {
+        }
+
+        @Override
+        public Object memoLookup(String key, Object[] arguments) {
+            return null;
+        }
+
+        @Override
+        public void memoStore(String key, Object[] arguments, Object returnValue) {
+        }
+
+        @Override
+        public Object enterFault(Class<?> caller, String key) {
+            return null;
+        }
+
+        @Override
+        public void exitFault(Object permit) {
+        }
+
+        @Override
+        public boolean divert(String key) {
+            return false;
+        }
+    };
+
+    private static volatile MockDispatcher dispatcher = NOOP;
+
+    private MockRuntime() {
+    }
+
+    public static void install(MockDispatcher mockDispatcher) {
+        dispatcher = mockDispatcher != null ? mockDispatcher : NOOP;
+    }
+
+    /**
+     * Called from woven method prologues with a "className#methodName" key
+     */
+    public static void recordHit(String key) {
+        dispatcher.recordHit(key);
+    }
+
+    /**
+     * Called from woven methods whose return value comes from a template
+     */
+    public static Object buildFromTemplate(Class<?> caller, String className, String templateName) {
+        return dispatcher.buildFromTemplate(caller, className, templateName);
+    }
+
+    /**
+     * Called from woven constructors just before they return
+     */
+    public static void registerInstance(String className, Object instance) {
+        dispatcher.registerInstance(className, instance);
+    }
+
+    /**
+     * Called from woven stubs with a regex argument matcher
+     */
+    public static boolean matches(Object argument, String regex) {
+        return dispatcher.matches(argument, regex);
+    }
+
+    /**
+     * Called on entry to a spied method; the call is recorded only if this returns true
+     */
+    public static boolean spySample(double sampleRate) {
+        return dispatcher.sampleSpy(sampleRate);
+    }
+
+    /**
+     * Called before a sampled spied call returns, with the boxed return value (null for void)
+     */
+    public static void spyReturn(Object returnValue, Object[] arguments, String key, long startNanos) {
+        dispatcher.recordSpy(key, startNanos, arguments, returnValue, null);
+    }
+
+    /**
+     * Called when a sampled spied call ends with an exception, before it is rethrown
+     */
+    public static void spyThrow(Throwable thrown, Object[] arguments, String key, long startNanos) {
+        dispatcher.recordSpy(key, startNanos, arguments, null, thrown);
+    }
+
+    /**
+     * Called before a method in record mode returns an object, with a "className#methodName" key
+     */
+    public static void recordReturn(Object returnValue, String key) {
+        dispatcher.recordReturn(key, returnValue);
+    }
+
+    /**
+     * Called on entry to a method in replay mode; a non-null result is returned instead of running the method.
+     * The key is the store name, '/' and "className#methodName" followed by the descriptor.
+     */
+    public static Object replay(Class<?> caller, String key, Object[] arguments) {
+        return dispatcher.replay(caller, key, arguments);
+    }
+
+    /**
+     * Called before a method recording a replay store returns, with the boxed return value
+     */
+    public static void replayRecord(Object returnValue, Object[] arguments, String key, long startNanos) {
+        dispatcher.recordReplay(key, arguments, returnValue);
+    }
+
+    /**
+     * Called on entry to a method in memo mode; a non-null result is returned instead of running the method
+     */
+    public static Object memoLookup(String key, Object[] arguments) {
+        return dispatcher.memoLookup(key, arguments);
+    }
+
+    /**
+     * Called before a method in memo mode returns, with the boxed return value and the arguments it was called with
+     */
+    public static void memoStore(Object returnValue, Object[] arguments, String key) {
+        dispatcher.memoStore(key, arguments, returnValue);
+    }
+
+    /**
+     * Called on entry to a method in fault mode with a "className#methodName" key; may wait or throw
+     *
+     * @return a permit to pass to faultExit
+     */
+    public static Object faultEnter(Class<?> caller, String key) {
+        return dispatcher.enterFault(caller, key);
+    }
+
+    /**
+     * Called when a method in fault mode returns or throws
+     */
+    public static void faultExit(Object permit) {
+        dispatcher.exitFault(permit);
+    }
+
+    /**
+     * Called before the mock of a method in a rollout, with a "className#methodName" key; the call runs the
+     * real implementation instead if this returns false
+     */
+    public static boolean rolloutDivert(String key) {
+        return dispatcher.divert(key);
+    }
+
+    /**
+     * Called before the mock of a method with a context; the call runs the real implementation instead if the
+     * current thread does not carry the context
+     */
+    public static boolean inContext(String context) {
+        return MockContext.matches(context);
+    }
+
+    /**
+     * Called on entry to a woven request handler with the value of the context header, which may be null
+     *
+     * @return the scope to pass to contextClose
+     */
+    public static Object contextOpen(String context) {
+        return MockContext.open(context);
+    }
+
+    /**
+     * Called when a woven request handler returns or throws
+     */
+    public static void contextClose(Object scope) {
+        ((MockContext.Scope) scope).close();
+    }
+
+    /**
+     * Called by woven executors on the task they are given, so it runs in the submitting thread's context
+     */
+    public static Runnable contextWrap(Runnable task) {
+        return MockContext.wrap(task);
+    }
+
+    /**
+     * Called by woven executors on the task they are given, so it runs in the submitting thread's context
+     */
+    public static <T> Callable<T> contextWrap(Callable<T> task) {
+        return MockContext.wrap(task);
+    }
+}